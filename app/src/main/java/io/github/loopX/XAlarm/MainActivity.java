@@ -15,28 +15,26 @@ import android.view.ViewTreeObserver;
 import android.view.Window;
 import android.view.WindowManager;
 import android.widget.ImageView;
-import android.widget.ListView;
 import android.widget.Toast;
 
 import com.facebook.rebound.Spring;
-import com.tendcloud.tenddata.TCAgent;
 
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.List;
-import java.util.Locale;
-import java.util.UUID;
 
+import io.github.loopX.XAlarm.analytics.Analytics;
 import io.github.loopX.XAlarm.database.AlarmDBService;
 import io.github.loopX.XAlarm.infrastructure.BaseActivity;
 import io.github.loopX.XAlarm.module.Alarm.Alarm;
 import io.github.loopX.XAlarm.module.Alarm.AlarmScheduler;
 import io.github.loopX.XAlarm.module.SetAlarmModule.SetAlarmActivity;
 import io.github.loopX.XAlarm.module.SettingModule.AlarmPreferenceSettingsMenuLayout;
+import io.github.loopX.XAlarm.module.StatsModule.StatsActivity;
 import io.github.loopX.XAlarm.module.UnlockTypeModule.UnlockTypeActivity;
 import io.github.loopX.XAlarm.module.UnlockTypeModule.UnlockTypeEnum;
 import io.github.loopX.XAlarm.tools.BaseSpringListener;
 import io.github.loopX.XAlarm.tools.ReboundAnimation;
+import io.github.loopX.XAlarm.tools.TimeFormatter;
 import io.github.loopX.XAlarm.tools.ToastMaster;
 import io.github.loopX.XAlarm.tools.UIUtils;
 import io.github.loopX.XAlarm.view.DragMenuLayout;
@@ -54,8 +52,10 @@ public class MainActivity extends BaseActivity implements View.OnClickListener,
 
     private Alarm mAlarm;
 
-    public final static String M12 = "hh:mm";
-    public final static String M24 = "HH:mm";
+    private TimeFormatter mTimeFormatter;
+    private TimeFormatter.TextSlot mAlarmDistanceSlot;
+    // Next ring time of mAlarm, 0 when it has to be computed again
+    private long mAlarmTimeMillis;
 
     private ImageView ivRightMenuIndicator;
     private ImageView ivLeftMenuIndicator;
@@ -73,7 +73,6 @@ public class MainActivity extends BaseActivity implements View.OnClickListener,
     private int translationYEndValue;
     private AlarmPreferenceSettingsMenuLayout rightMenu;
     private UnlockTypeMenuLayout leftMenu;
-    private ListView lvRingtoneList;
     private Window mWindow;
 
     private BroadcastReceiver mBroadcastReceiver;
@@ -94,6 +93,9 @@ public class MainActivity extends BaseActivity implements View.OnClickListener,
         tvAlarmAMPM     = (YummyTextView) findViewById(R.id.tv_alarm_am_pm);
         tvAlarmDistance = (YummyTextView) findViewById(R.id.tv_alarm_distance);
 
+        mTimeFormatter = TimeFormatter.getInstance(this);
+        mAlarmDistanceSlot = new TimeFormatter.TextSlot(tvAlarmDistance);
+
         loopXDragMenuLayout = (DragMenuLayout) findViewById(R.id.dragMenuLayout);
         ivRightMenuIndicator = (ImageView) findViewById(R.id.iv_right_menu_indicator);
         ivRightMenuIndicator.setTag(R.drawable.main_right);
@@ -105,8 +107,6 @@ public class MainActivity extends BaseActivity implements View.OnClickListener,
         rightMenu = (AlarmPreferenceSettingsMenuLayout) loopXDragMenuLayout.findViewById(R.id.menuRight);
         leftMenu = (UnlockTypeMenuLayout) loopXDragMenuLayout.findViewById(R.id.menuLeft);
 
-        lvRingtoneList = (ListView) loopXDragMenuLayout.findViewById(R.id.lv_ringtone_list);
-
         loopXDragMenuLayout.setDragMenuStateListener(this);
 
         leftMenu.setOnUnlockTypeMenuClickListener(new UnlockTypeMenuLayout.OnUnlockTypeMenuClickListener() {
@@ -166,14 +166,16 @@ public class MainActivity extends BaseActivity implements View.OnClickListener,
         
         if (!mAlarm.isEnabled()){
             tvAlarmDistance.setText(R.string.alarm_closed_hint); 
+            mAlarmDistanceSlot.invalidate();
             return;
         }
-        long alarmTime = AlarmScheduler.getAlarmTime(Calendar.getInstance(), mAlarm);
-        String alarmDistanceTime = AlarmScheduler.getTimeToAlarmString(
-                MainActivity.this,
-                alarmTime,
-                R.array.alarm_distance);
-        tvAlarmDistance.setText(alarmDistanceTime);
+
+        // The ring time only moves once it has passed, minute ticks just format the distance
+        if (mAlarmTimeMillis <= System.currentTimeMillis()) {
+            mAlarmTimeMillis = AlarmScheduler.getAlarmTime(Calendar.getInstance(), mAlarm);
+        }
+        mTimeFormatter.appendTimeToAlarm(mAlarmDistanceSlot.edit(), mAlarmTimeMillis, R.array.alarm_distance);
+        mAlarmDistanceSlot.apply();
     }
 
     /**
@@ -208,15 +210,26 @@ public class MainActivity extends BaseActivity implements View.OnClickListener,
     protected void onStart() {
         super.onStart();
 
+        // The clock may have been changed while stopped
+        mAlarmTimeMillis = 0;
+
         mBroadcastReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context ctx, Intent intent) {
-                if (intent.getAction().compareTo(Intent.ACTION_TIME_TICK) == 0)
-                    updateAlarmDistanceText();
+                String action = intent.getAction();
+                if (Intent.ACTION_TIME_CHANGED.equals(action)
+                        || Intent.ACTION_TIMEZONE_CHANGED.equals(action)) {
+                    // The cached ring time is on the old clock
+                    mAlarmTimeMillis = 0;
+                }
+                updateAlarmDistanceText();
             }
         };
 
-        registerReceiver(mBroadcastReceiver, new IntentFilter(Intent.ACTION_TIME_TICK));
+        IntentFilter filter = new IntentFilter(Intent.ACTION_TIME_TICK);
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        registerReceiver(mBroadcastReceiver, filter);
 
     }
 
@@ -273,6 +286,9 @@ public class MainActivity extends BaseActivity implements View.OnClickListener,
                 Intent intentToAbout = new Intent(this, AboutActivity.class);
                 startActivity(intentToAbout);
                 break;
+            case R.id.btn_stats:
+                startActivity(new Intent(this, StatsActivity.class));
+                break;
             case R.id.btn_share:
                 Intent intentToShare = new Intent(Intent.ACTION_SEND);
                 intentToShare.setType("text/plain");
@@ -294,7 +310,7 @@ public class MainActivity extends BaseActivity implements View.OnClickListener,
 
         switch (requestCode) {
             case SET_ALARM_REQUEST_CODE:
-                UUID alarmID = (UUID) data.getSerializableExtra(AlarmScheduler.X_ALARM_ID);
+                int alarmID = data.getIntExtra(AlarmScheduler.X_ALARM_ID, Alarm.INVALID_ID);
                 mAlarm = AlarmDBService.getInstance(this).getAlarm(alarmID);
 
                 setAlarmTimeOnTextView(mAlarm);
@@ -345,23 +361,20 @@ public class MainActivity extends BaseActivity implements View.OnClickListener,
      */
     private void setAlarmTimeOnTextView(Alarm alarm) {
 
-        final Calendar cal = Calendar.getInstance();
+        // Alarm may have changed, its ring time is computed again on next update
+        mAlarmTimeMillis = 0;
 
-        cal.set(Calendar.HOUR_OF_DAY, alarm.getTimeHour());
-        cal.set(Calendar.MINUTE, alarm.getTimeMinute());
+        boolean is24Hour = DateFormat.is24HourFormat(this);
 
-        Locale locale = new Locale("en");
+        StringBuilder time = new StringBuilder(5);
+        mTimeFormatter.appendTime(time, alarm.getTimeHour(), alarm.getTimeMinute(), is24Hour);
+        tvAlarmTime.setText(time);
 
-        if (DateFormat.is24HourFormat(this)) {
-            SimpleDateFormat dateFormatTime = new SimpleDateFormat(M24, locale);
-            tvAlarmTime.setText(dateFormatTime.format(cal.getTime()));
+        if (is24Hour) {
             tvAlarmAMPM.setVisibility(View.GONE);
         } else {
-            SimpleDateFormat dateFormat = new SimpleDateFormat(M12, locale);
-            SimpleDateFormat dateFormatAMPM = new SimpleDateFormat("a", locale);
-            tvAlarmTime.setText(dateFormat.format(cal.getTime()));
             tvAlarmAMPM.setVisibility(View.VISIBLE);
-            tvAlarmAMPM.setText(dateFormatAMPM.format(cal.getTime()));
+            tvAlarmAMPM.setText(mTimeFormatter.getAmPm(alarm.getTimeHour()));
         }
 
     }
@@ -392,6 +405,14 @@ public class MainActivity extends BaseActivity implements View.OnClickListener,
 
             /** Update Vibration **/
             mAlarm.setVibrate(rightMenu.getVibrationSetting());
+            mAlarm.setVibrationPattern(rightMenu.getVibrationPatternSetting());
+
+            /** Update Crescendo **/
+            mAlarm.setCrescendoSeconds(rightMenu.getCrescendoSetting());
+
+            /** Update Snooze **/
+            mAlarm.setSnoozeMinutes(rightMenu.getSnoozeSetting());
+
             mAlarm.setAlarmTone(Uri.parse(XAlarmApp.getResourcePath() + "/raw/ringtone_"
                     + rightMenu.getRingtone()));
 
@@ -401,22 +422,25 @@ public class MainActivity extends BaseActivity implements View.OnClickListener,
             // Update right menu
             setRightMenuStatus();
 
-            sendTCAgent(rightMenu.getRingtone());
+            sendAnalyticsEvent(rightMenu.getRingtone());
             
         } else {
             ivLeftMenuIndicator.setImageResource(R.drawable.main_left);
         }
     }
 
-    private void sendTCAgent(int ringtone) {
+    private void sendAnalyticsEvent(int ringtone) {
         String eventLabel = rightMenu.getRingtoneName(ringtone);
-        TCAgent.onEvent(this,"铃声类型",eventLabel);
+        Analytics.onEvent("铃声类型", eventLabel);
     }
 
     private void setRightMenuStatus() {
         rightMenu.setInitRingtone(
                 Integer.valueOf(mAlarm.getAlarmTone().toString().split("ringtone_")[1]));
         rightMenu.setInitVibration(mAlarm.isVibrate());
+        rightMenu.setInitVibrationPattern(mAlarm.getVibrationPattern());
+        rightMenu.setInitCrescendo(mAlarm.getCrescendoSeconds());
+        rightMenu.setInitSnooze(mAlarm.getSnoozeMinutes());
     }
 
     private void setLeftMenuStatus() {
@@ -482,6 +506,9 @@ public class MainActivity extends BaseActivity implements View.OnClickListener,
         super.onStop();
         if (mBroadcastReceiver != null)
             unregisterReceiver(mBroadcastReceiver);
+
+        // Deliver pending analytics while the process is still alive
+        Analytics.flushNow();
     }
 
 }
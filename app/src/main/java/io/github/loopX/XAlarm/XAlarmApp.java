@@ -4,16 +4,29 @@ import android.app.Application;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
+import android.content.res.Configuration;
 import android.util.Log;
 
 import com.tendcloud.tenddata.TCAgent;
 
+import java.io.File;
+
+import io.github.loopX.XAlarm.analytics.Analytics;
+import io.github.loopX.XAlarm.analytics.FileAnalyticsSink;
+import io.github.loopX.XAlarm.analytics.TalkingDataSink;
+import io.github.loopX.XAlarm.infrastructure.AppStartup;
+import io.github.loopX.XAlarm.tools.ReboundAnimation;
+import io.github.loopX.XAlarm.tools.TypefaceHelp;
+import io.github.loopX.XAlarm.tools.UIUtils;
 
 /**
  * Specialization of the Application class to enable:
  * Application context access from non-Android framework classes
  * Package Name access from non-Android framework classes
  * Resource Path access from non-Android framework classes
+ *
+ * Only what is needed to ring an alarm is done in onCreate. Everything else is
+ * registered on AppStartup and runs once the process leaves the critical path.
  */
 public class XAlarmApp extends Application {
 
@@ -36,25 +49,57 @@ public class XAlarmApp extends Application {
     @Override
     public void onCreate() {
         super.onCreate();
+        AppStartup.onProcessCreated();
+
         XAlarmApp.mContext = getApplicationContext();
         XAlarmApp.mPackageName = XAlarmApp.mContext.getPackageName();
 
-        if (!BuildConfig.DEBUG) {
-            try {
-                ApplicationInfo appInfo = getPackageManager()
-                        .getApplicationInfo(getPackageName(),
-                                PackageManager.GET_META_DATA);
-                String appId = appInfo.metaData.getString("TD_APP_ID");
-                if(appId != null && !"".equals(appId)){
-                    TCAgent.LOG_ON = true;
-                    TCAgent.init(this, appId, BuildConfig.CHANNEL);
-                    TCAgent.setReportUncaughtExceptions(true);
-                    Log.e(TAG, "talking data app id:" + appId);
+        // Loaded off the main thread so inflating the first screen does not wait for assets
+        TypefaceHelp.preload(this, TypefaceHelp.BEBAS_NEUE);
+
+        AppStartup.registerDeferredTask(this, new AppStartup.DeferredTask() {
+            @Override
+            public void run(Context context) {
+                if (BuildConfig.DEBUG) {
+                    // Debug builds never talk to the SDK, events only go to a local file
+                    Analytics.init(context, new FileAnalyticsSink(
+                            new File(context.getFilesDir(), "analytics_debug.log")));
+                } else {
+                    initTalkingData(context);
+                    Analytics.init(context, new TalkingDataSink(context));
                 }
-            } catch (PackageManager.NameNotFoundException e) {
-                Log.e(TAG, "Can not get talking data app id");
-                e.printStackTrace();
             }
+        });
+
+        AppStartup.registerDeferredTask(this, new AppStartup.DeferredTask() {
+            @Override
+            public void run(Context context) {
+                ReboundAnimation.getInstance();
+            }
+        });
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        UIUtils.invalidateDisplayMetrics();
+    }
+
+    private static void initTalkingData(Context context) {
+        try {
+            ApplicationInfo appInfo = context.getPackageManager()
+                    .getApplicationInfo(context.getPackageName(),
+                            PackageManager.GET_META_DATA);
+            String appId = appInfo.metaData.getString("TD_APP_ID");
+            if(appId != null && !"".equals(appId)){
+                TCAgent.LOG_ON = true;
+                TCAgent.init(context, appId, BuildConfig.CHANNEL);
+                TCAgent.setReportUncaughtExceptions(true);
+                Log.e(TAG, "talking data app id:" + appId);
+            }
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.e(TAG, "Can not get talking data app id");
+            e.printStackTrace();
         }
     }
 }
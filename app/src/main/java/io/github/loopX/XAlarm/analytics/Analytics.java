@@ -0,0 +1,137 @@
+package io.github.loopX.XAlarm.analytics;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Analytics facade used instead of calling TCAgent directly.
+ *
+ * onEvent only appends to a lock-free queue, so it never blocks the UI thread.
+ * A background thread moves queued events to an app-private AnalyticsSpool and
+ * then delivers the spool to the AnalyticsSink in batches, at least once. Events
+ * logged before init stay in memory until a sink is set.
+ */
+public final class Analytics {
+
+    private static final String TAG = "Analytics";
+
+    private static final String SPOOL_FILE = "analytics.spool";
+
+    // Wait this long to gather more events before flushing
+    private static final long FLUSH_DELAY_MS = 5000;
+    // Flush immediately once this many events are queued, also the delivery batch size
+    private static final int FLUSH_BATCH_SIZE = 20;
+    // Events kept in the spool while the sink fails
+    private static final int MAX_SPOOL_EVENTS = 1000;
+
+    private static final ConcurrentLinkedQueue<AnalyticsEvent> sQueue = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger sQueueSize = new AtomicInteger();
+    private static final AtomicBoolean sFlushScheduled = new AtomicBoolean();
+
+    private static volatile Handler sHandler;
+    private static volatile AnalyticsSink sSink;
+    private static AnalyticsSpool sSpool;
+
+    private static final Runnable sFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            sFlushScheduled.set(false);
+            flush();
+        }
+    };
+
+    private Analytics() {}
+
+    /**
+     * Starts the background thread and delivers anything left in the spool file
+     * by a previous process.
+     * @param context context
+     * @param sink where events are delivered
+     */
+    public static synchronized void init(Context context, AnalyticsSink sink) {
+        if (sHandler != null) return;
+
+        sSpool = new AnalyticsSpool(new File(context.getApplicationContext().getFilesDir(), SPOOL_FILE),
+                FLUSH_BATCH_SIZE, MAX_SPOOL_EVENTS);
+        sSink = sink;
+
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        sHandler = new Handler(thread.getLooper());
+
+        scheduleFlush(0);
+    }
+
+    /**
+     * Logs an event. Safe to call from any thread.
+     * @param eventId event id
+     * @param label event label
+     */
+    public static void onEvent(String eventId, String label) {
+        sQueue.offer(new AnalyticsEvent(System.currentTimeMillis(), eventId, label));
+
+        if (sQueueSize.incrementAndGet() >= FLUSH_BATCH_SIZE) {
+            scheduleFlush(0);
+        } else {
+            scheduleFlush(FLUSH_DELAY_MS);
+        }
+    }
+
+    /**
+     * Requests an immediate flush, e.g. when the app goes to background
+     */
+    public static void flushNow() {
+        scheduleFlush(0);
+    }
+
+    private static void scheduleFlush(long delay) {
+        Handler handler = sHandler;
+        if (handler == null) return;
+
+        if (delay == 0) {
+            sFlushScheduled.set(true);
+            handler.removeCallbacks(sFlushRunnable);
+            handler.post(sFlushRunnable);
+        } else if (sFlushScheduled.compareAndSet(false, true)) {
+            handler.postDelayed(sFlushRunnable, delay);
+        }
+    }
+
+    /**
+     * Runs on the analytics thread
+     */
+    private static void flush() {
+        List<AnalyticsEvent> queued = new ArrayList<>();
+        AnalyticsEvent event;
+        while ((event = sQueue.poll()) != null) {
+            sQueueSize.decrementAndGet();
+            queued.add(event);
+        }
+
+        long dropped = sSpool.getDroppedCount();
+        try {
+            sSpool.append(queued);
+            sSpool.deliver(sSink);
+        } catch (IOException e) {
+            // Events not spooled stay in memory, they are written on next flush
+            Log.e(TAG, "Can not spool analytics events", e);
+        } catch (Exception e) {
+            // The undelivered events stay in the spool, they are retried on next flush
+            Log.e(TAG, "Can not deliver analytics events", e);
+        }
+        if (sSpool.getDroppedCount() > dropped) {
+            Log.w(TAG, (sSpool.getDroppedCount() - dropped) + " analytics events dropped, spool full");
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.loopX.XAlarm.analytics;
+
+/**
+ * One analytics event waiting to be delivered to an AnalyticsSink.
+ * Events are spooled to file as one tab separated line each.
+ */
+public class AnalyticsEvent {
+
+    private static final char SEPARATOR = '\t';
+
+    private final long timestamp;
+    private final String eventId;
+    private final String label;
+
+    public AnalyticsEvent(long timestamp, String eventId, String label) {
+        this.timestamp = timestamp;
+        this.eventId = eventId;
+        this.label = label;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return spool line of this event, without line break
+     */
+    public String toLine() {
+        return timestamp + String.valueOf(SEPARATOR) + clean(eventId) + SEPARATOR + clean(label);
+    }
+
+    /**
+     * Parses a spool line written by toLine
+     * @param line spool line
+     * @return event, or null if the line is damaged
+     */
+    public static AnalyticsEvent fromLine(String line) {
+        String[] fields = line.split(String.valueOf(SEPARATOR), -1);
+        if (fields.length != 3) return null;
+        try {
+            return new AnalyticsEvent(Long.parseLong(fields[0]), fields[1], fields[2]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String clean(String value) {
+        if (value == null) return "";
+        return value.replace(SEPARATOR, ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.loopX.XAlarm.analytics;
+
+import java.util.List;
+
+/**
+ * Destination of analytics events. Always called on the analytics background thread.
+ */
+public interface AnalyticsSink {
+
+    /**
+     * Delivers a batch of events. Throwing leaves the batch and the ones after it in
+     * the spool file, so they are sent again on next flush; events of the batch sent
+     * before the failure are sent twice.
+     * @param events events in the order they were logged
+     */
+    void send(List<AnalyticsEvent> events) throws Exception;
+}
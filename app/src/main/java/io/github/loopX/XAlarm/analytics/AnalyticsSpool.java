@@ -0,0 +1,144 @@
+package io.github.loopX.XAlarm.analytics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File of analytics events waiting for delivery, one AnalyticsEvent line each.
+ *
+ * Events are delivered in batches, oldest first, and each batch leaves the spool
+ * once the sink accepted it. Delivery is at least once: a batch the sink fails
+ * on is sent again whole, with the events after it, on the next delivery. While
+ * the sink keeps failing the spool keeps only the newest maxEvents events. Events
+ * that can not be written to the file stay in memory, bounded the same way.
+ *
+ * Not thread safe, used from the analytics thread.
+ */
+final class AnalyticsSpool {
+
+    private final File mFile;
+    private final int mBatchSize;
+    private final int mMaxEvents;
+    private long mDroppedCount;
+
+    // Appended events not written to the file yet, oldest first
+    private final List<AnalyticsEvent> mPending = new ArrayList<>();
+
+    /**
+     * @param batchSize events given to the sink at once
+     * @param maxEvents events kept when the sink fails, the oldest are dropped
+     */
+    AnalyticsSpool(File file, int batchSize, int maxEvents) {
+        mFile = file;
+        mBatchSize = batchSize;
+        mMaxEvents = maxEvents;
+    }
+
+    /**
+     * Adds events to the spool file. If it can not be written, the events are kept
+     * in memory, the newest maxEvents of them, and written first on next append.
+     */
+    void append(List<AnalyticsEvent> events) throws IOException {
+        mPending.addAll(events);
+        if (mPending.isEmpty()) return;
+
+        try {
+            Writer writer = new FileWriter(mFile, true);
+            try {
+                write(writer, mPending);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            int excess = mPending.size() - mMaxEvents;
+            if (excess > 0) {
+                mPending.subList(0, excess).clear();
+                mDroppedCount += excess;
+            }
+            throw e;
+        }
+        mPending.clear();
+    }
+
+    /**
+     * Delivers the spooled events to the sink
+     * @throws Exception thrown by the sink, after the undelivered events were kept
+     * @throws IOException if the spool can not be read or rewritten
+     */
+    void deliver(AnalyticsSink sink) throws Exception {
+        if (!mFile.exists()) return;
+
+        List<AnalyticsEvent> events = read();
+        int delivered = 0;
+        try {
+            while (delivered < events.size()) {
+                int end = Math.min(delivered + mBatchSize, events.size());
+                sink.send(events.subList(delivered, end));
+                delivered = end;
+            }
+        } catch (Exception e) {
+            keep(events, delivered);
+            throw e;
+        }
+
+        if (!mFile.delete()) {
+            throw new IOException("Can not delete " + mFile);
+        }
+    }
+
+    /**
+     * @return events dropped so far because the spool was full
+     */
+    long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * Replaces the spool with the undelivered events, the newest maxEvents of them
+     */
+    private void keep(List<AnalyticsEvent> events, int delivered) throws IOException {
+        int start = Math.max(delivered, events.size() - mMaxEvents);
+        mDroppedCount += start - delivered;
+
+        File temp = new File(mFile.getPath() + ".tmp");
+        Writer writer = new FileWriter(temp);
+        try {
+            write(writer, events.subList(start, events.size()));
+        } finally {
+            writer.close();
+        }
+        if (!temp.renameTo(mFile)) {
+            throw new IOException("Can not rename " + temp);
+        }
+    }
+
+    private List<AnalyticsEvent> read() throws IOException {
+        List<AnalyticsEvent> events = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new FileReader(mFile));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                AnalyticsEvent event = AnalyticsEvent.fromLine(line);
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return events;
+    }
+
+    private static void write(Writer writer, List<AnalyticsEvent> events) throws IOException {
+        for (AnalyticsEvent event : events) {
+            writer.write(event.toLine());
+            writer.write('\n');
+        }
+    }
+}
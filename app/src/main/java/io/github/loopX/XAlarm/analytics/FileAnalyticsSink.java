@@ -0,0 +1,37 @@
+package io.github.loopX.XAlarm.analytics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Local stand-in for the analytics SDK. Delivered events are appended to a file,
+ * which is handy in debug builds and tests.
+ */
+public class FileAnalyticsSink implements AnalyticsSink {
+
+    private final File mFile;
+
+    public FileAnalyticsSink(File file) {
+        mFile = file;
+    }
+
+    @Override
+    public void send(List<AnalyticsEvent> events) throws IOException {
+        Writer writer = new FileWriter(mFile, true);
+        try {
+            for (AnalyticsEvent event : events) {
+                writer.write(event.toLine());
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.loopX.XAlarm.analytics;
+
+import android.content.Context;
+
+import com.tendcloud.tenddata.TCAgent;
+
+import java.util.List;
+
+/**
+ * Forwards events to the TalkingData SDK
+ */
+public class TalkingDataSink implements AnalyticsSink {
+
+    private final Context mContext;
+
+    public TalkingDataSink(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    @Override
+    public void send(List<AnalyticsEvent> events) {
+        for (AnalyticsEvent event : events) {
+            TCAgent.onEvent(mContext, event.getEventId(), event.getLabel());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.loopX.XAlarm.audio;
+
+/**
+ * Volume crescendo applied to PCM buffers on their way to the audio track.
+ *
+ * The gain rises from silence to full volume over the configured duration. It is
+ * computed once per buffer from the curve and ramped linearly from sample to
+ * sample inside the buffer, so the volume has no steps. Nothing is allocated by
+ * apply, and once the crescendo is over apply returns right away.
+ *
+ * Used by one playback thread, not thread safe.
+ */
+public final class GainEnvelope {
+
+    // Gain proportional to time
+    public static final int CURVE_LINEAR = 0;
+    // Constant loudness increase per second, as the ear hears it
+    public static final int CURVE_PERCEPTUAL = 1;
+
+    // Range in dB covered by the perceptual curve before it reaches silence
+    static final double PERCEPTUAL_RANGE_DB = 40;
+
+    private static final double PERCEPTUAL_FLOOR = Math.pow(10, -PERCEPTUAL_RANGE_DB / 20);
+
+    private final long mDurationFrames;
+    private final int mCurve;
+    private long mPosition;
+
+    /**
+     * @param durationSeconds time to reach full volume, 0 for full volume at once
+     * @param sampleRate frames per second of the buffers given to apply
+     * @param curve CURVE_LINEAR or CURVE_PERCEPTUAL
+     */
+    public GainEnvelope(int durationSeconds, int sampleRate, int curve) {
+        mDurationFrames = Math.max(0, durationSeconds) * (long) sampleRate;
+        mCurve = curve;
+    }
+
+    public boolean isDone() {
+        return mPosition >= mDurationFrames;
+    }
+
+    /**
+     * @return gain of the next frame, from 0 to 1
+     */
+    public float getGain() {
+        return gainAt(mPosition);
+    }
+
+    /**
+     * @return fraction of the crescendo played so far, from 0 to 1
+     */
+    public float getProgress() {
+        return mDurationFrames == 0 ? 1f : Math.min(1f, mPosition / (float) mDurationFrames);
+    }
+
+    /**
+     * Scales interleaved samples in place and moves the envelope forward
+     * @param frames number of frames at the start of samples
+     */
+    public void apply(short[] samples, int frames, int channelCount) {
+        if (isDone() || frames <= 0) return;
+
+        float gain = gainAt(mPosition);
+        float step = (gainAt(mPosition + frames) - gain) / frames;
+
+        int index = 0;
+        for (int frame = 0; frame < frames; frame++) {
+            for (int channel = 0; channel < channelCount; channel++) {
+                // Gain never exceeds 1, the product always fits in a short
+                samples[index] = (short) (samples[index] * gain);
+                index++;
+            }
+            gain += step;
+        }
+        mPosition += frames;
+    }
+
+    /**
+     * Inverse of the curve, lets other outputs follow the crescendo in time
+     * @param gain gain from 0 to 1
+     * @param curve CURVE_LINEAR or CURVE_PERCEPTUAL
+     * @return fraction of the crescendo at which the gain is reached, from 0 to 1
+     */
+    public static float progressAt(float gain, int curve) {
+        if (gain <= 0) return 0f;
+        if (gain >= 1) return 1f;
+
+        if (curve == CURVE_PERCEPTUAL) {
+            double level = gain * (1 - PERCEPTUAL_FLOOR) + PERCEPTUAL_FLOOR;
+            return (float) (1 + Math.log10(level) * 20 / PERCEPTUAL_RANGE_DB);
+        }
+        return gain;
+    }
+
+    float gainAt(long frame) {
+        if (frame >= mDurationFrames) return 1f;
+
+        double t = frame / (double) mDurationFrames;
+        if (mCurve == CURVE_PERCEPTUAL) {
+            // Exponential from the floor to 1, shifted down to start at 0
+            double gain = Math.pow(10, (t - 1) * PERCEPTUAL_RANGE_DB / 20);
+            return (float) ((gain - PERCEPTUAL_FLOOR) / (1 - PERCEPTUAL_FLOOR));
+        }
+        return (float) t;
+    }
+}
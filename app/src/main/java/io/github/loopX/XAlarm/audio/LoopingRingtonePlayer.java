@@ -0,0 +1,332 @@
+package io.github.loopX.XAlarm.audio;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+
+import io.github.loopX.XAlarm.metrics.LatencyHistogram;
+import io.github.loopX.XAlarm.metrics.Metrics;
+
+/**
+ * Plays a ringtone in a gapless loop through an AudioTrack on the alarm stream.
+ *
+ * A ringtone is decoded once into a PcmLoop, trimmed to its audible part. On the
+ * first play the loop is streamed while it is being decoded, so sound starts as soon
+ * as the first buffer is out of the codec; afterwards the decoded loop is kept and
+ * replayed from memory without touching the codec again. The playback thread only
+ * copies PCM into one reused buffer and scales it by the crescendo GainEnvelope,
+ * nothing is allocated while looping.
+ *
+ * Only the last decoded loop is kept, softly referenced. Requires Jelly Bean for
+ * MediaCodec, see isSupported.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public final class LoopingRingtonePlayer {
+
+    private static final String TAG = "LoopingRingtonePlayer";
+
+    public interface Listener {
+        /**
+         * First buffer was handed to the audio track. Called on the main thread.
+         */
+        void onPlaybackStarted();
+
+        /**
+         * The ringtone could not be decoded or played. Called on the main thread.
+         */
+        void onPlaybackFailed(Uri uri);
+    }
+
+    // Frames copied to the audio track at once
+    private static final int CHUNK_FRAMES = 1024;
+
+    private static final LatencyHistogram DECODE_TIME = Metrics.histogram("ringtone.decode");
+
+    private static final Object sCacheLock = new Object();
+    private static String sCachedUri;
+    private static SoftReference<PcmLoop> sCachedLoop;
+
+    private final Context mContext;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Listener mListener;
+
+    private PlaybackThread mThread;
+
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    public LoopingRingtonePlayer(Context context, Listener listener) {
+        mContext = context.getApplicationContext();
+        mListener = listener;
+    }
+
+    /**
+     * Starts looping uri at full volume, does nothing if already playing
+     */
+    public void play(Uri uri) {
+        play(uri, 0, GainEnvelope.CURVE_LINEAR);
+    }
+
+    /**
+     * Starts looping uri, does nothing if already playing
+     * @param crescendoSeconds time to rise from silence to full volume, 0 to start at full volume
+     * @param crescendoCurve GainEnvelope.CURVE_*
+     */
+    public void play(Uri uri, int crescendoSeconds, int crescendoCurve) {
+        if (mThread != null) return;
+
+        mThread = new PlaybackThread(uri, crescendoSeconds, crescendoCurve);
+        mThread.start();
+    }
+
+    /**
+     * Stops playback without waiting for the playback thread to exit
+     */
+    public void stop() {
+        if (mThread != null) {
+            mThread.quit();
+            mThread = null;
+        }
+    }
+
+    public boolean isPlaying() {
+        return mThread != null;
+    }
+
+    private static PcmLoop getCachedLoop(Uri uri) {
+        synchronized (sCacheLock) {
+            if (sCachedLoop != null && uri.toString().equals(sCachedUri)) {
+                return sCachedLoop.get();
+            }
+            return null;
+        }
+    }
+
+    private static void putCachedLoop(Uri uri, PcmLoop loop) {
+        synchronized (sCacheLock) {
+            sCachedUri = uri.toString();
+            sCachedLoop = new SoftReference<>(loop);
+        }
+    }
+
+    private final class PlaybackThread extends Thread {
+
+        private final Uri mUri;
+        private final int mCrescendoSeconds;
+        private final int mCrescendoCurve;
+        private final Object mTrackLock = new Object();
+
+        private volatile boolean mQuit;
+
+        // Guarded by mTrackLock
+        private AudioTrack mTrack;
+
+        private short[] mChunk;
+        private GainEnvelope mEnvelope;
+        private boolean mStarted;
+
+        PlaybackThread(Uri uri, int crescendoSeconds, int crescendoCurve) {
+            super(TAG);
+            mUri = uri;
+            mCrescendoSeconds = crescendoSeconds;
+            mCrescendoCurve = crescendoCurve;
+        }
+
+        void quit() {
+            mQuit = true;
+            synchronized (mTrackLock) {
+                // Unblocks a pending write
+                if (mTrack != null) {
+                    mTrack.pause();
+                    mTrack.flush();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+
+            RingtoneDecoder decoder = null;
+            try {
+                PcmLoop loop = getCachedLoop(mUri);
+                int position = 0;
+
+                if (loop == null) {
+                    long start = System.nanoTime();
+                    decoder = new RingtoneDecoder(mContext, mUri);
+
+                    // First pass, played while decoding
+                    boolean decoding = true;
+                    while (decoding && !mQuit) {
+                        decoding = decoder.decodeStep();
+
+                        PcmLoopBuilder builder = decoder.getBuilder();
+                        if (builder != null && builder.getAudibleFrameCount() > position) {
+                            if (!openTrack(builder.getSampleRate(), builder.getChannelCount())) return;
+                            position = writeFrames(builder.getSamples(), position,
+                                    builder.getAudibleFrameCount());
+                        }
+                    }
+                    if (mQuit) return;
+
+                    loop = decoder.getBuilder() != null ? decoder.getBuilder().build() : null;
+                    if (loop == null) {
+                        throw new IOException("Nothing audible in " + mUri);
+                    }
+                    DECODE_TIME.recordSince(start);
+                    putCachedLoop(mUri, loop);
+
+                    decoder.release();
+                    decoder = null;
+                }
+
+                if (!openTrack(loop.getSampleRate(), loop.getChannelCount())) return;
+
+                position %= loop.getFrameCount();
+                while (!mQuit) {
+                    position = loop.read(position, mChunk, CHUNK_FRAMES);
+                    writeChunk(CHUNK_FRAMES);
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Failed to play " + mUri, e);
+                notifyFailed();
+            } finally {
+                if (decoder != null) {
+                    decoder.release();
+                }
+                releaseTrack();
+            }
+        }
+
+        /**
+         * Creates the track on first use
+         * @return false if the format can not be played
+         */
+        private boolean openTrack(int sampleRate, int channelCount) {
+            if (mTrack != null) return true;
+
+            int channelConfig;
+            if (channelCount == 1) {
+                channelConfig = AudioFormat.CHANNEL_OUT_MONO;
+            } else if (channelCount == 2) {
+                channelConfig = AudioFormat.CHANNEL_OUT_STEREO;
+            } else {
+                Log.e(TAG, "Unsupported channel count " + channelCount + " in " + mUri);
+                notifyFailed();
+                return false;
+            }
+
+            // Smallest buffer which does not underrun, for the lowest output latency
+            int minBufferSize = AudioTrack.getMinBufferSize(sampleRate, channelConfig,
+                    AudioFormat.ENCODING_PCM_16BIT);
+            int bufferSize = Math.max(minBufferSize * 2, CHUNK_FRAMES * channelCount * 2);
+
+            AudioTrack track = new AudioTrack(AudioManager.STREAM_ALARM, sampleRate, channelConfig,
+                    AudioFormat.ENCODING_PCM_16BIT, bufferSize, AudioTrack.MODE_STREAM);
+            if (track.getState() != AudioTrack.STATE_INITIALIZED) {
+                track.release();
+                Log.e(TAG, "Failed to create audio track for " + mUri);
+                notifyFailed();
+                return false;
+            }
+
+            synchronized (mTrackLock) {
+                if (mQuit) {
+                    track.release();
+                    return false;
+                }
+                mTrack = track;
+                mTrack.play();
+            }
+            mChunk = new short[CHUNK_FRAMES * channelCount];
+            mEnvelope = new GainEnvelope(mCrescendoSeconds, sampleRate, mCrescendoCurve);
+            return true;
+        }
+
+        /**
+         * Writes frames from..to of samples to the track
+         * @return to
+         */
+        private int writeFrames(short[] samples, int from, int to) {
+            int channelCount = mTrack.getChannelCount();
+            int position = from;
+            while (position < to && !mQuit) {
+                int frames = Math.min(CHUNK_FRAMES, to - position);
+                System.arraycopy(samples, position * channelCount, mChunk, 0, frames * channelCount);
+                writeChunk(frames);
+                position += frames;
+            }
+            return position;
+        }
+
+        /**
+         * Applies the crescendo to the first frames of mChunk and writes them,
+         * blocks until the track takes them
+         */
+        private void writeChunk(int frames) {
+            mEnvelope.apply(mChunk, frames, mTrack.getChannelCount());
+
+            int samples = frames * mTrack.getChannelCount();
+            int written = 0;
+            while (written < samples && !mQuit) {
+                int result = mTrack.write(mChunk, written, samples - written);
+                if (result < 0) {
+                    throw new IllegalStateException("AudioTrack write failed: " + result);
+                }
+                written += result;
+            }
+
+            if (!mStarted && !mQuit) {
+                mStarted = true;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mThread == PlaybackThread.this) {
+                            mListener.onPlaybackStarted();
+                        }
+                    }
+                });
+            }
+        }
+
+        private void releaseTrack() {
+            synchronized (mTrackLock) {
+                if (mTrack != null) {
+                    if (mTrack.getPlayState() != AudioTrack.PLAYSTATE_STOPPED) {
+                        mTrack.stop();
+                    }
+                    mTrack.release();
+                    mTrack = null;
+                }
+            }
+        }
+
+        private void notifyFailed() {
+            if (mQuit) return;
+
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    // Not stopped or replaced in the meantime
+                    if (mThread == PlaybackThread.this) {
+                        mThread = null;
+                        mListener.onPlaybackFailed(mUri);
+                    }
+                }
+            });
+        }
+    }
+}
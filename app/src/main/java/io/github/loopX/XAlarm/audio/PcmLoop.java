@@ -0,0 +1,61 @@
+package io.github.loopX.XAlarm.audio;
+
+/**
+ * Decoded ringtone as 16 bit PCM, played in a loop.
+ *
+ * Samples are interleaved by channel. The loop restarts at its first frame right
+ * after its last one, without any gap. Immutable once built, so one loop can be
+ * shared by every player of the same ringtone.
+ */
+public final class PcmLoop {
+
+    private final short[] mSamples;
+    private final int mFrameCount;
+    private final int mChannelCount;
+    private final int mSampleRate;
+
+    PcmLoop(short[] samples, int frameCount, int channelCount, int sampleRate) {
+        mSamples = samples;
+        mFrameCount = frameCount;
+        mChannelCount = channelCount;
+        mSampleRate = sampleRate;
+    }
+
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public int getChannelCount() {
+        return mChannelCount;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getSizeInBytes() {
+        return mFrameCount * mChannelCount * 2;
+    }
+
+    /**
+     * Copies frames to out, wrapping around at the end of the loop
+     * @param position first frame to copy, from 0 to getFrameCount() - 1
+     * @param out interleaved destination, at least frames * getChannelCount() long
+     * @param frames number of frames to copy
+     * @return position of the frame following the last one copied
+     */
+    public int read(int position, short[] out, int frames) {
+        int copied = 0;
+        while (copied < frames) {
+            int count = Math.min(frames - copied, mFrameCount - position);
+            System.arraycopy(mSamples, position * mChannelCount,
+                    out, copied * mChannelCount, count * mChannelCount);
+            copied += count;
+            position += count;
+            if (position == mFrameCount) {
+                position = 0;
+            }
+        }
+        return position;
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.loopX.XAlarm.audio;
+
+import java.util.Arrays;
+
+/**
+ * Builds a PcmLoop from decoded PCM chunks, trimming it to its audible part.
+ *
+ * Compressed ringtones decode with encoder delay and padding at both ends, which
+ * would play as a gap every time the loop wraps. Frames given to skipFrames are
+ * dropped, then frames where every sample is within the silence threshold are
+ * dropped before the first and after the last audible frame.
+ *
+ * A frame up to the last audible one is known to be part of the loop as soon as it
+ * is appended, so getSamples and getAudibleFrameCount let a player stream the first
+ * pass while the rest is still being decoded.
+ */
+public final class PcmLoopBuilder {
+
+    // About -54 dBFS
+    public static final int DEFAULT_SILENCE_THRESHOLD = 64;
+
+    // Longer ringtones only loop over their beginning
+    public static final int MAX_LOOP_SECONDS = 60;
+
+    private static final int INITIAL_CAPACITY_SECONDS = 4;
+
+    private final int mChannelCount;
+    private final int mSampleRate;
+    private final int mSilenceThreshold;
+    private final int mMaxFrames;
+
+    private short[] mSamples;
+    // Frames stored, starting at the first audible one
+    private int mFrameCount;
+    // Frames stored up to and including the last audible one
+    private int mAudibleFrames;
+    private int mFramesToSkip;
+
+    /**
+     * @param silenceThreshold largest absolute sample value treated as silence
+     */
+    public PcmLoopBuilder(int channelCount, int sampleRate, int silenceThreshold) {
+        if (channelCount <= 0 || sampleRate <= 0) {
+            throw new IllegalArgumentException("Invalid format: " + channelCount
+                    + " channels, " + sampleRate + " Hz");
+        }
+        mChannelCount = channelCount;
+        mSampleRate = sampleRate;
+        mSilenceThreshold = silenceThreshold;
+        mMaxFrames = sampleRate * MAX_LOOP_SECONDS;
+        mSamples = new short[Math.min(mMaxFrames, sampleRate * INITIAL_CAPACITY_SECONDS) * channelCount];
+    }
+
+    /**
+     * Drops the next frames whatever their content, e.g. the encoder delay
+     */
+    public void skipFrames(int frames) {
+        mFramesToSkip += Math.max(0, frames);
+    }
+
+    /**
+     * @param pcm interleaved samples
+     * @param offset index of the first sample
+     * @param length number of samples, a multiple of the channel count
+     */
+    public void append(short[] pcm, int offset, int length) {
+        int frames = length / mChannelCount;
+        int frame = 0;
+
+        if (mFramesToSkip > 0) {
+            frame = Math.min(mFramesToSkip, frames);
+            mFramesToSkip -= frame;
+        }
+
+        if (mFrameCount == 0) {
+            // Leading silence
+            while (frame < frames && isSilent(pcm, offset + frame * mChannelCount)) {
+                frame++;
+            }
+        }
+
+        int count = Math.min(frames - frame, mMaxFrames - mFrameCount);
+        if (count <= 0) return;
+
+        ensureCapacity(mFrameCount + count);
+        System.arraycopy(pcm, offset + frame * mChannelCount,
+                mSamples, mFrameCount * mChannelCount, count * mChannelCount);
+
+        for (int i = count - 1; i >= 0; i--) {
+            if (!isSilent(pcm, offset + (frame + i) * mChannelCount)) {
+                mAudibleFrames = mFrameCount + i + 1;
+                break;
+            }
+        }
+        mFrameCount += count;
+    }
+
+    public int getChannelCount() {
+        return mChannelCount;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    /**
+     * @return number of frames from getSamples which are part of the loop for sure
+     */
+    public int getAudibleFrameCount() {
+        return mAudibleFrames;
+    }
+
+    /**
+     * @return interleaved samples stored so far, only valid until the next append
+     */
+    public short[] getSamples() {
+        return mSamples;
+    }
+
+    /**
+     * @return the trimmed loop, null if nothing audible was appended
+     */
+    public PcmLoop build() {
+        if (mAudibleFrames == 0) return null;
+
+        short[] samples = Arrays.copyOf(mSamples, mAudibleFrames * mChannelCount);
+        return new PcmLoop(samples, mAudibleFrames, mChannelCount, mSampleRate);
+    }
+
+    private boolean isSilent(short[] pcm, int index) {
+        for (int channel = 0; channel < mChannelCount; channel++) {
+            int sample = pcm[index + channel];
+            if (sample > mSilenceThreshold || sample < -mSilenceThreshold) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensureCapacity(int frames) {
+        int samples = frames * mChannelCount;
+        if (samples > mSamples.length) {
+            int capacity = Math.min(mMaxFrames * mChannelCount, Math.max(samples, mSamples.length * 2));
+            mSamples = Arrays.copyOf(mSamples, capacity);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package io.github.loopX.XAlarm.audio;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.os.Build;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Decodes the audio track of a ringtone to 16 bit PCM with MediaExtractor and
+ * MediaCodec, feeding a PcmLoopBuilder one output buffer at a time.
+ *
+ * Not thread safe, used by the playback thread only.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+final class RingtoneDecoder {
+
+    private static final long TIMEOUT_US = 10000;
+
+    // Not public in MediaFormat before API 30, set by some extractors
+    private static final String KEY_ENCODER_DELAY = "encoder-delay";
+
+    private final MediaExtractor mExtractor;
+    private final MediaCodec mCodec;
+    private final MediaFormat mTrackFormat;
+    private final MediaCodec.BufferInfo mInfo = new MediaCodec.BufferInfo();
+
+    private ByteBuffer[] mInputBuffers;
+    private ByteBuffer[] mOutputBuffers;
+    private short[] mScratch = new short[4096];
+
+    private PcmLoopBuilder mBuilder;
+    private boolean mInputDone;
+
+    RingtoneDecoder(Context context, Uri uri) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            extractor.setDataSource(context, uri, null);
+
+            int track = findAudioTrack(extractor);
+            if (track < 0) {
+                throw new IOException("No audio track in " + uri);
+            }
+            extractor.selectTrack(track);
+            mTrackFormat = extractor.getTrackFormat(track);
+
+            codec = MediaCodec.createDecoderByType(mTrackFormat.getString(MediaFormat.KEY_MIME));
+            codec.configure(mTrackFormat, null, null, 0);
+            codec.start();
+        } catch (IOException | RuntimeException e) {
+            if (codec != null) {
+                codec.release();
+            }
+            extractor.release();
+            throw e;
+        }
+
+        mExtractor = extractor;
+        mCodec = codec;
+        mInputBuffers = mCodec.getInputBuffers();
+        mOutputBuffers = mCodec.getOutputBuffers();
+    }
+
+    /**
+     * Queues input if the codec takes some and drains at most one output buffer
+     * @return false once the end of the stream has been decoded
+     */
+    boolean decodeStep() {
+        if (!mInputDone) {
+            int index = mCodec.dequeueInputBuffer(TIMEOUT_US);
+            if (index >= 0) {
+                ByteBuffer buffer = mInputBuffers[index];
+                buffer.clear();
+                int size = mExtractor.readSampleData(buffer, 0);
+                if (size < 0) {
+                    mCodec.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                    mInputDone = true;
+                } else {
+                    mCodec.queueInputBuffer(index, 0, size, mExtractor.getSampleTime(), 0);
+                    mExtractor.advance();
+                }
+            }
+        }
+
+        int index = mCodec.dequeueOutputBuffer(mInfo, TIMEOUT_US);
+        if (index >= 0) {
+            if (mInfo.size > 0) {
+                appendOutput(mOutputBuffers[index]);
+            }
+            mCodec.releaseOutputBuffer(index, false);
+            return (mInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) == 0;
+        } else if (index == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+            mOutputBuffers = mCodec.getOutputBuffers();
+        } else if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+            if (mBuilder == null) {
+                mBuilder = createBuilder(mCodec.getOutputFormat());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the builder fed so far, null until the output format is known
+     */
+    PcmLoopBuilder getBuilder() {
+        return mBuilder;
+    }
+
+    void release() {
+        try {
+            mCodec.stop();
+        } catch (IllegalStateException e) {
+            // Already stopped by a codec error
+        }
+        mCodec.release();
+        mExtractor.release();
+    }
+
+    private void appendOutput(ByteBuffer buffer) {
+        if (mBuilder == null) {
+            // Some decoders never report a format change, the track format then applies
+            mBuilder = createBuilder(mTrackFormat);
+        }
+
+        buffer.position(mInfo.offset);
+        buffer.limit(mInfo.offset + mInfo.size);
+        ShortBuffer samples = buffer.order(ByteOrder.nativeOrder()).asShortBuffer();
+
+        int count = samples.remaining();
+        if (mScratch.length < count) {
+            mScratch = new short[count];
+        }
+        samples.get(mScratch, 0, count);
+        mBuilder.append(mScratch, 0, count);
+    }
+
+    private static PcmLoopBuilder createBuilder(MediaFormat format) {
+        PcmLoopBuilder builder = new PcmLoopBuilder(
+                format.getInteger(MediaFormat.KEY_CHANNEL_COUNT),
+                format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                PcmLoopBuilder.DEFAULT_SILENCE_THRESHOLD);
+        if (format.containsKey(KEY_ENCODER_DELAY)) {
+            builder.skipFrames(format.getInteger(KEY_ENCODER_DELAY));
+        }
+        return builder;
+    }
+
+    private static int findAudioTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -5,8 +5,6 @@ import android.database.Cursor;
 import android.database.CursorWrapper;
 import android.net.Uri;
 
-import java.util.UUID;
-
 import io.github.loopX.XAlarm.module.Alarm.Alarm;
 
 /**
@@ -22,7 +20,7 @@ public class AlarmCursorWrapper extends CursorWrapper {
 
         // Get all fields from DB
 
-        String uuidString = getString(getColumnIndex(AlarmTable.Columns.UUID));
+        int id = getInt(getColumnIndex(AlarmTable.Columns.ID));
         int timeHour = getInt(getColumnIndex(AlarmTable.Columns.HOUR));
         int timeMinute = getInt(getColumnIndex(AlarmTable.Columns.MINUTE));
         int unlockType = getInt(getColumnIndex(AlarmTable.Columns.UNLOCK_TYPE));
@@ -30,10 +28,15 @@ public class AlarmCursorWrapper extends CursorWrapper {
         boolean isVibrate = (getInt(getColumnIndex(AlarmTable.Columns.VIBRATE)) != 0);
         boolean isEnabled = (getInt(getColumnIndex(AlarmTable.Columns.ENABLED)) != 0);
         Uri alarmTone = Uri.parse(getString(getColumnIndex(AlarmTable.Columns.TONE)));
+        int crescendoSeconds = getInt(getColumnIndex(AlarmTable.Columns.CRESCENDO_SECONDS));
+        int crescendoCurve = getInt(getColumnIndex(AlarmTable.Columns.CRESCENDO_CURVE));
+        int snoozeMinutes = getInt(getColumnIndex(AlarmTable.Columns.SNOOZE_MINUTES));
+        int snoozeMaxCount = getInt(getColumnIndex(AlarmTable.Columns.SNOOZE_MAX_COUNT));
+        int vibrationPattern = getInt(getColumnIndex(AlarmTable.Columns.VIBRATION_PATTERN));
 
         // Create a new alarm
 
-        Alarm alarm = new Alarm(UUID.fromString(uuidString));
+        Alarm alarm = new Alarm(id);
 
         alarm.setTimeHour(timeHour);
         alarm.setTimeMinute(timeMinute);
@@ -45,7 +48,12 @@ public class AlarmCursorWrapper extends CursorWrapper {
         }
 
         alarm.setVibrate(isVibrate);
+        alarm.setVibrationPattern(vibrationPattern);
         alarm.setEnabled(isEnabled);
+        alarm.setCrescendoSeconds(crescendoSeconds);
+        alarm.setCrescendoCurve(crescendoCurve);
+        alarm.setSnoozeMinutes(snoozeMinutes);
+        alarm.setSnoozeMaxCount(snoozeMaxCount);
 
         return alarm;
     }
@@ -5,10 +5,18 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
+import io.github.loopX.XAlarm.audio.GainEnvelope;
+import io.github.loopX.XAlarm.module.Alarm.Alarm;
+import io.github.loopX.XAlarm.vibration.WaveformLibrary;
+
 
 public class AlarmDBHelper extends SQLiteOpenHelper {
 
-    private static final int DB_VERSION = 1;
+    // 2: crescendo columns
+    // 3: snooze columns and table
+    // 4: fire ledger table
+    // 5: vibration pattern column
+    private static final int DB_VERSION = 5;
     private static final String DB_NAME = "xalarm.db";
 
     public AlarmDBHelper(Context context) {
@@ -19,18 +27,25 @@ public class AlarmDBHelper extends SQLiteOpenHelper {
     public void onCreate(SQLiteDatabase db) {
 
         db.execSQL( "create table " + AlarmTable.NAME + "(" +
-                " _id integer primary key autoincrement, " +
-                AlarmTable.Columns.UUID + ", " +
+                AlarmTable.Columns.ID + " integer primary key autoincrement, " +
                 AlarmTable.Columns.ENABLED + ", " +
                 AlarmTable.Columns.HOUR + ", " +
                 AlarmTable.Columns.MINUTE + ", " +
                 AlarmTable.Columns.UNLOCK_TYPE + ", " +
                 AlarmTable.Columns.DAYS + ", " +
                 AlarmTable.Columns.TONE + ", " +
-                AlarmTable.Columns.VIBRATE +
+                AlarmTable.Columns.VIBRATE + ", " +
+                AlarmTable.Columns.CRESCENDO_SECONDS + " integer default 0, " +
+                AlarmTable.Columns.CRESCENDO_CURVE + " integer default " + GainEnvelope.CURVE_PERCEPTUAL + ", " +
+                AlarmTable.Columns.SNOOZE_MINUTES + " integer default 0, " +
+                AlarmTable.Columns.SNOOZE_MAX_COUNT + " integer default " + Alarm.DEFAULT_SNOOZE_MAX_COUNT + ", " +
+                AlarmTable.Columns.VIBRATION_PATTERN + " integer default " + WaveformLibrary.DEFAULT +
                 ")"
         );
 
+        createSnoozeTable(db);
+        createFireLedgerTable(db);
+
     }
 
     @Override
@@ -39,10 +54,49 @@ public class AlarmDBHelper extends SQLiteOpenHelper {
         Log.w(this.getClass().getSimpleName(),
                 "Upgrading database from version " + oldVer + " to " + newVer);
 
-        // Drop table
-        db.execSQL("DROP TABLE IF EXISTS " + AlarmTable.NAME);
+        // Each step keeps the alarms of the previous version
+        if (oldVer < 2) {
+            db.execSQL("ALTER TABLE " + AlarmTable.NAME + " ADD COLUMN " +
+                    AlarmTable.Columns.CRESCENDO_SECONDS + " integer default 0");
+            db.execSQL("ALTER TABLE " + AlarmTable.NAME + " ADD COLUMN " +
+                    AlarmTable.Columns.CRESCENDO_CURVE + " integer default " + GainEnvelope.CURVE_PERCEPTUAL);
+        }
+        if (oldVer < 3) {
+            db.execSQL("ALTER TABLE " + AlarmTable.NAME + " ADD COLUMN " +
+                    AlarmTable.Columns.SNOOZE_MINUTES + " integer default 0");
+            db.execSQL("ALTER TABLE " + AlarmTable.NAME + " ADD COLUMN " +
+                    AlarmTable.Columns.SNOOZE_MAX_COUNT + " integer default " + Alarm.DEFAULT_SNOOZE_MAX_COUNT);
+            createSnoozeTable(db);
+        }
+        if (oldVer < 4) {
+            createFireLedgerTable(db);
+        }
+        if (oldVer < 5) {
+            db.execSQL("ALTER TABLE " + AlarmTable.NAME + " ADD COLUMN " +
+                    AlarmTable.Columns.VIBRATION_PATTERN + " integer default " + WaveformLibrary.DEFAULT);
+        }
+    }
 
-        // Create new table
-        onCreate(db);
+    private static void createSnoozeTable(SQLiteDatabase db) {
+        db.execSQL( "create table " + SnoozeTable.NAME + "(" +
+                SnoozeTable.Columns.ALARM_ID + " integer primary key, " +
+                SnoozeTable.Columns.FIRE_TIME + " integer, " +
+                SnoozeTable.Columns.COUNT + " integer" +
+                ")"
+        );
+    }
+
+    private static void createFireLedgerTable(SQLiteDatabase db) {
+        db.execSQL( "create table " + FireLedgerTable.NAME + "(" +
+                FireLedgerTable.Columns.ID + " integer primary key autoincrement, " +
+                FireLedgerTable.Columns.TYPE + " integer, " +
+                FireLedgerTable.Columns.REQUEST_CODE + " integer, " +
+                FireLedgerTable.Columns.ALARM_ID + " integer, " +
+                FireLedgerTable.Columns.SCHEDULED_TIME + " integer, " +
+                FireLedgerTable.Columns.TIME + " integer" +
+                ")"
+        );
+        db.execSQL("create index " + FireLedgerTable.INDEX_SCHEDULED_TIME + " on " +
+                FireLedgerTable.NAME + "(" + FireLedgerTable.Columns.SCHEDULED_TIME + ")");
     }
 }
@@ -2,13 +2,18 @@ package io.github.loopX.XAlarm.database;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
+import io.github.loopX.XAlarm.metrics.Gauge;
+import io.github.loopX.XAlarm.metrics.LatencyHistogram;
+import io.github.loopX.XAlarm.metrics.Metrics;
 import io.github.loopX.XAlarm.module.Alarm.Alarm;
+import io.github.loopX.XAlarm.module.Alarm.FireLedger;
+import io.github.loopX.XAlarm.module.Alarm.SnoozeTimeline;
 
 /**
  * This class is service level for alarm. It provides functions to get/update/delete
@@ -16,6 +21,15 @@ import io.github.loopX.XAlarm.module.Alarm.Alarm;
  */
 public class AlarmDBService {
 
+    private static final LatencyHistogram GET_ALARMS_LATENCY = Metrics.histogram("db.get_alarms");
+    private static final LatencyHistogram GET_ALARM_LATENCY = Metrics.histogram("db.get_alarm");
+    private static final LatencyHistogram ADD_ALARM_LATENCY = Metrics.histogram("db.add_alarm");
+    private static final LatencyHistogram UPDATE_ALARM_LATENCY = Metrics.histogram("db.update_alarm");
+    private static final LatencyHistogram DELETE_ALARM_LATENCY = Metrics.histogram("db.delete_alarm");
+    private static final LatencyHistogram PUT_SNOOZE_LATENCY = Metrics.histogram("db.put_snooze");
+    private static final LatencyHistogram APPEND_FIRE_EVENTS_LATENCY = Metrics.histogram("db.append_fire_events");
+    private static final Gauge ALARM_COUNT = Metrics.gauge("db.alarm_count");
+
     private static AlarmDBService mAlarmDBService;
     private Context mContext;
     private SQLiteDatabase mDatabase;
@@ -25,7 +39,7 @@ public class AlarmDBService {
         mDatabase = new AlarmDBHelper(mContext).getWritableDatabase();
     }
 
-    public static AlarmDBService getInstance(Context context) {
+    public static synchronized AlarmDBService getInstance(Context context) {
         if (mAlarmDBService == null) {
             mAlarmDBService = new AlarmDBService(context);
         }
@@ -39,6 +53,8 @@ public class AlarmDBService {
      */
     public List<Alarm> getAlarms() {
 
+        long start = System.nanoTime();
+
         List<Alarm> alarms = new ArrayList<>();
 
         AlarmCursorWrapper cursor = new AlarmCursorWrapper(mDatabase.query(
@@ -59,6 +75,9 @@ public class AlarmDBService {
         }
         cursor.close();
 
+        ALARM_COUNT.set(alarms.size());
+        GET_ALARMS_LATENCY.recordSince(start);
+
         return alarms;
     }
 
@@ -67,13 +86,15 @@ public class AlarmDBService {
      * @param id alarm id
      * @return alarm
      */
-    public Alarm getAlarm(UUID id) {
+    public Alarm getAlarm(int id) {
+
+        long start = System.nanoTime();
 
         AlarmCursorWrapper cursor = new AlarmCursorWrapper(mDatabase.query(
                 AlarmTable.NAME,
                 null, // gets all columns
-                AlarmTable.Columns.UUID + " = ?", // cause
-                new String[]{id.toString()}, // args
+                AlarmTable.Columns.ID + " = ?", // cause
+                new String[]{Integer.toString(id)}, // args
                 null,
                 null,
                 AlarmTable.Columns.HOUR + ", " + AlarmTable.Columns.MINUTE // orderby
@@ -89,19 +110,27 @@ public class AlarmDBService {
             }
         } finally {
             cursor.close();
+            GET_ALARM_LATENCY.recordSince(start);
         }
 
     }
 
     /**
-     * Add a new alarm in DB
+     * Add a new alarm in DB. The row id allocated by SQLite becomes the alarm id
      * @param alarm alarm to add
      */
     public void addAlarm(Alarm alarm) {
 
+        long start = System.nanoTime();
+
         ContentValues values = createContentValues(alarm);
 
-        mDatabase.insert(AlarmTable.NAME, null, values);
+        long rowId = mDatabase.insert(AlarmTable.NAME, null, values);
+        if (rowId != -1) {
+            alarm.setId((int) rowId);
+        }
+
+        ADD_ALARM_LATENCY.recordSince(start);
     }
 
     /**
@@ -110,11 +139,15 @@ public class AlarmDBService {
      */
     public void updateAlarm(Alarm alarm) {
 
+        long start = System.nanoTime();
+
         ContentValues values = createContentValues(alarm);
 
         mDatabase.update(AlarmTable.NAME, values,
-                AlarmTable.Columns.UUID + " = ?",
-                new String[]{alarm.getId().toString()});
+                AlarmTable.Columns.ID + " = ?",
+                new String[]{Integer.toString(alarm.getId())});
+
+        UPDATE_ALARM_LATENCY.recordSince(start);
     }
 
     /**
@@ -122,9 +155,131 @@ public class AlarmDBService {
      * @param alarm alarm instance to remove
      */
     public void deleteAlarm(Alarm alarm) {
+        long start = System.nanoTime();
+
         mDatabase.delete(AlarmTable.NAME,
-                AlarmTable.Columns.UUID + " = ?",
-                new String[] { alarm.getId().toString() });
+                AlarmTable.Columns.ID + " = ?",
+                new String[] { Integer.toString(alarm.getId()) });
+
+        DELETE_ALARM_LATENCY.recordSince(start);
+    }
+
+    /**
+     * Gets the snoozed alarms
+     * @return one entry per snoozed alarm
+     */
+    public List<SnoozeTimeline.Entry> getSnoozes() {
+
+        List<SnoozeTimeline.Entry> snoozes = new ArrayList<>();
+
+        Cursor cursor = mDatabase.query(SnoozeTable.NAME, null, null, null, null, null, null);
+        try {
+            int alarmIdIndex = cursor.getColumnIndex(SnoozeTable.Columns.ALARM_ID);
+            int fireTimeIndex = cursor.getColumnIndex(SnoozeTable.Columns.FIRE_TIME);
+            int countIndex = cursor.getColumnIndex(SnoozeTable.Columns.COUNT);
+            while (cursor.moveToNext()) {
+                snoozes.add(new SnoozeTimeline.Entry(cursor.getInt(alarmIdIndex),
+                        cursor.getLong(fireTimeIndex), cursor.getInt(countIndex)));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return snoozes;
+    }
+
+    /**
+     * Writes the snooze row of an alarm, the alarm row is left untouched
+     * @param snooze snooze to save
+     */
+    public void putSnooze(SnoozeTimeline.Entry snooze) {
+        long start = System.nanoTime();
+
+        ContentValues values = new ContentValues();
+        values.put(SnoozeTable.Columns.ALARM_ID, snooze.alarmId);
+        values.put(SnoozeTable.Columns.FIRE_TIME, snooze.fireTime);
+        values.put(SnoozeTable.Columns.COUNT, snooze.count);
+
+        mDatabase.insertWithOnConflict(SnoozeTable.NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+
+        PUT_SNOOZE_LATENCY.recordSince(start);
+    }
+
+    /**
+     * Deletes the snooze row of an alarm, if any
+     * @param alarmId id of the alarm
+     */
+    public void deleteSnooze(int alarmId) {
+        mDatabase.delete(SnoozeTable.NAME,
+                SnoozeTable.Columns.ALARM_ID + " = ?",
+                new String[] { Integer.toString(alarmId) });
+    }
+
+    /**
+     * Gets the fire ledger events of the fires scheduled since a time
+     * @param since time in milliseconds since epoch
+     * @return events in the order they were appended
+     */
+    public List<FireLedger.Event> getFireEvents(long since) {
+
+        List<FireLedger.Event> events = new ArrayList<>();
+
+        Cursor cursor = mDatabase.query(FireLedgerTable.NAME, null,
+                FireLedgerTable.Columns.SCHEDULED_TIME + " >= ?",
+                new String[] { Long.toString(since) },
+                null, null, FireLedgerTable.Columns.ID);
+        try {
+            int typeIndex = cursor.getColumnIndex(FireLedgerTable.Columns.TYPE);
+            int requestCodeIndex = cursor.getColumnIndex(FireLedgerTable.Columns.REQUEST_CODE);
+            int alarmIdIndex = cursor.getColumnIndex(FireLedgerTable.Columns.ALARM_ID);
+            int scheduledTimeIndex = cursor.getColumnIndex(FireLedgerTable.Columns.SCHEDULED_TIME);
+            int timeIndex = cursor.getColumnIndex(FireLedgerTable.Columns.TIME);
+            while (cursor.moveToNext()) {
+                events.add(new FireLedger.Event(cursor.getInt(typeIndex),
+                        cursor.getInt(requestCodeIndex), cursor.getInt(alarmIdIndex),
+                        cursor.getLong(scheduledTimeIndex), cursor.getLong(timeIndex)));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return events;
+    }
+
+    /**
+     * Appends events to the fire ledger in one transaction
+     * @param events events in the order they happened
+     */
+    public void appendFireEvents(List<FireLedger.Event> events) {
+        long start = System.nanoTime();
+
+        ContentValues values = new ContentValues();
+        mDatabase.beginTransaction();
+        try {
+            for (FireLedger.Event event : events) {
+                values.put(FireLedgerTable.Columns.TYPE, event.type);
+                values.put(FireLedgerTable.Columns.REQUEST_CODE, event.requestCode);
+                values.put(FireLedgerTable.Columns.ALARM_ID, event.alarmId);
+                values.put(FireLedgerTable.Columns.SCHEDULED_TIME, event.scheduledTime);
+                values.put(FireLedgerTable.Columns.TIME, event.time);
+                mDatabase.insert(FireLedgerTable.NAME, null, values);
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+
+        APPEND_FIRE_EVENTS_LATENCY.recordSince(start);
+    }
+
+    /**
+     * Deletes the fire ledger events of the fires scheduled before a time
+     * @param before time in milliseconds since epoch
+     */
+    public void pruneFireEvents(long before) {
+        mDatabase.delete(FireLedgerTable.NAME,
+                FireLedgerTable.Columns.SCHEDULED_TIME + " < ?",
+                new String[] { Long.toString(before) });
     }
 
     /**
@@ -136,7 +291,6 @@ public class AlarmDBService {
 
         ContentValues values = new ContentValues();
 
-        values.put(AlarmTable.Columns.UUID, alarm.getId().toString());
         values.put(AlarmTable.Columns.HOUR, alarm.getTimeHour());
         values.put(AlarmTable.Columns.MINUTE, alarm.getTimeMinute());
         values.put(AlarmTable.Columns.UNLOCK_TYPE, alarm.getUnlockType());
@@ -147,7 +301,12 @@ public class AlarmDBService {
         }
         values.put(AlarmTable.Columns.DAYS, repeatingDays);
         values.put(AlarmTable.Columns.VIBRATE, alarm.isVibrate() ? 1 : 0);
+        values.put(AlarmTable.Columns.VIBRATION_PATTERN, alarm.getVibrationPattern());
         values.put(AlarmTable.Columns.ENABLED, alarm.isEnabled() ? 1 : 0);
+        values.put(AlarmTable.Columns.CRESCENDO_SECONDS, alarm.getCrescendoSeconds());
+        values.put(AlarmTable.Columns.CRESCENDO_CURVE, alarm.getCrescendoCurve());
+        values.put(AlarmTable.Columns.SNOOZE_MINUTES, alarm.getSnoozeMinutes());
+        values.put(AlarmTable.Columns.SNOOZE_MAX_COUNT, alarm.getSnoozeMaxCount());
 
         return values;
 
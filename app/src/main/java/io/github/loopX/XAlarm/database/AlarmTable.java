@@ -11,7 +11,7 @@ public class AlarmTable {
 
     public static final class Columns {
 
-        public static final String UUID = "uuid";
+        public static final String ID = "_id";
         public static final String HOUR = "hour";
         public static final String MINUTE = "minute";
         public static final String UNLOCK_TYPE = "unlock_type";
@@ -19,6 +19,14 @@ public class AlarmTable {
         public static final String TONE = "alarm_tone";
         public static final String ENABLED = "enabled";
         public static final String VIBRATE = "vibrate";
+        // Since DB version 2
+        public static final String CRESCENDO_SECONDS = "crescendo_seconds";
+        public static final String CRESCENDO_CURVE = "crescendo_curve";
+        // Since DB version 3
+        public static final String SNOOZE_MINUTES = "snooze_minutes";
+        public static final String SNOOZE_MAX_COUNT = "snooze_max_count";
+        // Since DB version 5
+        public static final String VIBRATION_PATTERN = "vibration_pattern";
 
     }
 
@@ -0,0 +1,22 @@
+package io.github.loopX.XAlarm.database;
+
+/**
+ * Append-only fire ledger, one row per FireLedger.Event. Since DB version 4
+ */
+public class FireLedgerTable {
+
+    public static final String NAME = "tb_fire_ledger";
+    public static final String INDEX_SCHEDULED_TIME = "idx_fire_ledger_scheduled_time";
+
+    public static final class Columns {
+
+        public static final String ID = "_id";
+        public static final String TYPE = "type";
+        public static final String REQUEST_CODE = "request_code";
+        public static final String ALARM_ID = "alarm_id";
+        public static final String SCHEDULED_TIME = "scheduled_time";
+        public static final String TIME = "time";
+
+    }
+
+}
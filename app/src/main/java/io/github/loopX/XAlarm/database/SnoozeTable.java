@@ -0,0 +1,18 @@
+package io.github.loopX.XAlarm.database;
+
+/**
+ * Snoozed alarms, one row per alarm. Since DB version 3
+ */
+public class SnoozeTable {
+
+    public static final String NAME = "tb_snooze";
+
+    public static final class Columns {
+
+        public static final String ALARM_ID = "alarm_id";
+        public static final String FIRE_TIME = "fire_time";
+        public static final String COUNT = "count";
+
+    }
+
+}
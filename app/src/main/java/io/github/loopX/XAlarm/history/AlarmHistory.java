@@ -0,0 +1,301 @@
+package io.github.loopX.XAlarm.history;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.github.loopX.XAlarm.metrics.Counter;
+import io.github.loopX.XAlarm.metrics.LatencyHistogram;
+import io.github.loopX.XAlarm.metrics.Metrics;
+
+/**
+ * History of alarm fires, snoozes, dismissals and unlocks, kept in a HistoryLog
+ * in an app-private directory instead of the alarm DB.
+ *
+ * Recording only appends to a lock-free queue, so the ringing path never waits
+ * for storage. A background thread opens the log and appends the queued records.
+ *
+ * The same thread keeps WakeStats up to date with each record and saves them
+ * after each batch, so loading stats reads a small file whatever the size of the
+ * history. Stats which can not be read are rebuilt from the log.
+ */
+public final class AlarmHistory {
+
+    private static final String TAG = "AlarmHistory";
+
+    private static final String DIR = "history";
+    private static final String STATS_FILE = "stats.bin";
+
+    // 128 KB segments, the log keeps the last 32768 records, years of alarms
+    private static final int RECORDS_PER_SEGMENT = 4096;
+    private static final int MAX_SEGMENTS = 8;
+
+    private static final LatencyHistogram APPEND_LATENCY = Metrics.histogram("history.append");
+    private static final Counter RECORDS_DROPPED = Metrics.counter("history.dropped");
+    private static final LatencyHistogram REBUILD_STATS_LATENCY = Metrics.histogram("history.rebuild_stats");
+
+    /**
+     * Receives stats on the main thread
+     */
+    public interface StatsCallback {
+        void onStats(WakeStats stats);
+    }
+
+    private static AlarmHistory sInstance;
+
+    private final File mDir;
+    private final File mStatsFile;
+    private final Handler mHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ConcurrentLinkedQueue<HistoryRecord> mQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean mDrainScheduled = new AtomicBoolean();
+
+    // Guarded by this
+    private HistoryLog mLog;
+    private boolean mLogFailed;
+    // Guarded by this, loaded with the log
+    private WakeStats mStats;
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            mDrainScheduled.set(false);
+
+            synchronized (AlarmHistory.this) {
+                HistoryLog log = getLog();
+                boolean added = false;
+                HistoryRecord record;
+                while ((record = mQueue.poll()) != null) {
+                    // Stats are kept even if the log is not available
+                    mStats.add(record);
+                    added = true;
+
+                    if (log == null) {
+                        RECORDS_DROPPED.increment();
+                        continue;
+                    }
+
+                    long start = System.nanoTime();
+                    try {
+                        log.append(record);
+                    } catch (IOException e) {
+                        Log.e(TAG, "Can not append history record", e);
+                        RECORDS_DROPPED.increment();
+                    }
+                    APPEND_LATENCY.recordSince(start);
+                }
+
+                if (added) {
+                    saveStats();
+                }
+            }
+        }
+    };
+
+    private AlarmHistory(Context context) {
+        mDir = new File(context.getFilesDir(), DIR);
+        mStatsFile = new File(mDir, STATS_FILE);
+
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+    }
+
+    public static synchronized AlarmHistory getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AlarmHistory(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param scheduledTime time the alarm was scheduled for, the delay is recorded
+     */
+    public void recordFired(int alarmId, long scheduledTime) {
+        long now = System.currentTimeMillis();
+        record(new HistoryRecord(now, HistoryRecord.TYPE_FIRED, alarmId,
+                HistoryRecord.NO_UNLOCK_TYPE, 0, (now - scheduledTime) * 1000));
+    }
+
+    /**
+     * @param count snoozes in a row, this one included
+     * @param ringingMillis time the alarm rang before it was snoozed
+     */
+    public void recordSnoozed(int alarmId, int unlockType, int count, long ringingMillis) {
+        record(new HistoryRecord(System.currentTimeMillis(), HistoryRecord.TYPE_SNOOZED,
+                alarmId, unlockType, count, ringingMillis * 1000));
+    }
+
+    /**
+     * @param ringingMillis time the alarm rang before it was dismissed
+     */
+    public void recordDismissed(int alarmId, int unlockType, long ringingMillis) {
+        record(new HistoryRecord(System.currentTimeMillis(), HistoryRecord.TYPE_DISMISSED,
+                alarmId, unlockType, 0, ringingMillis * 1000));
+    }
+
+    /**
+     * @param solveMicros time from the unlock UI shown to the challenge solved
+     */
+    public void recordUnlocked(int alarmId, int unlockType, long solveMicros) {
+        record(new HistoryRecord(System.currentTimeMillis(), HistoryRecord.TYPE_UNLOCKED,
+                alarmId, unlockType, 0, solveMicros));
+    }
+
+    /**
+     * Reads the history, oldest first. Records still queued are not seen.
+     * Reads storage, do not call on the main thread.
+     */
+    public void scan(HistoryLog.Visitor visitor) throws IOException {
+        HistoryLog log = getLog();
+        if (log == null) throw new IOException("History log is not available");
+
+        log.scan(visitor);
+    }
+
+    /**
+     * Loads the wake-up stats in background
+     * @param callback called on the main thread with a copy of the stats
+     */
+    public void loadStats(final StatsCallback callback) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                final WakeStats stats;
+                synchronized (AlarmHistory.this) {
+                    getLog();
+                    stats = mStats.copy();
+                }
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onStats(stats);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Recomputes the stats from the history log in background, e.g. after they
+     * were lost. Only the history kept by the log is counted.
+     */
+    public void rebuildStats() {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (AlarmHistory.this) {
+                    HistoryLog log = getLog();
+                    if (log != null) {
+                        mStats = rebuildStats(log);
+                        saveStats();
+                    }
+                }
+            }
+        });
+    }
+
+    private void record(HistoryRecord record) {
+        mQueue.offer(record);
+        if (mDrainScheduled.compareAndSet(false, true)) {
+            mHandler.post(mDrain);
+        }
+    }
+
+    /**
+     * Opens the log and loads the stats the first time
+     */
+    private synchronized HistoryLog getLog() {
+        if (mLog == null && !mLogFailed) {
+            try {
+                mLog = new HistoryLog(mDir, RECORDS_PER_SEGMENT, MAX_SEGMENTS);
+            } catch (IOException e) {
+                // Not retried, the history is only informative
+                Log.e(TAG, "Can not open history log", e);
+                mLogFailed = true;
+            }
+        }
+
+        if (mStats == null) {
+            mStats = readStats();
+            if (mStats == null) {
+                mStats = mLog != null ? rebuildStats(mLog) : new WakeStats(TimeZone.getDefault());
+                saveStats();
+            }
+        }
+        return mLog;
+    }
+
+    private WakeStats readStats() {
+        if (!mStatsFile.exists()) return null;
+
+        try {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(mStatsFile)));
+            try {
+                return WakeStats.read(in, TimeZone.getDefault());
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Can not read stats, rebuilding them", e);
+            return null;
+        }
+    }
+
+    private static WakeStats rebuildStats(HistoryLog log) {
+        long start = System.nanoTime();
+
+        final WakeStats stats = new WakeStats(TimeZone.getDefault());
+        try {
+            log.scan(new HistoryLog.Visitor() {
+                @Override
+                public void visit(HistoryRecord record) {
+                    stats.add(record);
+                }
+            });
+        } catch (IOException e) {
+            Log.e(TAG, "Can not scan history log", e);
+        }
+
+        REBUILD_STATS_LATENCY.recordSince(start);
+        return stats;
+    }
+
+    /**
+     * Replaces the stats file, a failed write leaves the previous one
+     */
+    private void saveStats() {
+        File temp = new File(mDir, STATS_FILE + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                mStats.write(out);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(mStatsFile)) {
+                throw new IOException("Can not rename " + temp);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Can not save stats", e);
+        }
+    }
+}
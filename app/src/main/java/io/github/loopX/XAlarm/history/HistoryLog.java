@@ -0,0 +1,224 @@
+package io.github.loopX.XAlarm.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Append-only log of HistoryRecord in fixed size binary records.
+ *
+ * The log is a directory of segment files, each holding a header and room for
+ * a fixed number of records. The segment being written is memory-mapped, so an
+ * append is a copy into the page cache with no system call; a record is
+ * published by writing its type last, and an empty type ends the segment. Once
+ * a segment is full the next one is created, and the oldest ones are deleted
+ * beyond maxSegments.
+ *
+ * Readers scan the segments from oldest to newest. Thread safe.
+ */
+public final class HistoryLog {
+
+    /**
+     * Receives the records of a scan, oldest first
+     */
+    public interface Visitor {
+        void visit(HistoryRecord record);
+    }
+
+    private static final int MAGIC = 0x58484c31; // "XHL1"
+    private static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 32;
+
+    private static final int OFFSET_TIME = 0;
+    private static final int OFFSET_TYPE = 8;
+    private static final int OFFSET_ALARM_ID = 12;
+    private static final int OFFSET_UNLOCK_TYPE = 16;
+    private static final int OFFSET_COUNT = 20;
+    private static final int OFFSET_DURATION = 24;
+
+    private static final String SEGMENT_PREFIX = "history-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final File mDir;
+    private final int mRecordsPerSegment;
+    private final int mMaxSegments;
+
+    private long mSegmentIndex;
+    private MappedByteBuffer mSegment;
+    private int mSegmentCapacity;
+    private int mRecordCount;
+
+    /**
+     * Opens the log, going on after the last record of the newest segment
+     * @param dir directory of the segment files, created if needed
+     */
+    public HistoryLog(File dir, int recordsPerSegment, int maxSegments) throws IOException {
+        mDir = dir;
+        mRecordsPerSegment = recordsPerSegment;
+        mMaxSegments = maxSegments;
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can not create " + dir);
+        }
+
+        List<Long> indexes = listSegments();
+        if (indexes.isEmpty()) {
+            startSegment(0);
+            return;
+        }
+
+        mSegmentIndex = indexes.get(indexes.size() - 1);
+        mSegment = map(segmentFile(mSegmentIndex), FileChannel.MapMode.READ_WRITE);
+        if (!isSegment(mSegment)) {
+            // Not written by this version, leave it to the readers' checks
+            startSegment(mSegmentIndex + 1);
+            return;
+        }
+        mSegmentCapacity = capacityOf(mSegment);
+        mRecordCount = findRecordCount(mSegment, mSegmentCapacity);
+    }
+
+    /**
+     * Appends a record, rolling to a new segment when the current one is full
+     */
+    public synchronized void append(HistoryRecord record) throws IOException {
+        if (mRecordCount == mSegmentCapacity) {
+            mSegment.force();
+            startSegment(mSegmentIndex + 1);
+        }
+
+        int offset = HEADER_SIZE + mRecordCount * RECORD_SIZE;
+        mSegment.putLong(offset + OFFSET_TIME, record.time);
+        mSegment.putInt(offset + OFFSET_ALARM_ID, record.alarmId);
+        mSegment.putInt(offset + OFFSET_UNLOCK_TYPE, record.unlockType);
+        mSegment.putInt(offset + OFFSET_COUNT, record.count);
+        mSegment.putLong(offset + OFFSET_DURATION, record.durationMicros);
+        // Written last, a record without type is not there yet
+        mSegment.putInt(offset + OFFSET_TYPE, record.type);
+        mRecordCount++;
+    }
+
+    /**
+     * Reads every record, oldest first
+     */
+    public synchronized void scan(Visitor visitor) throws IOException {
+        for (long index : listSegments()) {
+            ByteBuffer segment = index == mSegmentIndex
+                    ? mSegment : map(segmentFile(index), FileChannel.MapMode.READ_ONLY);
+            if (!isSegment(segment)) continue;
+
+            int capacity = capacityOf(segment);
+            for (int i = 0; i < capacity; i++) {
+                int offset = HEADER_SIZE + i * RECORD_SIZE;
+                int type = segment.getInt(offset + OFFSET_TYPE);
+                if (type == 0) break;
+
+                visitor.visit(new HistoryRecord(
+                        segment.getLong(offset + OFFSET_TIME),
+                        type,
+                        segment.getInt(offset + OFFSET_ALARM_ID),
+                        segment.getInt(offset + OFFSET_UNLOCK_TYPE),
+                        segment.getInt(offset + OFFSET_COUNT),
+                        segment.getLong(offset + OFFSET_DURATION)));
+            }
+        }
+    }
+
+    /**
+     * Writes the current segment to storage
+     */
+    public synchronized void flush() {
+        mSegment.force();
+    }
+
+    int getSegmentCount() {
+        return listSegments().size();
+    }
+
+    private void startSegment(long index) throws IOException {
+        mSegmentIndex = index;
+        mSegment = map(segmentFile(index), FileChannel.MapMode.READ_WRITE,
+                HEADER_SIZE + (long) mRecordsPerSegment * RECORD_SIZE);
+        mSegment.putInt(0, MAGIC);
+        mSegment.putInt(4, RECORD_SIZE);
+        mSegment.putInt(8, mRecordsPerSegment);
+        mSegmentCapacity = mRecordsPerSegment;
+        mRecordCount = 0;
+
+        List<Long> indexes = listSegments();
+        for (int i = 0; i < indexes.size() - mMaxSegments; i++) {
+            segmentFile(indexes.get(i)).delete();
+        }
+    }
+
+    private static boolean isSegment(ByteBuffer segment) {
+        return segment.capacity() >= HEADER_SIZE
+                && segment.getInt(0) == MAGIC && segment.getInt(4) == RECORD_SIZE;
+    }
+
+    private static int capacityOf(ByteBuffer segment) {
+        return Math.min(segment.getInt(8), (segment.capacity() - HEADER_SIZE) / RECORD_SIZE);
+    }
+
+    /**
+     * Records are written in order, so the used ones are found by binary search
+     * @return number of records in the segment
+     */
+    private static int findRecordCount(ByteBuffer segment, int capacity) {
+        int low = 0;
+        int high = capacity;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (segment.getInt(HEADER_SIZE + mid * RECORD_SIZE + OFFSET_TYPE) != 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private List<Long> listSegments() {
+        List<Long> indexes = new ArrayList<>();
+        String[] names = mDir.list();
+        if (names == null) return indexes;
+
+        for (String name : names) {
+            if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) continue;
+            try {
+                indexes.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length())));
+            } catch (NumberFormatException e) {
+                // Not a segment
+            }
+        }
+        Collections.sort(indexes);
+        return indexes;
+    }
+
+    private File segmentFile(long index) {
+        return new File(mDir, SEGMENT_PREFIX + index + SEGMENT_SUFFIX);
+    }
+
+    private static MappedByteBuffer map(File file, FileChannel.MapMode mode) throws IOException {
+        return map(file, mode, file.length());
+    }
+
+    private static MappedByteBuffer map(File file, FileChannel.MapMode mode, long size)
+            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file,
+                mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw");
+        try {
+            // The mapping stays valid once the file is closed
+            return raf.getChannel().map(mode, 0, size);
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package io.github.loopX.XAlarm.history;
+
+/**
+ * One entry of the alarm history, stored as a fixed size record by HistoryLog
+ */
+public final class HistoryRecord {
+
+    public static final int TYPE_FIRED = 1;
+    public static final int TYPE_SNOOZED = 2;
+    public static final int TYPE_DISMISSED = 3;
+    public static final int TYPE_UNLOCKED = 4;
+
+    // Unlock type of records which have none
+    public static final int NO_UNLOCK_TYPE = -1;
+
+    // Time the event happened, in milliseconds since epoch
+    public final long time;
+    public final int type;
+    public final int alarmId;
+    public final int unlockType;
+    // Snooze count of TYPE_SNOOZED, 0 otherwise
+    public final int count;
+    // Fire delay of TYPE_FIRED, ringing time of TYPE_SNOOZED and TYPE_DISMISSED,
+    // solve time of TYPE_UNLOCKED
+    public final long durationMicros;
+
+    public HistoryRecord(long time, int type, int alarmId, int unlockType, int count,
+                         long durationMicros) {
+        this.time = time;
+        this.type = type;
+        this.alarmId = alarmId;
+        this.unlockType = unlockType;
+        this.count = count;
+        this.durationMicros = durationMicros;
+    }
+}
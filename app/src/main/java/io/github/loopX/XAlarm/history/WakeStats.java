@@ -0,0 +1,235 @@
+package io.github.loopX.XAlarm.history;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.TimeZone;
+
+/**
+ * Wake-up statistics kept as running summaries of the alarm history.
+ *
+ * Each HistoryRecord updates the summaries in constant time, so showing them
+ * never scans the history; they are saved next to the HistoryLog and can be
+ * rebuilt from it by adding every record again. The streak counts the days in a
+ * row on which an alarm was dismissed without being snoozed first that day.
+ *
+ * Not thread safe.
+ */
+public final class WakeStats {
+
+    private static final int VERSION = 1;
+
+    // Unlock types with their own solve time summary
+    public static final int UNLOCK_TYPES = 8;
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+    private static final long NO_DAY = Long.MIN_VALUE;
+
+    /**
+     * Count, sum and sum of squares of values in milliseconds
+     */
+    public static final class Summary {
+        private long mCount;
+        private long mSum;
+        private double mSumSquares;
+
+        void add(long value) {
+            mCount++;
+            mSum += value;
+            mSumSquares += (double) value * value;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        /**
+         * @return mean value, 0 without values
+         */
+        public double getMean() {
+            return mCount == 0 ? 0 : (double) mSum / mCount;
+        }
+
+        /**
+         * @return population standard deviation, 0 without values
+         */
+        public double getStdDev() {
+            if (mCount == 0) return 0;
+            double mean = getMean();
+            return Math.sqrt(Math.max(0, mSumSquares / mCount - mean * mean));
+        }
+
+        private void copyFrom(Summary other) {
+            mCount = other.mCount;
+            mSum = other.mSum;
+            mSumSquares = other.mSumSquares;
+        }
+
+        private void write(DataOutput out) throws IOException {
+            out.writeLong(mCount);
+            out.writeLong(mSum);
+            out.writeDouble(mSumSquares);
+        }
+
+        private void read(DataInput in) throws IOException {
+            mCount = in.readLong();
+            mSum = in.readLong();
+            mSumSquares = in.readDouble();
+        }
+    }
+
+    private final TimeZone mTimeZone;
+
+    private long mFires;
+    private long mSnoozes;
+    private final Summary mDismissTime = new Summary();
+    private final Summary[] mSolveTimes = new Summary[UNLOCK_TYPES];
+
+    private long mStreak;
+    private long mBestStreak;
+    // Last day counted in the streak, or ending it
+    private long mStreakDay = NO_DAY;
+    // Last day an alarm was snoozed
+    private long mSnoozeDay = NO_DAY;
+
+    /**
+     * @param timeZone time zone deciding where days start
+     */
+    public WakeStats(TimeZone timeZone) {
+        mTimeZone = timeZone;
+        for (int i = 0; i < UNLOCK_TYPES; i++) {
+            mSolveTimes[i] = new Summary();
+        }
+    }
+
+    /**
+     * Updates the summaries with the next record of the history
+     */
+    public void add(HistoryRecord record) {
+        switch (record.type) {
+            case HistoryRecord.TYPE_FIRED:
+                mFires++;
+                break;
+            case HistoryRecord.TYPE_SNOOZED:
+                mSnoozes++;
+                mSnoozeDay = dayOf(record.time);
+                break;
+            case HistoryRecord.TYPE_DISMISSED:
+                mDismissTime.add(record.durationMicros / 1000);
+                addToStreak(dayOf(record.time));
+                break;
+            case HistoryRecord.TYPE_UNLOCKED:
+                if (record.unlockType >= 0 && record.unlockType < UNLOCK_TYPES) {
+                    mSolveTimes[record.unlockType].add(record.durationMicros / 1000);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void addToStreak(long day) {
+        if (mSnoozeDay == day) {
+            // Snoozed first, the day breaks the streak
+            mStreak = 0;
+            mStreakDay = day;
+            return;
+        }
+        if (mStreakDay == day) return;
+
+        mStreak = mStreakDay == day - 1 ? mStreak + 1 : 1;
+        mStreakDay = day;
+        mBestStreak = Math.max(mBestStreak, mStreak);
+    }
+
+    public long getFires() {
+        return mFires;
+    }
+
+    public long getSnoozes() {
+        return mSnoozes;
+    }
+
+    /**
+     * @return ringing time of the alarms until they were dismissed
+     */
+    public Summary getDismissTime() {
+        return mDismissTime;
+    }
+
+    /**
+     * @return solve time of the unlock type, empty for unknown types
+     */
+    public Summary getSolveTime(int unlockType) {
+        if (unlockType < 0 || unlockType >= UNLOCK_TYPES) return new Summary();
+        return mSolveTimes[unlockType];
+    }
+
+    /**
+     * @param now current time in milliseconds since epoch
+     * @return streak still going on today, 0 once a day was skipped
+     */
+    public long getCurrentStreak(long now) {
+        return mStreakDay != NO_DAY && mStreakDay >= dayOf(now) - 1 ? mStreak : 0;
+    }
+
+    public long getBestStreak() {
+        return mBestStreak;
+    }
+
+    public WakeStats copy() {
+        WakeStats copy = new WakeStats(mTimeZone);
+        copy.mFires = mFires;
+        copy.mSnoozes = mSnoozes;
+        copy.mDismissTime.copyFrom(mDismissTime);
+        for (int i = 0; i < UNLOCK_TYPES; i++) {
+            copy.mSolveTimes[i].copyFrom(mSolveTimes[i]);
+        }
+        copy.mStreak = mStreak;
+        copy.mBestStreak = mBestStreak;
+        copy.mStreakDay = mStreakDay;
+        copy.mSnoozeDay = mSnoozeDay;
+        return copy;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(VERSION);
+        out.writeLong(mFires);
+        out.writeLong(mSnoozes);
+        mDismissTime.write(out);
+        out.writeInt(UNLOCK_TYPES);
+        for (Summary summary : mSolveTimes) {
+            summary.write(out);
+        }
+        out.writeLong(mStreak);
+        out.writeLong(mBestStreak);
+        out.writeLong(mStreakDay);
+        out.writeLong(mSnoozeDay);
+    }
+
+    /**
+     * Reads summaries saved by write
+     * @throws IOException if they were saved by another version
+     */
+    public static WakeStats read(DataInput in, TimeZone timeZone) throws IOException {
+        if (in.readInt() != VERSION) throw new IOException("Unknown stats version");
+
+        WakeStats stats = new WakeStats(timeZone);
+        stats.mFires = in.readLong();
+        stats.mSnoozes = in.readLong();
+        stats.mDismissTime.read(in);
+        if (in.readInt() != UNLOCK_TYPES) throw new IOException("Unknown unlock type count");
+        for (Summary summary : stats.mSolveTimes) {
+            summary.read(in);
+        }
+        stats.mStreak = in.readLong();
+        stats.mBestStreak = in.readLong();
+        stats.mStreakDay = in.readLong();
+        stats.mSnoozeDay = in.readLong();
+        return stats;
+    }
+
+    private long dayOf(long time) {
+        return (time + mTimeZone.getOffset(time)) / DAY_MILLIS;
+    }
+}
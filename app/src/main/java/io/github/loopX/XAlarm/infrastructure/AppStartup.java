@@ -0,0 +1,149 @@
+package io.github.loopX.XAlarm.infrastructure;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks which phase the process is in and runs non-essential initialization
+ * only once it can no longer delay an alarm.
+ *
+ * When the process is cold-started by AlarmWakeReceiver, deferred tasks wait until
+ * the ringing session has started. When it is started by the user, they run as soon
+ * as the first activity is created.
+ *
+ * All methods must be called from the main thread.
+ */
+public final class AppStartup {
+
+    private static final String TAG = "AppStartup";
+
+    public enum Phase {
+        // Application.onCreate has run, nothing else yet
+        PROCESS_CREATED,
+        // Process was started by an alarm broadcast and is about to ring
+        ALARM_LAUNCH,
+        // Alarm ringtone has been started
+        RINGING,
+        // A user facing screen has been created
+        FOREGROUND
+    }
+
+    /**
+     * Initialization which is not needed to ring an alarm
+     */
+    public interface DeferredTask {
+        void run(Context context);
+    }
+
+    private static final List<DeferredTask> sDeferredTasks = new ArrayList<>();
+
+    private static Phase sPhase = Phase.PROCESS_CREATED;
+    private static boolean sDeferredTasksDone;
+    private static long sProcessStartUptime;
+    private static boolean sFirstSoundReported;
+
+    private AppStartup() {}
+
+    /**
+     * Called by Application.onCreate before anything else
+     */
+    public static void onProcessCreated() {
+        sProcessStartUptime = SystemClock.uptimeMillis();
+    }
+
+    public static Phase getPhase() {
+        return sPhase;
+    }
+
+    public static boolean isAlarmLaunch() {
+        return sPhase == Phase.ALARM_LAUNCH || sPhase == Phase.RINGING;
+    }
+
+    /**
+     * Registers a task to run once the process leaves the critical startup path.
+     * If that already happened, the task runs immediately.
+     */
+    public static void registerDeferredTask(Context context, DeferredTask task) {
+        if (sDeferredTasksDone) {
+            task.run(context.getApplicationContext());
+        } else {
+            sDeferredTasks.add(task);
+        }
+    }
+
+    /**
+     * Called when an alarm broadcast is received. Only a process which has not shown
+     * any UI yet is treated as an alarm launch.
+     */
+    public static void onAlarmBroadcast() {
+        if (sPhase == Phase.PROCESS_CREATED) {
+            sPhase = Phase.ALARM_LAUNCH;
+        }
+    }
+
+    /**
+     * Called once the alarm has started ringing. Deferred tasks are posted so they
+     * run after the current frame rather than in front of it.
+     */
+    public static void onRingingStarted(Context context) {
+        if (sPhase == Phase.ALARM_LAUNCH) {
+            sPhase = Phase.RINGING;
+        }
+
+        final Context appContext = context.getApplicationContext();
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                runDeferredTasks(appContext);
+            }
+        });
+    }
+
+    /**
+     * Called when a user facing screen is created
+     */
+    public static void onForegroundUi(Context context) {
+        sPhase = Phase.FOREGROUND;
+        runDeferredTasks(context.getApplicationContext());
+    }
+
+    /**
+     * Called when the ringtone actually starts playing. Reports cold-start-to-sound
+     * the first time it happens in a process launched by an alarm.
+     */
+    public static void onFirstSound() {
+        if (sFirstSoundReported) return;
+        sFirstSoundReported = true;
+
+        if (isAlarmLaunch()) {
+            Log.i(TAG, "cold start to sound: "
+                    + (SystemClock.uptimeMillis() - sProcessStartUptime) + " ms");
+        }
+    }
+
+    /**
+     * Milliseconds since Application.onCreate
+     */
+    public static long getUptimeSinceProcessStart() {
+        return SystemClock.uptimeMillis() - sProcessStartUptime;
+    }
+
+    private static void runDeferredTasks(Context context) {
+        if (sDeferredTasksDone) return;
+        sDeferredTasksDone = true;
+
+        long start = SystemClock.uptimeMillis();
+        for (DeferredTask task : sDeferredTasks) {
+            task.run(context);
+        }
+        sDeferredTasks.clear();
+
+        Log.d(TAG, "deferred init took " + (SystemClock.uptimeMillis() - start) + " ms");
+    }
+}
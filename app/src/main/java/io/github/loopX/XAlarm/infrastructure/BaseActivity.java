@@ -3,11 +3,26 @@ package io.github.loopX.XAlarm.infrastructure;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 
+import io.github.loopX.XAlarm.metrics.FrameMonitor;
+import io.github.loopX.XAlarm.metrics.LatencyHistogram;
+import io.github.loopX.XAlarm.metrics.Metrics;
+import io.github.loopX.XAlarm.tools.TaskScheduler;
+
 public abstract class BaseActivity extends AppCompatActivity implements AppComponentInitial {
-    
+
+    // Time from onCreate to the first window focus, i.e. the screen is shown and usable
+    private LatencyHistogram mStartLatency;
+    private long mCreateNanos;
+    private FrameMonitor mFrameMonitor;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        mCreateNanos = System.nanoTime();
+        mStartLatency = Metrics.histogram("activity.start." + getClass().getSimpleName());
+
         super.onCreate(savedInstanceState);
+        AppStartup.onForegroundUi(this);
+        mFrameMonitor = new FrameMonitor(this, getClass().getSimpleName());
         setContentView(getLayoutId());
 
         onViewInitial();
@@ -15,5 +30,39 @@ public abstract class BaseActivity extends AppCompatActivity implements AppCompo
 
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mFrameMonitor.attach();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mFrameMonitor.detach();
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasFocus) {
+        super.onWindowFocusChanged(hasFocus);
+
+        if (hasFocus && mCreateNanos != 0) {
+            mStartLatency.recordSince(mCreateNanos);
+            mCreateNanos = 0;
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        Metrics.writeSnapshotAsync(this);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        TaskScheduler.getInstance().cancel(this);
+    }
+
 }
 
@@ -7,6 +7,8 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import io.github.loopX.XAlarm.tools.TaskScheduler;
+
 public abstract class BaseFragment extends Fragment implements AppComponentInitial {
 
     // Root view of fragment
@@ -22,17 +24,31 @@ public abstract class BaseFragment extends Fragment implements AppComponentIniti
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
 
-        viewContainer = inflater.inflate(getLayoutId(), container, false);
+        viewContainer = onCreateContentView(inflater, container);
         onViewInitial();
         return viewContainer;
     }
 
+    /**
+     * Creates the root view, inflates getLayoutId by default
+     */
+    protected View onCreateContentView(LayoutInflater inflater, ViewGroup container) {
+        return inflater.inflate(getLayoutId(), container, false);
+    }
+
     @Override
     public void onViewCreated(View view, Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         onRefreshData();
     }
     
+    @Override
+    public void onDetach() {
+        super.onDetach();
+        // Delayed tasks of this fragment must not run without its activity
+        TaskScheduler.getInstance().cancel(this);
+    }
+
     protected View findViewById(@IdRes int id){
         if (viewContainer == null) return null;
         return viewContainer.findViewById(id);
@@ -0,0 +1,32 @@
+package io.github.loopX.XAlarm.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic counter. Lock-free and allocation-free.
+ */
+public final class Counter {
+
+    private final String mName;
+    private final AtomicLong mCount = new AtomicLong();
+
+    Counter(String name) {
+        mName = name;
+    }
+
+    public void increment() {
+        mCount.incrementAndGet();
+    }
+
+    public void add(long delta) {
+        mCount.addAndGet(delta);
+    }
+
+    public long get() {
+        return mCount.get();
+    }
+
+    public String getName() {
+        return mName;
+    }
+}
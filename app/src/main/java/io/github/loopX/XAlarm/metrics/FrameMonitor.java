@@ -0,0 +1,209 @@
+package io.github.loopX.XAlarm.metrics;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.WindowManager;
+
+/**
+ * Per-screen frame timing based on Choreographer frame callbacks.
+ *
+ * A monitor only listens to vsync while an animation or gesture section is open (or
+ * during the first frames after the screen is resumed), so it costs nothing on an
+ * idle screen. Each frame duration is recorded in a histogram; janky frames are
+ * counted per section tag that was active, which tells which animation to blame.
+ *
+ * Metrics are named frame.[screen].*, see Metrics for how to pull them.
+ * Sections and monitors must be used from the main thread. Below Jelly Bean there
+ * is no Choreographer and monitors do nothing.
+ */
+public final class FrameMonitor {
+
+    private static final String TAG = "FrameMonitor";
+
+    // Section tags, one bit each
+    public static final int TAG_SPRING = 1;
+    public static final int TAG_RIPPLE = 1 << 1;
+    public static final int TAG_WAVE = 1 << 2;
+    public static final int TAG_CLOCK = 1 << 3;
+    public static final int TAG_DRAG = 1 << 4;
+    public static final int TAG_STARTUP = 1 << 5;
+
+    private static final String[] TAG_NAMES = {"spring", "ripple", "wave", "clock", "drag", "startup"};
+
+    // Frames monitored after a screen is resumed, whatever is animating
+    private static final int STARTUP_FRAMES = 60;
+
+    private static final boolean SUPPORTED = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+
+    // Number of open sections per tag
+    private static final int[] sOpenSections = new int[TAG_NAMES.length];
+    private static int sActiveTags;
+    // Tags which only apply to the next frame, e.g. a clock tick
+    private static int sFrameTags;
+    private static FrameMonitor sCurrent;
+
+    private final String mScreenName;
+    private final long mFrameIntervalNanos;
+    private final long mJankThresholdNanos;
+
+    private final LatencyHistogram mFrameDurations;
+    private final Counter mFrames;
+    private final Counter mJankFrames;
+    private final Counter mDroppedFrames;
+    private final Counter[] mJankByTag = new Counter[TAG_NAMES.length];
+
+    private Choreographer.FrameCallback mFrameCallback;
+
+    private boolean mAttached;
+    private boolean mRunning;
+    private long mLastFrameNanos;
+    private int mLastFrameTags;
+    private int mStartupFramesLeft;
+
+    public FrameMonitor(Context context, String screenName) {
+        mScreenName = screenName;
+
+        float refreshRate = ((WindowManager) context.getSystemService(Context.WINDOW_SERVICE))
+                .getDefaultDisplay().getRefreshRate();
+        if (refreshRate < 1) refreshRate = 60;
+        mFrameIntervalNanos = (long) (1000000000L / refreshRate);
+        mJankThresholdNanos = mFrameIntervalNanos * 3 / 2;
+
+        String prefix = "frame." + screenName;
+        mFrameDurations = Metrics.histogram(prefix + ".duration");
+        mFrames = Metrics.counter(prefix + ".frames");
+        mJankFrames = Metrics.counter(prefix + ".jank");
+        mDroppedFrames = Metrics.counter(prefix + ".dropped");
+        for (int i = 0; i < TAG_NAMES.length; i++) {
+            mJankByTag[i] = Metrics.counter(prefix + ".jank." + TAG_NAMES[i]);
+        }
+
+        if (SUPPORTED) {
+            mFrameCallback = createFrameCallback();
+        }
+    }
+
+    /**
+     * Opens a section, call endSection with the same tag when it is over
+     * @param tag one of TAG_*
+     */
+    public static void beginSection(int tag) {
+        int index = Integer.numberOfTrailingZeros(tag);
+        sOpenSections[index]++;
+        sActiveTags |= tag;
+
+        if (sCurrent != null) {
+            sCurrent.ensureRunning();
+        }
+    }
+
+    public static void endSection(int tag) {
+        int index = Integer.numberOfTrailingZeros(tag);
+        if (sOpenSections[index] > 0 && --sOpenSections[index] == 0) {
+            sActiveTags &= ~tag;
+        }
+    }
+
+    /**
+     * Tags only the next frame, for work which is not a continuous animation
+     * @param tag one of TAG_*
+     */
+    public static void markFrame(int tag) {
+        sFrameTags |= tag;
+
+        if (sCurrent != null) {
+            sCurrent.ensureRunning();
+        }
+    }
+
+    /**
+     * Called when the screen is resumed
+     */
+    public void attach() {
+        if (!SUPPORTED) return;
+
+        mAttached = true;
+        sCurrent = this;
+        mStartupFramesLeft = STARTUP_FRAMES;
+        ensureRunning();
+    }
+
+    /**
+     * Called when the screen is paused
+     */
+    public void detach() {
+        if (!SUPPORTED) return;
+
+        mAttached = false;
+        if (sCurrent == this) {
+            sCurrent = null;
+        }
+        if (mRunning) {
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+            mRunning = false;
+        }
+
+        Log.i(TAG, mScreenName + ": " + mFrames.get() + " frames, " + mJankFrames.get()
+                + " janky, " + mDroppedFrames.get() + " dropped, p90 "
+                + mFrameDurations.getPercentile(90) + " us");
+    }
+
+    private void ensureRunning() {
+        if (mAttached && !mRunning) {
+            mRunning = true;
+            mLastFrameNanos = 0;
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private Choreographer.FrameCallback createFrameCallback() {
+        return new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                onFrame(frameTimeNanos);
+            }
+        };
+    }
+
+    private void onFrame(long frameTimeNanos) {
+        int tags = sActiveTags | sFrameTags;
+        sFrameTags = 0;
+        if (mStartupFramesLeft > 0) {
+            mStartupFramesLeft--;
+            tags |= TAG_STARTUP;
+        }
+
+        if (mLastFrameNanos != 0) {
+            long duration = frameTimeNanos - mLastFrameNanos;
+            mFrameDurations.record(duration / 1000);
+            mFrames.increment();
+
+            if (duration > mJankThresholdNanos) {
+                mJankFrames.increment();
+                mDroppedFrames.add(duration / mFrameIntervalNanos - 1);
+
+                // Blame what was running while the slow frame was produced
+                int jankTags = mLastFrameTags | tags;
+                for (int i = 0; i < TAG_NAMES.length; i++) {
+                    if ((jankTags & (1 << i)) != 0) {
+                        mJankByTag[i].increment();
+                    }
+                }
+            }
+        }
+
+        mLastFrameNanos = frameTimeNanos;
+        mLastFrameTags = tags;
+
+        // Keep listening while something animates, one more frame closes the last duration
+        if (mAttached && tags != 0) {
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        } else {
+            mRunning = false;
+        }
+    }
+}
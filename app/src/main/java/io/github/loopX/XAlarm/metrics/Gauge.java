@@ -0,0 +1,33 @@
+package io.github.loopX.XAlarm.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Last observed value of something, e.g. number of alarms in DB.
+ * Lock-free and allocation-free.
+ */
+public final class Gauge {
+
+    private final String mName;
+    private final AtomicLong mValue = new AtomicLong();
+
+    Gauge(String name) {
+        mName = name;
+    }
+
+    public void set(long value) {
+        mValue.set(value);
+    }
+
+    public void add(long delta) {
+        mValue.addAndGet(delta);
+    }
+
+    public long get() {
+        return mValue.get();
+    }
+
+    public String getName() {
+        return mName;
+    }
+}
@@ -0,0 +1,133 @@
+package io.github.loopX.XAlarm.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with fixed log-linear buckets, values in microseconds.
+ *
+ * Every power of two range is split into SUB_BUCKETS linear buckets, so the
+ * relative error of a bucket is at most 1 / SUB_BUCKETS (12.5%) whatever the
+ * magnitude. Values below SUB_BUCKETS get one exact bucket each, values above
+ * 2^MAX_EXPONENT us (about 12 days) land in the last bucket.
+ *
+ * Recording is lock-free and allocation-free.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+
+    public static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final String mName;
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    LatencyHistogram(String name) {
+        mName = name;
+    }
+
+    /**
+     * Records one value
+     * @param micros latency in microseconds, negative values count as 0
+     */
+    public void record(long micros) {
+        if (micros < 0) micros = 0;
+
+        mBuckets.incrementAndGet(bucketIndex(micros));
+        mCount.incrementAndGet();
+        mSum.addAndGet(micros);
+
+        long max;
+        while (micros > (max = mMax.get())) {
+            if (mMax.compareAndSet(max, micros)) break;
+        }
+    }
+
+    /**
+     * Records the time elapsed since startNanos
+     * @param startNanos value of System.nanoTime() when the operation started
+     */
+    public void recordSince(long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getSum() {
+        return mSum.get();
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    public long getBucket(int index) {
+        return mBuckets.get(index);
+    }
+
+    /**
+     * Estimates a percentile from the buckets
+     * @param percentile between 0 and 100
+     * @return upper bound of the bucket holding the percentile, in microseconds
+     */
+    public long getPercentile(double percentile) {
+        long count = mCount.get();
+        if (count == 0) return 0;
+
+        long rank = (long) Math.ceil(count * percentile / 100d);
+        if (rank < 1) rank = 1;
+
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mBuckets.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), mMax.get());
+            }
+        }
+        return mMax.get();
+    }
+
+    /**
+     * @param value value in microseconds, not negative
+     * @return index of the bucket which holds value
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) return BUCKET_COUNT - 1;
+
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return smallest value held by the bucket
+     */
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        return (1L << exponent) | ((long) subBucket << (exponent - SUB_BUCKET_BITS));
+    }
+
+    /**
+     * @return largest value held by the bucket
+     */
+    static long bucketUpperBound(int index) {
+        if (index == BUCKET_COUNT - 1) return Long.MAX_VALUE;
+        return bucketLowerBound(index + 1) - 1;
+    }
+}
@@ -0,0 +1,141 @@
+package io.github.loopX.XAlarm.metrics;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-app registry of counters, gauges and latency histograms.
+ *
+ * Look metrics up once and keep the reference, e.g. in a static final field:
+ * registering allocates, recording does not.
+ *
+ * Snapshots are written to files/metrics.txt in the app's private directory, to pull
+ * them from a test device run:
+ * adb shell run-as io.github.loopX.XAlarm cat files/metrics.txt
+ */
+public final class Metrics {
+
+    private static final String TAG = "Metrics";
+
+    public static final String SNAPSHOT_FILE = "metrics.txt";
+
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    private static final ConcurrentHashMap<String, Counter> sCounters = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Gauge> sGauges = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, LatencyHistogram> sHistograms = new ConcurrentHashMap<>();
+
+    private Metrics() {}
+
+    public static Counter counter(String name) {
+        Counter counter = sCounters.get(name);
+        if (counter == null) {
+            Counter created = new Counter(name);
+            counter = sCounters.putIfAbsent(name, created);
+            if (counter == null) counter = created;
+        }
+        return counter;
+    }
+
+    public static Gauge gauge(String name) {
+        Gauge gauge = sGauges.get(name);
+        if (gauge == null) {
+            Gauge created = new Gauge(name);
+            gauge = sGauges.putIfAbsent(name, created);
+            if (gauge == null) gauge = created;
+        }
+        return gauge;
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = sHistograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram(name);
+            histogram = sHistograms.putIfAbsent(name, created);
+            if (histogram == null) histogram = created;
+        }
+        return histogram;
+    }
+
+    /**
+     * Writes a text snapshot of all metrics, sorted by name
+     * @param writer destination
+     */
+    public static void writeSnapshot(Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+
+        out.println("# uptime_ms " + SystemClock.uptimeMillis());
+
+        for (Counter counter : new TreeMap<>(sCounters).values()) {
+            out.println("counter " + counter.getName() + " " + counter.get());
+        }
+
+        for (Gauge gauge : new TreeMap<>(sGauges).values()) {
+            out.println("gauge " + gauge.getName() + " " + gauge.get());
+        }
+
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(sHistograms).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            long count = histogram.getCount();
+
+            StringBuilder line = new StringBuilder("histogram_us ")
+                    .append(entry.getKey())
+                    .append(" count=").append(count)
+                    .append(" mean=").append(count == 0 ? 0 : histogram.getSum() / count)
+                    .append(" max=").append(histogram.getMax());
+            for (double percentile : PERCENTILES) {
+                line.append(" p").append((int) percentile).append('=')
+                        .append(histogram.getPercentile(percentile));
+            }
+            out.println(line);
+
+            // Non empty buckets as lower_bound:count so they can be merged across devices
+            StringBuilder buckets = new StringBuilder("buckets ").append(entry.getKey());
+            for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+                long bucket = histogram.getBucket(i);
+                if (bucket != 0) {
+                    buckets.append(' ').append(LatencyHistogram.bucketLowerBound(i))
+                            .append(':').append(bucket);
+                }
+            }
+            out.println(buckets);
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Writes the snapshot file on a background thread
+     * @param context context
+     */
+    public static void writeSnapshotAsync(Context context) {
+        final File file = new File(context.getApplicationContext().getFilesDir(), SNAPSHOT_FILE);
+
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Writer writer = new FileWriter(file);
+                    try {
+                        writeSnapshot(writer);
+                    } finally {
+                        writer.close();
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Can not write metrics snapshot", e);
+                }
+            }
+        });
+    }
+}
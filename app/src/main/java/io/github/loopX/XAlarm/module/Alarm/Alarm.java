@@ -4,34 +4,49 @@ import android.content.Context;
 import android.net.Uri;
 
 import java.util.Calendar;
-import java.util.UUID;
 
 import io.github.loopX.XAlarm.XAlarmApp;
+import io.github.loopX.XAlarm.audio.GainEnvelope;
 import io.github.loopX.XAlarm.database.AlarmDBService;
 import io.github.loopX.XAlarm.module.Alarm.AlarmScheduler;
 import io.github.loopX.XAlarm.module.UnlockTypeModule.UnlockTypeEnum;
+import io.github.loopX.XAlarm.vibration.WaveformLibrary;
 
 /**
  * Representation of an Alarm within the app.
  **/
 public class Alarm {
 
+    // Id of an alarm which has not been inserted in DB yet
+    public static final int INVALID_ID = -1;
+
+    // Snoozes allowed in a row unless set otherwise
+    public static final int DEFAULT_SNOOZE_MAX_COUNT = 3;
+
     private AlarmDBService alarmDBService;
 
-    private UUID    id;
+    private int     id;
     private int     timeHour;
     private int     timeMinute;
     private int     unlockType;
     private boolean repeatingDays[];
     private boolean isEnabled;
     private boolean isVibrate;
+    private int     vibrationPattern;
     private Uri     alarmTone;
+    private int     crescendoSeconds;
+    private int     crescendoCurve;
+    private int     snoozeMinutes;
+    private int     snoozeMaxCount;
 
     public Alarm() {
-        this(UUID.randomUUID());
+        this(INVALID_ID);
     }
 
-    public Alarm(UUID alarmId) {
+    /**
+     * @param alarmId row id of the alarm in DB, allocated by AlarmDBService.addAlarm
+     */
+    public Alarm(int alarmId) {
 
         alarmDBService = AlarmDBService.getInstance(XAlarmApp.getAppContext());
 
@@ -49,6 +64,15 @@ public class Alarm {
         alarmTone = Uri.parse(XAlarmApp.getResourcePath() + "/raw/ringtone_0");
         isEnabled = true;
         isVibrate = true;
+        vibrationPattern = WaveformLibrary.DEFAULT;
+
+        // Rings at full volume from the start unless a crescendo is set
+        crescendoSeconds = 0;
+        crescendoCurve = GainEnvelope.CURVE_PERCEPTUAL;
+
+        // Can not be snoozed unless an interval is set
+        snoozeMinutes = 0;
+        snoozeMaxCount = DEFAULT_SNOOZE_MAX_COUNT;
 
     }
 
@@ -85,6 +109,8 @@ public class Alarm {
         if (isEnabled()) {
             AlarmScheduler.cancelAlarm(context, this);
         }
+        SnoozeScheduler.getInstance(context).clear(id);
+        AlarmNotificationManager.getInstance(context).clear(id);
 
         alarmDBService.deleteAlarm(this);
     }
@@ -98,6 +124,7 @@ public class Alarm {
 
         setEnabled(false);
         AlarmScheduler.cancelAlarm(context, this);
+        SnoozeScheduler.getInstance(context).clear(id);
 
         alarmDBService.updateAlarm(this);
     }
@@ -160,6 +187,17 @@ public class Alarm {
         this.repeatingDays = repeatingDays;
     }
 
+    /**
+     * @return repeating days as a bitmask, bit n is getRepeatingDay(n)
+     */
+    public int getRepeatingDaysMask() {
+        int mask = 0;
+        for (int i = 0; i < repeatingDays.length; i++) {
+            if (repeatingDays[i]) mask |= 1 << i;
+        }
+        return mask;
+    }
+
     public boolean isEnabled() {
         return isEnabled;
     }
@@ -184,11 +222,66 @@ public class Alarm {
         this.alarmTone = alarmTone;
     }
 
-    public UUID getId() {
+    /**
+     * @return WaveformLibrary pattern id played while the alarm rings
+     */
+    public int getVibrationPattern() {
+        return vibrationPattern;
+    }
+
+    public void setVibrationPattern(int vibrationPattern) {
+        this.vibrationPattern = vibrationPattern;
+    }
+
+    /**
+     * @return time for the ringtone to rise from silence to full volume, 0 if disabled
+     */
+    public int getCrescendoSeconds() {
+        return crescendoSeconds;
+    }
+
+    public void setCrescendoSeconds(int crescendoSeconds) {
+        this.crescendoSeconds = crescendoSeconds;
+    }
+
+    /**
+     * @return GainEnvelope.CURVE_*
+     */
+    public int getCrescendoCurve() {
+        return crescendoCurve;
+    }
+
+    public void setCrescendoCurve(int crescendoCurve) {
+        this.crescendoCurve = crescendoCurve;
+    }
+
+    /**
+     * @return time between a snooze and the next ring, 0 if the alarm can not be snoozed
+     */
+    public int getSnoozeMinutes() {
+        return snoozeMinutes;
+    }
+
+    public void setSnoozeMinutes(int snoozeMinutes) {
+        this.snoozeMinutes = snoozeMinutes;
+    }
+
+    /**
+     * @return snoozes allowed before the alarm has to be unlocked
+     */
+    public int getSnoozeMaxCount() {
+        return snoozeMaxCount;
+    }
+
+    public void setSnoozeMaxCount(int snoozeMaxCount) {
+        this.snoozeMaxCount = snoozeMaxCount;
+    }
+
+    public int getId() {
         return id;
     }
 
-    public void setId(UUID id) {
+    public void setId(int id) {
         this.id = id;
     }
 }
@@ -1,21 +1,29 @@
 package io.github.loopX.XAlarm.module.Alarm;
 
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.v4.app.FragmentActivity;
 import android.support.v4.app.FragmentManager;
 import android.support.v4.app.FragmentTransaction;
 import android.view.KeyEvent;
+import android.view.View;
 import android.view.Window;
 import android.view.WindowManager;
 
-import java.util.UUID;
-
 import io.github.loopX.XAlarm.R;
 import io.github.loopX.XAlarm.database.AlarmDBService;
+import io.github.loopX.XAlarm.history.AlarmHistory;
+import io.github.loopX.XAlarm.infrastructure.AppStartup;
+import io.github.loopX.XAlarm.metrics.Counter;
+import io.github.loopX.XAlarm.metrics.FrameMonitor;
+import io.github.loopX.XAlarm.metrics.LatencyHistogram;
+import io.github.loopX.XAlarm.metrics.Metrics;
+import io.github.loopX.XAlarm.module.UnlockTypeModule.UnlockTypeEnum;
 import io.github.loopX.XAlarm.module.UnlockTypeModule.alarmType.UnlockFragment;
 import io.github.loopX.XAlarm.module.UnlockTypeModule.alarmType.UnlockFragmentFactory;
+import io.github.loopX.XAlarm.view.YummyTextView;
 
 
 /**
@@ -29,7 +37,29 @@ public class AlarmAlertFullScreen extends FragmentActivity implements UnlockFrag
 
     protected static final String SCREEN_OFF = "screen_off";
 
+    private static final Counter ALARMS_DISMISSED = Metrics.counter("alarm.dismissed");
+
+    // Time from unlock UI shown to challenge solved, indexed by unlock type id
+    private static final LatencyHistogram[] SOLVE_TIME =
+            new LatencyHistogram[UnlockTypeEnum.values().length];
+
+    static {
+        for (UnlockTypeEnum type : UnlockTypeEnum.values()) {
+            SOLVE_TIME[type.getID()] =
+                    Metrics.histogram("unlock.solve_time." + type.toString().toLowerCase());
+        }
+    }
+
+    private long mUnlockStartNanos;
+    private FrameMonitor mFrameMonitor;
+
     protected Alarm mAlarm;
+    private UnlockFragment mUnlockFragment;
+    private YummyTextView tvSnooze;
+    private boolean mClosed;
+    // Fragment transactions can not be committed once set
+    private boolean mStateSaved;
+    private boolean mDestroying;
     private AlarmVibrator mVibrator;
     private AlarmRingtonePlayer mRingtonePlayer;
 
@@ -40,17 +70,19 @@ public class AlarmAlertFullScreen extends FragmentActivity implements UnlockFrag
 
         setContentView(R.layout.framelayout_alarm_unlock);
 
-        UUID alarmID = (UUID) getIntent().getSerializableExtra(AlarmScheduler.X_ALARM_ID);
+        int alarmID = getIntent().getIntExtra(AlarmScheduler.X_ALARM_ID, Alarm.INVALID_ID);
         mAlarm = AlarmDBService.getInstance(this).getAlarm(alarmID);
 
-        /**
-         * Pop-up unlock fragment according to unlock type
-         */
-        FragmentManager manager = getSupportFragmentManager();
-        FragmentTransaction fragmentTransaction = manager.beginTransaction();
-        UnlockFragment unlockFragment = UnlockFragmentFactory.create(mAlarm.getUnlockType());
-        fragmentTransaction.replace(R.id.fg_alarm, unlockFragment);
-        fragmentTransaction.commit();
+        tvSnooze = (YummyTextView) findViewById(R.id.tv_snooze);
+        tvSnooze.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                snoozeAlarm();
+            }
+        });
+
+        showUnlockFragment();
+        showSnooze();
 
         final Window win = getWindow();
         win.addFlags(WindowManager.LayoutParams.FLAG_SHOW_WHEN_LOCKED
@@ -65,6 +97,7 @@ public class AlarmAlertFullScreen extends FragmentActivity implements UnlockFrag
 
         mVibrator = new AlarmVibrator(this);
         mRingtonePlayer = new AlarmRingtonePlayer(this);
+        mFrameMonitor = new FrameMonitor(this, TAG);
 
         // Register to get the alarm killed/snooze/dismiss intent.
         // IntentFilter filter = new IntentFilter(Alarms.ALARM_KILLED);
@@ -72,6 +105,23 @@ public class AlarmAlertFullScreen extends FragmentActivity implements UnlockFrag
         // registerReceiver(mReceiver, filter);
     }
 
+    /**
+     * Pop-up unlock fragment according to unlock type
+     */
+    private void showUnlockFragment() {
+        if (mUnlockFragment != null) {
+            // Its detach must not close the next alarm
+            mUnlockFragment.setReplaced();
+        }
+
+        FragmentManager manager = getSupportFragmentManager();
+        FragmentTransaction fragmentTransaction = manager.beginTransaction();
+        mUnlockFragment = UnlockFragmentFactory.create(mAlarm.getUnlockType());
+        fragmentTransaction.replace(R.id.fg_alarm, mUnlockFragment);
+        fragmentTransaction.commit();
+        mUnlockStartNanos = System.nanoTime();
+    }
+
     /**
      * this is called when a second alarm is triggered while a
      * previous alert window is still active.
@@ -79,24 +129,97 @@ public class AlarmAlertFullScreen extends FragmentActivity implements UnlockFrag
     @Override
     protected void onNewIntent(Intent intent) {
         super.onNewIntent(intent);
-        UUID alarmID = (UUID) getIntent().getSerializableExtra(AlarmScheduler.X_ALARM_ID);
-        mAlarm = AlarmDBService.getInstance(this).getAlarm(alarmID);
+        mStateSaved = false;
+        setIntent(intent);
+
+        int alarmID = intent.getIntExtra(AlarmScheduler.X_ALARM_ID, Alarm.INVALID_ID);
+        if (alarmID != mAlarm.getId()) {
+            Alarm alarm = AlarmDBService.getInstance(this).getAlarm(alarmID);
+            if (alarm != null) {
+                switchToAlarm(alarm);
+            }
+        }
+    }
+
+    /**
+     * Hands the screen over to the next ringing alarm. The window, the ringtone
+     * if both alarms share it, and the vibration keep going.
+     */
+    private void switchToAlarm(Alarm alarm) {
+        Uri previousTone = mAlarm.getAlarmTone();
+        mAlarm = alarm;
+
+        if (previousTone == null || !previousTone.equals(mAlarm.getAlarmTone())) {
+            mRingtonePlayer.stop();
+        }
+        if (!mAlarm.isVibrate()) {
+            mVibrator.stop();
+        }
+        startRinging();
+
+        showUnlockFragment();
+        showSnooze();
+    }
+
+    /**
+     * Shows the snooze button while mAlarm has snoozes left
+     */
+    private void showSnooze() {
+        if (SnoozeScheduler.getInstance(this).canSnooze(mAlarm)) {
+            tvSnooze.setText(getString(R.string.snooze_button, mAlarm.getSnoozeMinutes()));
+            tvSnooze.setVisibility(View.VISIBLE);
+        } else {
+            tvSnooze.setVisibility(View.GONE);
+        }
     }
 
     @Override
     protected void onStart() {
         super.onStart();
+        mStateSaved = false;
+
+        startRinging();
 
+        // Ringing has begun, anything left from startup may run now
+        AppStartup.onRingingStarted(this);
+
+    }
+
+    /**
+     * Starts the ringtone and vibration of mAlarm, whatever already plays goes on
+     */
+    private void startRinging() {
         if (mAlarm.isVibrate()) {
-            mVibrator.vibrate();
+            mVibrator.vibrate(mAlarm.getVibrationPattern(),
+                    mAlarm.getCrescendoSeconds(), mAlarm.getCrescendoCurve());
         }
 
-        mRingtonePlayer.play(mAlarm.getAlarmTone());
+        mRingtonePlayer.play(mAlarm.getAlarmTone(),
+                mAlarm.getCrescendoSeconds(), mAlarm.getCrescendoCurve());
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mFrameMonitor.attach();
+    }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mFrameMonitor.detach();
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        mStateSaved = true;
     }
 
     @Override
     public void onDestroy() {
+        // The unlock fragment closes the alarm when it is detached by super.onDestroy
+        mDestroying = true;
         super.onDestroy();
         // No longer care about the alarm being killed.
         // unregisterReceiver(mReceiver);
@@ -128,21 +251,80 @@ public class AlarmAlertFullScreen extends FragmentActivity implements UnlockFrag
 
     @Override
     public void closeAlarm() {
+        // Fragments close the alarm again when they are detached by finish
+        if (mClosed) return;
+
+        int unlockType = mAlarm.getUnlockType();
+        long solveMicros = (System.nanoTime() - mUnlockStartNanos) / 1000;
+        if (unlockType >= 0 && unlockType < SOLVE_TIME.length) {
+            SOLVE_TIME[unlockType].record(solveMicros);
+        }
+        AlarmHistory.getInstance(this).recordUnlocked(mAlarm.getId(), unlockType, solveMicros);
+        ALARMS_DISMISSED.increment();
+
+        // Set next alarm, and go on with the alarm which fired meanwhile if any
+        Alarm next = AlarmRingingController.getInstance(this).dismissSession();
+        if (next != null) {
+            handOffToAlarm(next);
+            return;
+        }
 
         // If alarm not vibrate mode. So vibrate 0.5s in the end
         if (mAlarm.isVibrate()) {
             mVibrator.stop();
         } else {
-            mVibrator.vibrate(500);
+            mVibrator.buzz();
         }
 
+        finishRinging();
+    }
+
+    /**
+     * Snoozes the ringing session without solving the unlock challenge
+     */
+    private void snoozeAlarm() {
+        if (mClosed) return;
+
+        // Go on with the alarm which fired meanwhile if any
+        Alarm next = AlarmRingingController.getInstance(this).snoozeSession();
+        if (next != null) {
+            handOffToAlarm(next);
+            return;
+        }
+
+        mVibrator.stop();
+        finishRinging();
+    }
+
+    /**
+     * Goes on with the next ringing alarm in this window. When the window is going
+     * away, or its fragments can not change anymore, it finishes instead and the
+     * controller brings the unlock UI up again for the next alarm.
+     */
+    private void handOffToAlarm(Alarm next) {
+        if (!isFinishing() && !mDestroying && !mStateSaved) {
+            switchToAlarm(next);
+            return;
+        }
+
+        // The notification and wake locks stay with the next session
+        mRingtonePlayer.stop();
+        mVibrator.stop();
+        mClosed = true;
+        if (!isFinishing()) {
+            finish();
+        }
+        AlarmRingingController.getInstance(this).alarmRingingSessionDismissed();
+    }
+
+    private void finishRinging() {
         mRingtonePlayer.stop();
 
         AlarmNotificationManager.getInstance(this).disableNotifications();
 
-        // Set next alarm
-        mAlarm.schedule();
+        Metrics.writeSnapshotAsync(this);
 
+        mClosed = true;
         finish();
     }
 
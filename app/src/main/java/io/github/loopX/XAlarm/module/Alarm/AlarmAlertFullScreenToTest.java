@@ -65,7 +65,7 @@ public class AlarmAlertFullScreenToTest extends FragmentActivity implements Unlo
         mPlayer.stop();
 
         AlarmVibrator mVibrator = new AlarmVibrator(this);
-        mVibrator.vibrate(500);
+        mVibrator.buzz();
 
         finish();
     }
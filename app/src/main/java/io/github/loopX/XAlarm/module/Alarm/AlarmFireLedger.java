@@ -0,0 +1,198 @@
+package io.github.loopX.XAlarm.module.Alarm;
+
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.loopX.XAlarm.database.AlarmDBService;
+import io.github.loopX.XAlarm.metrics.Counter;
+import io.github.loopX.XAlarm.metrics.LatencyHistogram;
+import io.github.loopX.XAlarm.metrics.Metrics;
+import io.github.loopX.XAlarm.tools.TaskScheduler;
+
+/**
+ * Records when alarms are set to fire and when they actually ring, see FireLedger.
+ *
+ * AlarmScheduler arms and disarms fires, AlarmRingingController records them as
+ * they ring and ignores a fire which already rang, e.g. delivered again after a
+ * reboot race. On boot the fires missed while the device was off ring late if
+ * they are still within MISSED_GRACE_MILLIS.
+ *
+ * Events are appended to the fire ledger table in background, in order. The
+ * ledger is read once when it is created. Fires older than RETENTION_MILLIS are
+ * forgotten when it is created and then at most once a day, in memory and in the
+ * table. Used from the main thread.
+ */
+public final class AlarmFireLedger {
+
+    private static final String TAG = "AlarmFireLedger";
+
+    private static final Counter FIRES_CAUGHT_UP = Metrics.counter("alarm.caught_up");
+    private static final LatencyHistogram FIRE_DELAY = Metrics.histogram("alarm.fire_delay");
+
+    // How late a missed fire still rings
+    static final long MISSED_GRACE_MILLIS = 30 * 60 * 1000;
+
+    // Fires scheduled longer ago are forgotten
+    private static final long RETENTION_MILLIS = 2 * 24 * 60 * 60 * 1000;
+    private static final long PRUNE_INTERVAL_MILLIS = 24 * 60 * 60 * 1000;
+
+    private static AlarmFireLedger sInstance;
+
+    private final Context mContext;
+    private final FireLedger mLedger = new FireLedger();
+
+    // Guarded by itself. Events not appended to DB yet, in order
+    private final ArrayList<FireLedger.Event> mUnsaved = new ArrayList<>();
+    // Guarded by mUnsaved
+    private boolean mSaving;
+    // Guarded by mUnsaved. Events scheduled before are deleted from DB, 0 if none
+    private long mPruneBefore;
+
+    private long mLastPruneTime;
+
+    private final Runnable mSave = new Runnable() {
+        @Override
+        public void run() {
+            AlarmDBService alarmDBService = AlarmDBService.getInstance(mContext);
+            while (true) {
+                List<FireLedger.Event> events;
+                long pruneBefore;
+                synchronized (mUnsaved) {
+                    if (mUnsaved.isEmpty() && mPruneBefore == 0) {
+                        mSaving = false;
+                        return;
+                    }
+                    events = new ArrayList<>(mUnsaved);
+                    mUnsaved.clear();
+                    pruneBefore = mPruneBefore;
+                    mPruneBefore = 0;
+                }
+
+                if (!events.isEmpty()) {
+                    alarmDBService.appendFireEvents(events);
+                }
+                if (pruneBefore != 0) {
+                    alarmDBService.pruneFireEvents(pruneBefore);
+                }
+            }
+        }
+    };
+
+    private AlarmFireLedger(Context context) {
+        mContext = context;
+
+        long since = System.currentTimeMillis() - RETENTION_MILLIS;
+        for (FireLedger.Event event : AlarmDBService.getInstance(context).getFireEvents(since)) {
+            mLedger.replay(event);
+        }
+        prune(System.currentTimeMillis());
+    }
+
+    public static synchronized AlarmFireLedger getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AlarmFireLedger(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Records a fire set to AlarmManager
+     * @param requestCode request code of its PendingIntent
+     */
+    void arm(int requestCode, int alarmId, long scheduledTime) {
+        save(mLedger.arm(requestCode, alarmId, scheduledTime, System.currentTimeMillis()));
+    }
+
+    /**
+     * Records that the PendingIntent of the request code was cancelled
+     */
+    void disarm(int requestCode) {
+        save(mLedger.disarm(requestCode, System.currentTimeMillis()));
+    }
+
+    /**
+     * Records that an alarm rings
+     * @param scheduledTime time the alarm was scheduled for
+     * @return false if it already rang for this time
+     */
+    boolean fire(int alarmId, long scheduledTime) {
+        long now = System.currentTimeMillis();
+        FireLedger.Event event = mLedger.fire(alarmId, scheduledTime, now);
+        if (event == null) return false;
+
+        FIRE_DELAY.record((now - scheduledTime) * 1000);
+        save(event);
+        return true;
+    }
+
+    /**
+     * @param now current time in milliseconds since epoch
+     * @return next armed fire which did not ring yet, snoozes included, null if none
+     */
+    FireLedger.Record findNextFire(long now) {
+        return mLedger.findNextArmed(now);
+    }
+
+    /**
+     * Rings the fires missed while the device was off, and forgets old ones.
+     * Called on boot before the alarms are armed again.
+     * @return number of fires rung late
+     */
+    public int catchUpMissed() {
+        long now = System.currentTimeMillis();
+
+        List<FireLedger.Record> missed = mLedger.findMissed(now, MISSED_GRACE_MILLIS);
+        for (FireLedger.Record record : missed) {
+            Log.w(TAG, "Alarm " + record.alarmId + " missed its fire at " + record.scheduledTime);
+
+            // Same path as AlarmManager, the alarm is recorded as fired when it rings
+            Intent intent = new Intent(mContext, AlarmWakeReceiver.class);
+            intent.putExtra(AlarmScheduler.X_ALARM_ID, record.alarmId);
+            intent.putExtra(AlarmScheduler.X_ALARM_TIME, record.scheduledTime);
+            mContext.sendBroadcast(intent);
+        }
+        FIRES_CAUGHT_UP.add(missed.size());
+
+        prune(now);
+
+        return missed.size();
+    }
+
+    private void save(FireLedger.Event event) {
+        if (event == null) return;
+
+        if (event.time - mLastPruneTime >= PRUNE_INTERVAL_MILLIS) {
+            prune(event.time);
+        }
+
+        synchronized (mUnsaved) {
+            mUnsaved.add(event);
+        }
+        startSaving();
+    }
+
+    /**
+     * Forgets the fires older than RETENTION_MILLIS, the table is pruned by mSave
+     */
+    private void prune(long now) {
+        mLastPruneTime = now;
+        mLedger.prune(now - RETENTION_MILLIS);
+
+        synchronized (mUnsaved) {
+            mPruneBefore = now - RETENTION_MILLIS;
+        }
+        startSaving();
+    }
+
+    private void startSaving() {
+        synchronized (mUnsaved) {
+            if (mSaving) return;
+            mSaving = true;
+        }
+        TaskScheduler.getInstance().execute(mSave);
+    }
+}
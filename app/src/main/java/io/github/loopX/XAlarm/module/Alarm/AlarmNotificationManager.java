@@ -1,69 +1,146 @@
 package io.github.loopX.XAlarm.module.Alarm;
 
+import android.app.AlarmManager;
 import android.app.Notification;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Build;
 import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.NotificationManagerCompat;
+import android.text.format.DateFormat;
+import android.util.SparseArray;
 
-import java.util.UUID;
+import java.util.Calendar;
 
+import io.github.loopX.XAlarm.MainActivity;
 import io.github.loopX.XAlarm.R;
+import io.github.loopX.XAlarm.tools.TimeFormatter;
 
+/**
+ * Posts the notification of the ringing session, shown by AlarmRingingService in
+ * foreground, and the one of the upcoming alarm.
+ *
+ * Builders and PendingIntents are created once per alarm and kept; posting again
+ * only changes their content and notifies under the same id, which updates the
+ * notification in place. Notification channels came with API 26, above the
+ * compile SDK, so the settings of each kind of notification are applied once when
+ * its builder is created instead.
+ *
+ * The upcoming notification shows from UPCOMING_WINDOW_MILLIS before the next fire
+ * pushed by NextAlarmPublisher. It counts down with the system chronometer where the
+ * platform supports it and is never refreshed by the app while it shows; a
+ * non-wakeup alarm brings it up when the window opens.
+ *
+ * Used from the main thread.
+ */
 public class AlarmNotificationManager {
 
     private static final String TAG = "AlarmNotificationMgr";
 
+    static final int NOTIFICATION_ID_RINGING = 1;
+    private static final int NOTIFICATION_ID_UPCOMING = 2;
+
+    private static final long UPCOMING_WINDOW_MILLIS = 2 * 60 * 60 * 1000;
+
+    // Notification.EXTRA_CHRONOMETER_COUNT_DOWN and its API level, above the compile SDK
+    private static final String EXTRA_CHRONOMETER_COUNT_DOWN = "android.chronometerCountDown";
+    private static final int SDK_CHRONOMETER_COUNT_DOWN = 24;
+
+    private static final int REQUEST_CODE_UPCOMING = 0;
+
     private static AlarmNotificationManager sManager;
 
-    private Context mContext;
-    private UUID mCurrentAlarmId;
+    private final Context mContext;
+    private final NotificationManagerCompat mNotificationManager;
+    private final StringBuilder mTextBuilder = new StringBuilder();
+
+    // Alarm id to its cached builders
+    private final SparseArray<NotificationCompat.Builder> mRingingBuilders = new SparseArray<>();
+    private final SparseArray<NotificationCompat.Builder> mUpcomingBuilders = new SparseArray<>();
+    private PendingIntent mShowAlarmsIntent;
+    private PendingIntent mUpcomingCheckIntent;
+
+    private int mCurrentAlarmId;
     private long mCurrentAlarmTime;
     private boolean mNotificationsActive;
 
+    private int mUpcomingAlarmId = Alarm.INVALID_ID;
+    private long mUpcomingAlarmTime;
+
     private AlarmNotificationManager(Context context) {
         mContext = context;
+        mNotificationManager = NotificationManagerCompat.from(context);
         resetState();
     }
 
-    public static AlarmNotificationManager getInstance(Context context) {
+    public static synchronized AlarmNotificationManager getInstance(Context context) {
         if (sManager == null) {
-            sManager = new AlarmNotificationManager(context);
+            sManager = new AlarmNotificationManager(context.getApplicationContext());
         }
         return sManager;
     }
 
-    public static Notification createAlarmNotification(Context context, UUID alarmId) {
+    /**
+     * @param alarmTime time the alarm was scheduled for, shown in the notification
+     * @return notification of the ringing alarm, from its cached builder
+     */
+    Notification getRingingNotification(int alarmId, long alarmTime) {
+        NotificationCompat.Builder builder = mRingingBuilders.get(alarmId);
+        if (builder == null) {
+            Intent showUnlockIntent = new Intent(mContext, AlarmAlertFullScreen.class);
+            showUnlockIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK |
+                    Intent.FLAG_ACTIVITY_EXCLUDE_FROM_RECENTS);
+            showUnlockIntent.putExtra(AlarmRingingService.ALARM_ID, alarmId);
 
-        Intent showUnlockIntent = new Intent(context, AlarmAlertFullScreen.class);
-        showUnlockIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK |
-                Intent.FLAG_ACTIVITY_EXCLUDE_FROM_RECENTS);
-        showUnlockIntent.putExtra(AlarmRingingService.ALARM_ID, alarmId);
+            PendingIntent contentIntent = PendingIntent.getActivity(
+                    mContext,
+                    AlarmScheduler.getRequestCode(alarmId),
+                    showUnlockIntent,
+                    PendingIntent.FLAG_UPDATE_CURRENT);
 
-        PendingIntent contentIntent = PendingIntent.getActivity(
-                context,
-                (int) Math.abs(alarmId.getLeastSignificantBits()),
-                showUnlockIntent,
-                PendingIntent.FLAG_UPDATE_CURRENT);
-
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(context)
-                .setSmallIcon(R.mipmap.ic_launcher)
-                .setContentTitle("X-Alarm!")
-                .setContentText(context.getString(R.string.default_label))
-                .setOngoing(true) // Can not be dismissed
-                .setDefaults(NotificationCompat.DEFAULT_LIGHTS)
-                .setContentIntent(contentIntent);
+            builder = new NotificationCompat.Builder(mContext)
+                    .setSmallIcon(R.mipmap.ic_launcher)
+                    .setContentTitle("X-Alarm!")
+                    .setOngoing(true) // Can not be dismissed
+                    .setDefaults(NotificationCompat.DEFAULT_LIGHTS)
+                    .setPriority(NotificationCompat.PRIORITY_MAX)
+                    .setCategory(NotificationCompat.CATEGORY_ALARM)
+                    .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                    .setShowWhen(true)
+                    .setContentIntent(contentIntent);
+            mRingingBuilders.put(alarmId, builder);
+        }
 
-        return builder.build();
+        return builder
+                .setContentText(mContext.getString(R.string.default_label))
+                .setWhen(alarmTime)
+                .build();
     }
 
-    public void handleAlarmRunningNotificationStatus(UUID alarmId) {
-        updateStateWithAlarmDetails(alarmId, 0, false);
-        AlarmRingingService.startForegroundService(
-                mContext,
-                alarmId,
-                0);
+    /**
+     * Shows the ringing notification of the alarm, in place of the one of the
+     * previous alarm if the session went on with another alarm
+     * @param alarmTime time the alarm was scheduled for
+     */
+    public void handleAlarmRunningNotificationStatus(int alarmId, long alarmTime) {
+        if (mNotificationsActive) {
+            if (doesCurrentStateMatchAlarmDetails(alarmId, alarmTime)) return;
+
+            updateStateWithAlarmDetails(alarmId, alarmTime);
+            // Already in foreground, the notification is replaced by id
+            mNotificationManager.notify(NOTIFICATION_ID_RINGING,
+                    getRingingNotification(alarmId, alarmTime));
+        } else {
+            updateStateWithAlarmDetails(alarmId, alarmTime);
+            AlarmRingingService.startForegroundService(
+                    mContext,
+                    alarmId,
+                    alarmTime);
+        }
 
+        // The ringing fire is no longer upcoming
+        NextAlarmPublisher.getInstance(mContext).requestUpdate();
     }
 
     public void disableNotifications() {
@@ -74,20 +151,120 @@ public class AlarmNotificationManager {
         }
     }
 
-    private void updateStateWithAlarmDetails(UUID alarmId, long alarmTime, boolean wakelockEnable) {
+    /**
+     * Drops the cached notifications of a deleted alarm
+     */
+    void clear(int alarmId) {
+        mRingingBuilders.remove(alarmId);
+        mUpcomingBuilders.remove(alarmId);
+    }
+
+    /**
+     * Shows, updates or hides the upcoming notification
+     * @param next next armed fire, null if none
+     * @param now current time in milliseconds since epoch
+     */
+    void updateUpcoming(FireLedger.Record next, long now) {
+        AlarmManager alarmManager = (AlarmManager) mContext.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.cancel(getUpcomingCheckIntent());
+
+        if (next == null || next.scheduledTime - now > UPCOMING_WINDOW_MILLIS) {
+            cancelUpcoming();
+            if (next != null) {
+                // Not a wakeup, the notification can wait for the screen to be on
+                alarmManager.set(AlarmManager.RTC,
+                        next.scheduledTime - UPCOMING_WINDOW_MILLIS, getUpcomingCheckIntent());
+            }
+            return;
+        }
+
+        if (next.alarmId == mUpcomingAlarmId && next.scheduledTime == mUpcomingAlarmTime) return;
+
+        mUpcomingAlarmId = next.alarmId;
+        mUpcomingAlarmTime = next.scheduledTime;
+        mNotificationManager.notify(NOTIFICATION_ID_UPCOMING,
+                getUpcomingNotification(next.alarmId, next.scheduledTime));
+    }
+
+    private Notification getUpcomingNotification(int alarmId, long alarmTime) {
+        NotificationCompat.Builder builder = mUpcomingBuilders.get(alarmId);
+        if (builder == null) {
+            builder = new NotificationCompat.Builder(mContext)
+                    .setSmallIcon(R.mipmap.ic_launcher)
+                    .setContentTitle(mContext.getString(R.string.upcoming_alarm))
+                    .setPriority(NotificationCompat.PRIORITY_LOW)
+                    .setCategory(NotificationCompat.CATEGORY_ALARM)
+                    .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                    .setLocalOnly(true)
+                    .setShowWhen(true)
+                    .setContentIntent(getShowAlarmsIntent());
+
+            if (Build.VERSION.SDK_INT >= SDK_CHRONOMETER_COUNT_DOWN) {
+                // The system counts down to the alarm, the app does not update the text
+                builder.setUsesChronometer(true);
+                builder.getExtras().putBoolean(EXTRA_CHRONOMETER_COUNT_DOWN, true);
+            }
+            mUpcomingBuilders.put(alarmId, builder);
+        }
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(alarmTime);
+        int hour = calendar.get(Calendar.HOUR_OF_DAY);
+        boolean is24Hour = DateFormat.is24HourFormat(mContext);
+
+        TimeFormatter timeFormatter = TimeFormatter.getInstance(mContext);
+        mTextBuilder.setLength(0);
+        timeFormatter.appendTime(mTextBuilder, hour, calendar.get(Calendar.MINUTE), is24Hour);
+        if (!is24Hour) {
+            mTextBuilder.append(' ').append(timeFormatter.getAmPm(hour));
+        }
+
+        return builder
+                .setContentText(mTextBuilder.toString())
+                .setWhen(alarmTime)
+                .build();
+    }
+
+    private void cancelUpcoming() {
+        // Always cancelled, the notification may have been posted by a previous process
+        mNotificationManager.cancel(NOTIFICATION_ID_UPCOMING);
+        mUpcomingAlarmId = Alarm.INVALID_ID;
+        mUpcomingAlarmTime = 0;
+    }
+
+    private PendingIntent getShowAlarmsIntent() {
+        if (mShowAlarmsIntent == null) {
+            Intent intent = new Intent(mContext, MainActivity.class);
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            mShowAlarmsIntent = PendingIntent.getActivity(mContext, REQUEST_CODE_UPCOMING,
+                    intent, PendingIntent.FLAG_UPDATE_CURRENT);
+        }
+        return mShowAlarmsIntent;
+    }
+
+    private PendingIntent getUpcomingCheckIntent() {
+        if (mUpcomingCheckIntent == null) {
+            Intent intent = new Intent(mContext, UpcomingAlarmReceiver.class);
+            mUpcomingCheckIntent = PendingIntent.getBroadcast(mContext, REQUEST_CODE_UPCOMING,
+                    intent, PendingIntent.FLAG_UPDATE_CURRENT);
+        }
+        return mUpcomingCheckIntent;
+    }
+
+    private void updateStateWithAlarmDetails(int alarmId, long alarmTime) {
         mNotificationsActive = true;
         mCurrentAlarmId = alarmId;
         mCurrentAlarmTime = alarmTime;
     }
 
-    private boolean doesCurrentStateMatchAlarmDetails(UUID alarmId, long alarmTime, boolean wakelockEnable) {
+    private boolean doesCurrentStateMatchAlarmDetails(int alarmId, long alarmTime) {
         return (mCurrentAlarmTime == alarmTime &&
-                mCurrentAlarmId.equals(alarmId));
+                mCurrentAlarmId == alarmId);
     }
 
     private void resetState() {
         mNotificationsActive = false;
-        mCurrentAlarmId = new UUID(0, 0);
+        mCurrentAlarmId = Alarm.INVALID_ID;
         mCurrentAlarmTime = 0;
     }
 
@@ -36,6 +36,14 @@ public class AlarmRegistrar extends BroadcastReceiver {
 
     @Override
     public void onReceive(Context context, Intent intent) {
+        // Before the alarms are armed again, which disarms the missed fires
+        if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
+            AlarmFireLedger.getInstance(context).catchUpMissed();
+        }
+
         refreshAlarms(context);
+
+        // Snoozed fires do not survive a reboot
+        SnoozeScheduler.getInstance(context).rearm();
     }
 }
@@ -2,71 +2,247 @@ package io.github.loopX.XAlarm.module.Alarm;
 
 import android.content.Context;
 import android.content.Intent;
+import android.os.SystemClock;
+import android.util.SparseArray;
 
-import java.util.UUID;
-
-import io.github.loopX.XAlarm.XAlarmApp;
 import io.github.loopX.XAlarm.database.AlarmDBService;
+import io.github.loopX.XAlarm.history.AlarmHistory;
+import io.github.loopX.XAlarm.metrics.Counter;
+import io.github.loopX.XAlarm.metrics.LatencyHistogram;
+import io.github.loopX.XAlarm.metrics.Metrics;
+import io.github.loopX.XAlarm.tools.TaskScheduler;
 
+/**
+ * Decides which fired alarm rings, see RingingSessionQueue.
+ *
+ * The first alarm fired launches AlarmAlertFullScreen. Alarms of the same minute
+ * ring in its session, later ones wait; once a session is dismissed or snoozed the
+ * alert screen goes on with the next one instead of finishing. Alarms of the
+ * ringing sessions are read from DB once and kept until their session ends.
+ * Used from the main thread.
+ */
 public final class AlarmRingingController {
 
-    private Context mContext;
-    private Alarm mCurrentAlarm;
+    private static final LatencyHistogram REGISTER_ALARM_LATENCY = Metrics.histogram("ringing.register_alarm");
+    private static final Counter ALARMS_FIRED = Metrics.counter("alarm.fired");
+    private static final Counter ALARMS_COALESCED = Metrics.counter("alarm.coalesced");
+    private static final Counter ALARMS_QUEUED = Metrics.counter("alarm.queued");
+    private static final Counter ALARMS_DUPLICATE = Metrics.counter("alarm.duplicate_fire");
+    private static final Counter SESSION_HANDOFFS = Metrics.counter("ringing.session_handoff");
+
+    // Wake lock reasons of a ringing session, see SharedWakeLock
+    static final String WAKE_LOCK_RINGING = "ringing";
+    static final String WAKE_LOCK_RINGING_SERVICE = "ringing_service";
+
+    // Alarms ring until they are unlocked or snoozed, so the holds of a ringing
+    // session are renewed until it ends; only holds it left behind time out, as leaked
+    static final long RINGING_WAKE_LOCK_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    private static final long RINGING_WAKE_LOCK_RENEW_MILLIS = RINGING_WAKE_LOCK_TIMEOUT_MILLIS / 2;
+
+    private static AlarmRingingController sInstance;
+
+    private final Context mContext;
+    private final RingingSessionQueue mQueue = new RingingSessionQueue();
+    private final SparseArray<Alarm> mSessionAlarms = new SparseArray<>();
+    // SystemClock.elapsedRealtime() when the ringing session started
+    private long mSessionStartMillis;
     private boolean mAllowDismissRequested;
+    private boolean mWakeLockHeld;
+
+    private final Runnable mRenewWakeLocks = new Runnable() {
+        @Override
+        public void run() {
+            if (!mWakeLockHeld || mQueue.getCurrent() == null) return;
 
-    public AlarmRingingController(Context context) {
+            SharedWakeLock wakeLock = SharedWakeLock.getInstance(mContext);
+            wakeLock.extend(WAKE_LOCK_RINGING, RINGING_WAKE_LOCK_TIMEOUT_MILLIS);
+            wakeLock.extend(WAKE_LOCK_RINGING_SERVICE, RINGING_WAKE_LOCK_TIMEOUT_MILLIS);
+            TaskScheduler.getInstance().postDelayed(AlarmRingingController.this,
+                    this, RINGING_WAKE_LOCK_RENEW_MILLIS);
+        }
+    };
+
+    private AlarmRingingController(Context context) {
         mContext = context;
     }
 
+    public static synchronized AlarmRingingController getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AlarmRingingController(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
     protected void registerAlarm(Intent intent) {
-        SharedWakeLock.getInstance(mContext).acquireFullWakeLock();
+        long start = System.nanoTime();
+
+        // Alarms firing during a session share its wake lock
+        if (!mWakeLockHeld) {
+            SharedWakeLock.getInstance(mContext).acquire(WAKE_LOCK_RINGING,
+                    SharedWakeLock.LEVEL_FULL, RINGING_WAKE_LOCK_TIMEOUT_MILLIS);
+            mWakeLockHeld = true;
+            TaskScheduler.getInstance().postDelayed(this, mRenewWakeLocks, RINGING_WAKE_LOCK_RENEW_MILLIS);
+        }
 
         if (intent != null) {
 
-            // Get alarm ID from intent
-            UUID alarmId = (UUID) intent.getExtras().getSerializable(AlarmScheduler.X_ALARM_ID);
+            // Get alarm ID and scheduled time from intent
+            int alarmId = intent.getIntExtra(AlarmScheduler.X_ALARM_ID, Alarm.INVALID_ID);
+            long alarmTime = intent.getLongExtra(AlarmScheduler.X_ALARM_TIME, 0);
+            if (alarmTime == 0) {
+                alarmTime = System.currentTimeMillis();
+            }
+
+            // The ledger also knows fires rung before the process restarted
+            int result = AlarmFireLedger.getInstance(mContext).fire(alarmId, alarmTime)
+                    ? mQueue.offer(alarmId, alarmTime)
+                    : RingingSessionQueue.RESULT_DUPLICATE;
 
-            // Get alarm instance from DB
-            AlarmDBService alarmDBService = AlarmDBService.getInstance(XAlarmApp.getAppContext());
-            mCurrentAlarm = alarmDBService.getAlarm(alarmId);
+            if (result != RingingSessionQueue.RESULT_DUPLICATE) {
+                AlarmHistory.getInstance(mContext).recordFired(alarmId, alarmTime);
+            }
 
-            // Start ringtone and Vibrator
-            // startAlarmRinging();
+            switch (result) {
+                case RingingSessionQueue.RESULT_STARTED:
+                    mSessionStartMillis = SystemClock.elapsedRealtime();
 
-            // Launch alarm unlock UI
-            launchRingingUX(alarmId);
+                    // Launch alarm unlock UI
+                    launchRingingUX(alarmId);
 
-            AlarmNotificationManager
-                    .getInstance(mContext)
-                    .handleAlarmRunningNotificationStatus(alarmId);
+                    AlarmNotificationManager
+                            .getInstance(mContext)
+                            .handleAlarmRunningNotificationStatus(alarmId, alarmTime);
+                    ALARMS_FIRED.increment();
+                    break;
+                case RingingSessionQueue.RESULT_COALESCED:
+                    ALARMS_COALESCED.increment();
+                    ALARMS_FIRED.increment();
+                    break;
+                case RingingSessionQueue.RESULT_QUEUED:
+                    ALARMS_QUEUED.increment();
+                    ALARMS_FIRED.increment();
+                    break;
+                default:
+                    ALARMS_DUPLICATE.increment();
+                    break;
+            }
         }
+
+        releaseWakeLockIfIdle();
+        REGISTER_ALARM_LATENCY.recordSince(start);
     }
 
-    protected void alarmRingingSessionCompleted() {
-        // We need to handle the case where the alarm timed out. In that case we
-        // wont get an explicit call from the AlarmRingingActivity to silence the alarm
-        // silenceAlarmRinging();
-        mCurrentAlarm = null;
+    /**
+     * @return alarm whose unlock UI is shown for the ringing session, null if nothing rings
+     */
+    public Alarm getRingingAlarm() {
+        RingingSessionQueue.Session session = mQueue.getCurrent();
+        if (session == null) return null;
+
+        for (int alarmId : session.getAlarmIds()) {
+            // Skips alarms deleted while waiting
+            Alarm alarm = getSessionAlarm(alarmId);
+            if (alarm != null) {
+                return alarm;
+            }
+        }
+        return null;
+    }
 
-        // Cleanup all states
-        // mVibrator.cleanup();
-        // mRingtonePlayer.cleanup();
+    /**
+     * Ends the ringing session, schedules the next time of each of its alarms and
+     * starts the next waiting session
+     * @return alarm to show next, null if nothing else rings
+     */
+    public Alarm dismissSession() {
+        return endSession(false);
+    }
+
+    /**
+     * Ends the ringing session, its alarms ring again after their snooze interval.
+     * Alarms without snooze left are dismissed.
+     * @return alarm to show next, null if nothing else rings
+     */
+    public Alarm snoozeSession() {
+        return endSession(true);
+    }
 
-        SharedWakeLock.getInstance(mContext).releaseFullWakeLock();
+    private Alarm endSession(boolean snooze) {
+        RingingSessionQueue.Session session = mQueue.getCurrent();
+        if (session != null) {
+            SnoozeScheduler snoozeScheduler = SnoozeScheduler.getInstance(mContext);
+            AlarmHistory history = AlarmHistory.getInstance(mContext);
+            long ringingMillis = SystemClock.elapsedRealtime() - mSessionStartMillis;
+            for (int alarmId : session.getAlarmIds()) {
+                Alarm alarm = getSessionAlarm(alarmId);
+                mSessionAlarms.remove(alarmId);
+                if (alarm == null) continue;
+
+                if (snooze && snoozeScheduler.snooze(alarm) != 0) {
+                    history.recordSnoozed(alarmId, alarm.getUnlockType(),
+                            snoozeScheduler.getCount(alarmId), ringingMillis);
+                    continue;
+                }
+
+                history.recordDismissed(alarmId, alarm.getUnlockType(), ringingMillis);
+                snoozeScheduler.clear(alarmId);
+                alarm.schedule();
+            }
+        }
+
+        while (mQueue.completeCurrent() != null) {
+            Alarm next = getRingingAlarm();
+            if (next != null) {
+                mSessionStartMillis = SystemClock.elapsedRealtime();
+                AlarmNotificationManager.getInstance(mContext)
+                        .handleAlarmRunningNotificationStatus(next.getId(), mQueue.getCurrent().getTime());
+                SESSION_HANDOFFS.increment();
+                return next;
+            }
+        }
+
+        releaseWakeLockIfIdle();
+        return null;
+    }
+
+    private Alarm getSessionAlarm(int alarmId) {
+        Alarm alarm = mSessionAlarms.get(alarmId);
+        if (alarm == null) {
+            alarm = AlarmDBService.getInstance(mContext).getAlarm(alarmId);
+            if (alarm != null) {
+                mSessionAlarms.put(alarmId, alarm);
+            }
+        }
+        return alarm;
+    }
+
+    protected void alarmRingingSessionCompleted() {
+        // The foreground service stops after the last session, but an alarm may
+        // have fired again in the meantime
+        releaseWakeLockIfIdle();
+    }
+
+    private void releaseWakeLockIfIdle() {
+        if (mWakeLockHeld && mQueue.getCurrent() == null) {
+            SharedWakeLock.getInstance(mContext).release(WAKE_LOCK_RINGING);
+            mWakeLockHeld = false;
+            TaskScheduler.getInstance().cancel(this);
+        }
     }
 
     public void requestAllowDismiss() {
         mAllowDismissRequested = true;
     }
 
-    // alarmRingingSessionCompleted should always be called before this method.  If not, we should
+    // dismissSession should always be called before this method.  If not, we should
     // restart the AlarmRingingActivity so that we can successfully finish the alarm session
     public void alarmRingingSessionDismissed() {
         if (mAllowDismissRequested) {
             mAllowDismissRequested = false;
         } else {
-            if (mCurrentAlarm != null) {
-                launchRingingUX(mCurrentAlarm.getId());
+            Alarm alarm = getRingingAlarm();
+            if (alarm != null) {
+                launchRingingUX(alarm.getId());
             }
         }
     }
@@ -75,7 +251,7 @@ public final class AlarmRingingController {
      * Send intent to launch alarm unlock UI
      * @param alarmId
      */
-    private void launchRingingUX(UUID alarmId) {
+    private void launchRingingUX(int alarmId) {
         Intent intent = new Intent(mContext, AlarmAlertFullScreen.class);
         intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK |
                 Intent.FLAG_ACTIVITY_EXCLUDE_FROM_RECENTS |
@@ -83,4 +259,4 @@ public final class AlarmRingingController {
         intent.putExtra(AlarmScheduler.X_ALARM_ID, alarmId);
         mContext.startActivity(intent);
     }
-}
\ No newline at end of file
+}
@@ -7,8 +7,6 @@ import android.os.Binder;
 import android.os.IBinder;
 import android.util.Log;
 
-import java.util.UUID;
-
 public class AlarmRingingService extends Service {
 
     public final String TAG = this.getClass().getSimpleName();
@@ -27,11 +25,13 @@ public class AlarmRingingService extends Service {
 
     private final IBinder mBinder = new LocalBinder();
 
+    private boolean mForeground;
+
     @Override
     public void onCreate() {
         super.onCreate();
 
-        mController = new AlarmRingingController(getApplicationContext());
+        mController = AlarmRingingController.getInstance(this);
     }
 
     @Override
@@ -63,7 +63,7 @@ public class AlarmRingingService extends Service {
      * @param alarmId
      * @param alarmTime
      */
-    public static void startForegroundService(Context context, UUID alarmId, long alarmTime) {
+    public static void startForegroundService(Context context, int alarmId, long alarmTime) {
         Intent intent = new Intent(AlarmRingingService.ACTION_START_FOREGROUND);
         intent.setClass(context, AlarmRingingService.class);
         intent.putExtra(ALARM_ID, alarmId);
@@ -86,9 +86,17 @@ public class AlarmRingingService extends Service {
      * @param intent
      */
     private void enableForegroundService(Intent intent) {
-        UUID alarmId = (UUID) intent.getSerializableExtra(ALARM_ID);
-        startForeground((int) alarmId.getMostSignificantBits(),
-                    AlarmNotificationManager.createAlarmNotification(this, alarmId));
+        int alarmId = intent.getIntExtra(ALARM_ID, Alarm.INVALID_ID);
+        long alarmTime = intent.getLongExtra(ALARM_TIME, 0);
+        startForeground(AlarmNotificationManager.NOTIFICATION_ID_RINGING,
+                AlarmNotificationManager.getInstance(this).getRingingNotification(alarmId, alarmTime));
+
+        // Keeps the CPU up for the ringtone if the screen goes off
+        if (!mForeground) {
+            SharedWakeLock.getInstance(this).acquire(AlarmRingingController.WAKE_LOCK_RINGING_SERVICE,
+                    SharedWakeLock.LEVEL_PARTIAL, AlarmRingingController.RINGING_WAKE_LOCK_TIMEOUT_MILLIS);
+            mForeground = true;
+        }
     }
 
     /**
@@ -96,7 +104,19 @@ public class AlarmRingingService extends Service {
      */
     private void disableForegroundService() {
         stopForeground(true);
-        SharedWakeLock.getInstance(this).releasePartialWakeLock();
+
+        // The ringing session ends with the foreground state
+        mController.alarmRingingSessionCompleted();
+        if (mForeground) {
+            SharedWakeLock.getInstance(this).release(AlarmRingingController.WAKE_LOCK_RINGING_SERVICE);
+            mForeground = false;
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        disableForegroundService();
     }
 
     public class LocalBinder extends Binder {
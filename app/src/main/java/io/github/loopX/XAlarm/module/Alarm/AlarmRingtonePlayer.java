@@ -7,21 +7,74 @@ import android.net.Uri;
 
 import java.io.IOException;
 
+import io.github.loopX.XAlarm.audio.GainEnvelope;
+import io.github.loopX.XAlarm.audio.LoopingRingtonePlayer;
+import io.github.loopX.XAlarm.infrastructure.AppStartup;
+import io.github.loopX.XAlarm.metrics.LatencyHistogram;
+import io.github.loopX.XAlarm.metrics.Metrics;
+
 /**
- * Wrapper of the system media player.
+ * Plays a ringtone in a loop on the alarm stream.
  * It is called by AlarmRingingController.
+ *
+ * Ringtones go through the gapless LoopingRingtonePlayer when MediaCodec is
+ * available, the system media player is the fallback.
  */
 public class AlarmRingtonePlayer {
 
+    private static final LatencyHistogram PREPARE_LATENCY = Metrics.histogram("ringtone.prepare");
+
     private MediaPlayer mPlayer;
+    private LoopingRingtonePlayer mLoopingPlayer;
     private Context mContext;
+    private long mPrepareStart;
 
     public AlarmRingtonePlayer(Context context) {
         mContext = context;
-        mPlayer = new MediaPlayer();
     }
 
     public void play(Uri uri) {
+        play(uri, 0, GainEnvelope.CURVE_LINEAR);
+    }
+
+    /**
+     * @param crescendoSeconds time to rise from silence to full volume, 0 to start at full volume.
+     *                         The media player fallback always starts at full volume.
+     * @param crescendoCurve GainEnvelope.CURVE_*
+     */
+    public void play(Uri uri, int crescendoSeconds, int crescendoCurve) {
+        if (isPlaying()) return;
+
+        mPrepareStart = System.nanoTime();
+
+        if (LoopingRingtonePlayer.isSupported()) {
+            if (mLoopingPlayer == null) {
+                mLoopingPlayer = new LoopingRingtonePlayer(mContext, mLoopingListener);
+            }
+            mLoopingPlayer.play(uri, crescendoSeconds, crescendoCurve);
+        } else {
+            playWithMediaPlayer(uri);
+        }
+    }
+
+    private final LoopingRingtonePlayer.Listener mLoopingListener = new LoopingRingtonePlayer.Listener() {
+        @Override
+        public void onPlaybackStarted() {
+            onFirstSound();
+        }
+
+        @Override
+        public void onPlaybackFailed(Uri uri) {
+            playWithMediaPlayer(uri);
+        }
+    };
+
+    private void playWithMediaPlayer(Uri uri) {
+        // The native player is created by the first play, not with the wrapper
+        if (mPlayer == null) {
+            mPlayer = new MediaPlayer();
+        }
+
         if (!mPlayer.isPlaying()) {
 
             mPlayer.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
@@ -29,6 +82,7 @@ public class AlarmRingtonePlayer {
                 public void onPrepared(MediaPlayer mediaPlayer) {
                     // ToDo maybe not needed heres
                     mediaPlayer.start();
+                    onFirstSound();
                 }
             });
 
@@ -43,7 +97,15 @@ public class AlarmRingtonePlayer {
         }
     }
 
+    private void onFirstSound() {
+        PREPARE_LATENCY.recordSince(mPrepareStart);
+        AppStartup.onFirstSound();
+    }
+
     public void stop() {
+        if (mLoopingPlayer != null) {
+            mLoopingPlayer.stop();
+        }
         if (mPlayer != null) {
             if (mPlayer.isPlaying()) {
                 mPlayer.stop();
@@ -53,6 +115,10 @@ public class AlarmRingtonePlayer {
     }
 
     public void cleanup() {
+        if (mLoopingPlayer != null) {
+            mLoopingPlayer.stop();
+            mLoopingPlayer = null;
+        }
         if (mPlayer != null) {
             mPlayer.release();
             mPlayer = null;
@@ -60,6 +126,9 @@ public class AlarmRingtonePlayer {
     }
 
     public boolean isPlaying() {
+        if (mLoopingPlayer != null && mLoopingPlayer.isPlaying()) {
+            return true;
+        }
         if (mPlayer != null) {
            return mPlayer.isPlaying();
         }
@@ -8,25 +8,48 @@ import android.os.Build;
 
 import java.util.Calendar;
 
-import io.github.loopX.XAlarm.R;
+import io.github.loopX.XAlarm.tools.TimeFormatter;
 
 public class AlarmScheduler {
 
     // Key used in intent for alarm ID
     public static final String X_ALARM_ID = "x_alarm_id";
+    // Key used in intent for the time the alarm was scheduled for
+    public static final String X_ALARM_TIME = "x_alarm_time";
 
     public static long scheduleAlarm(Context context, Alarm alarm) {
 
-        PendingIntent pendingIntent = createPendingIntent(context, alarm);
-
         Calendar calenderNow = Calendar.getInstance();
         long time = getAlarmTime(calenderNow, alarm);
 
+        PendingIntent pendingIntent = createPendingIntent(context, alarm, time);
+
         setAlarm(context, time, pendingIntent);
+        AlarmFireLedger.getInstance(context).arm(getRequestCode(alarm.getId()), alarm.getId(), time);
+        onScheduleChanged(context);
 
         return time;
     }
 
+    /**
+     * Arms the snoozed fire of an alarm. It has its own PendingIntent, the next
+     * regular fire of the alarm stays scheduled
+     * @param time time to ring again
+     */
+    public static void scheduleSnooze(Context context, int alarmId, long time) {
+        setAlarm(context, time, createSnoozePendingIntent(context, alarmId, time));
+        AlarmFireLedger.getInstance(context).arm(getSnoozeRequestCode(alarmId), alarmId, time);
+        onScheduleChanged(context);
+    }
+
+    public static void cancelSnooze(Context context, int alarmId) {
+        AlarmManager alarmManager =
+                (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.cancel(createSnoozePendingIntent(context, alarmId, 0));
+        AlarmFireLedger.getInstance(context).disarm(getSnoozeRequestCode(alarmId));
+        onScheduleChanged(context);
+    }
+
     /**
      * Get alarm time
      * @param calendarFrom from this calendarFrom to calculate alarm
@@ -111,24 +134,71 @@ public class AlarmScheduler {
      * @param alarm alarm instance to cancela
      */
     public static void cancelAlarm(Context context, Alarm alarm) {
-        PendingIntent pIntent = createPendingIntent(context, alarm);
+        PendingIntent pIntent = createPendingIntent(context, alarm, 0);
         AlarmManager alarmManager =
                 (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
         alarmManager.cancel(pIntent);
+        AlarmFireLedger.getInstance(context).disarm(getRequestCode(alarm.getId()));
+        onScheduleChanged(context);
+    }
+
+    /**
+     * Pushes the armed fires to what shows the next alarm, nothing polls them
+     */
+    private static void onScheduleChanged(Context context) {
+        NextAlarmPublisher.getInstance(context).requestUpdate();
     }
 
-    private static PendingIntent createPendingIntent(Context context, Alarm alarm) {
+    /**
+     * @param time alarm time put in the intent, extras do not matter to find the intent to cancel
+     */
+    private static PendingIntent createPendingIntent(Context context, Alarm alarm, long time) {
         Intent intent = new Intent(context, AlarmWakeReceiver.class);
         intent.putExtra(X_ALARM_ID, alarm.getId());
+        intent.putExtra(X_ALARM_TIME, time);
 
         return PendingIntent
                 .getBroadcast(
                         context,
-                        (int)Math.abs(alarm.getId().getLeastSignificantBits()),
+                        getRequestCode(alarm.getId()),
                         intent,
                         PendingIntent.FLAG_UPDATE_CURRENT);
     }
 
+    private static PendingIntent createSnoozePendingIntent(Context context, int alarmId, long time) {
+        Intent intent = new Intent(context, AlarmWakeReceiver.class);
+        intent.putExtra(X_ALARM_ID, alarmId);
+        intent.putExtra(X_ALARM_TIME, time);
+
+        return PendingIntent
+                .getBroadcast(
+                        context,
+                        getSnoozeRequestCode(alarmId),
+                        intent,
+                        PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    /**
+     * Maps alarm id to PendingIntent request code.
+     *
+     * Alarm id is the SQLite row id, which is positive and never reused by an
+     * autoincrement table, so two alarms can not share the same request code
+     *
+     * @param alarmId alarm id
+     * @return request code
+     */
+    public static int getRequestCode(int alarmId) {
+        return alarmId;
+    }
+
+    /**
+     * Maps alarm id to the request code of its snoozed fire, negative so that it
+     * never matches the regular one
+     */
+    private static int getSnoozeRequestCode(int alarmId) {
+        return -alarmId;
+    }
+
     /**
      * Create a toast string to show when is the next alarm
      * @param context
@@ -136,34 +206,9 @@ public class AlarmScheduler {
      * @return
      */
     public static String getTimeToAlarmString(Context context, long timeInMillis, int idTemplate) {
-        long delta = timeInMillis - System.currentTimeMillis();
-        long hours = delta / (1000 * 60 * 60);
-        long minutes = delta / (1000 * 60) % 60;
-        long days = hours / 24;
-        hours = hours % 24;
-
-        String daySeq = (days == 0) ? "" :
-                (days == 1) ? context.getString(R.string.day) :
-                        context.getString(R.string.days, Long.toString(days));
-
-        String minSeq = (minutes == 0) ? "" :
-                (minutes == 1) ? context.getString(R.string.minute) :
-                        context.getString(R.string.minutes, Long.toString(minutes));
-
-        String hourSeq = (hours == 0) ? "" :
-                (hours == 1) ? context.getString(R.string.hour) :
-                        context.getString(R.string.hours, Long.toString(hours));
-
-        boolean dispDays = days > 0;
-        boolean dispHour = hours > 0;
-        boolean dispMinute = minutes > 0;
-
-        int index = (dispDays ? 1 : 0) |
-                (dispHour ? 2 : 0) |
-                (dispMinute ? 4 : 0);
-
-        String[] formats = context.getResources().getStringArray(idTemplate);
-        return String.format(formats[index], daySeq, hourSeq, minSeq);
+        StringBuilder text = new StringBuilder();
+        TimeFormatter.getInstance(context).appendTimeToAlarm(text, timeInMillis, idTemplate);
+        return text.toString();
     }
 
 }
@@ -4,48 +4,83 @@ import android.content.Context;
 import android.media.AudioAttributes;
 import android.os.Vibrator;
 
+import io.github.loopX.XAlarm.tools.TaskScheduler;
+import io.github.loopX.XAlarm.vibration.WaveformLibrary;
+import io.github.loopX.XAlarm.vibration.WaveformPlayer;
+
 /**
- * Wrapper of the system vibrator.
+ * Wrapper of the system vibrator, playing WaveformLibrary patterns through a
+ * WaveformPlayer. Level changes run on the main thread.
  * It is called by AlarmRingingController.
  */
 public class AlarmVibrator {
 
     private Vibrator mVibrator;
-    private boolean mIsVibrating; // Default false
+    private final AudioAttributes mAudioAttributes;
+    private final WaveformPlayer mPlayer;
 
     public AlarmVibrator(Context context) {
         mVibrator = (Vibrator) context.getSystemService(Context.VIBRATOR_SERVICE);
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP) {
+            mAudioAttributes = new AudioAttributes.Builder().setUsage(AudioAttributes.USAGE_ALARM).build();
+        } else {
+            mAudioAttributes = null;
+        }
+        mPlayer = new WaveformPlayer(mDriver, mScheduler);
     }
 
-    public void vibrate() {
-        if (!mIsVibrating) {
-
-            // Start immediately
-            // Vibrate for 200 milliseconds
-            // Sleep for 500 milliseconds
-            long[] vibrationPattern = {0, 200, 500};
+    private final WaveformPlayer.Driver mDriver = new WaveformPlayer.Driver() {
+        @Override
+        public void vibrate(long[] timings, int repeat) {
+            if (mVibrator == null) return;
 
-            // Start to vibrate which repeats indefinitely
             if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP) {
-                mVibrator.vibrate(vibrationPattern, 0,
-                        new AudioAttributes.Builder().setUsage(AudioAttributes.USAGE_ALARM).build());
+                mVibrator.vibrate(timings, repeat, mAudioAttributes);
             } else {
-                mVibrator.vibrate(vibrationPattern, 0);
+                mVibrator.vibrate(timings, repeat);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (mVibrator != null) {
+                mVibrator.cancel();
             }
+        }
+    };
+
+    private final WaveformPlayer.Scheduler mScheduler = new WaveformPlayer.Scheduler() {
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            TaskScheduler.getInstance().postDelayed(AlarmVibrator.this, task, delayMillis);
+        }
 
-            mIsVibrating = true;
+        @Override
+        public void removeCallbacks(Runnable task) {
+            // The player's level change is the only task of this owner
+            TaskScheduler.getInstance().cancel(AlarmVibrator.this);
         }
+    };
+
+    /**
+     * Starts the pattern, which repeats indefinitely and follows the ringtone crescendo.
+     * Goes on if the pattern is already playing.
+     * @param pattern WaveformLibrary pattern id
+     * @param crescendoCurve GainEnvelope.CURVE_*
+     */
+    public void vibrate(int pattern, int crescendoSeconds, int crescendoCurve) {
+        mPlayer.play(WaveformLibrary.get(pattern), crescendoSeconds, crescendoCurve);
     }
 
-    public void vibrate(int time) {
-        mVibrator.vibrate(time);
+    /**
+     * Vibrates once for half a second, not cut by stop or cleanup
+     */
+    public void buzz() {
+        mPlayer.buzz(WaveformLibrary.BUZZ);
     }
 
     public void stop() {
-        if (mIsVibrating) {
-            mVibrator.cancel();
-            mIsVibrating = false;
-        }
+        mPlayer.stop();
     }
 
     public void cleanup() {
@@ -53,4 +88,3 @@ public class AlarmVibrator {
         mVibrator = null;
     }
 }
-
@@ -5,6 +5,9 @@ import android.content.Intent;
 import android.support.v4.content.WakefulBroadcastReceiver;
 import android.util.Log;
 
+import io.github.loopX.XAlarm.infrastructure.AppStartup;
+import io.github.loopX.XAlarm.module.UnlockTypeModule.alarmType.UnlockLayoutCache;
+
 /**
  * This class is a special BroadcastReceiver that receives the PendingIntent from AlarmManager
  * while holding the wakelock.  It forwards the intent to the AlarmRingingService to dispatch the
@@ -15,6 +18,12 @@ public class AlarmWakeReceiver extends WakefulBroadcastReceiver {
 
     @Override
     public void onReceive(Context context, Intent intent) {
+        AppStartup.onAlarmBroadcast();
+
+        // Unlock UI is inflated in background while the service and activity start
+        UnlockLayoutCache.getInstance(context)
+                .prepare(intent.getIntExtra(AlarmScheduler.X_ALARM_ID, Alarm.INVALID_ID));
+
         Intent serviceIntent = new Intent(AlarmRingingService.ACTION_DISPATCH_ALARM);
         serviceIntent.setClass(context, AlarmRingingService.class);
         serviceIntent.putExtras(intent);
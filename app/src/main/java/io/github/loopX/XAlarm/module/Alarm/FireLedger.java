@@ -0,0 +1,233 @@
+package io.github.loopX.XAlarm.module.Alarm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Scheduled and actual fire times of alarms, kept in memory by AlarmFireLedger.
+ *
+ * Each change is an Event appended to storage and replayed in order when the
+ * ledger is loaded. Records are indexed by scheduled time, so the fires due in
+ * a window are found by binary search. A fire is armed under the request code of
+ * its PendingIntent; arming the same request code again supersedes it, like
+ * AlarmManager does.
+ *
+ * Not thread safe, used from the main thread.
+ */
+public final class FireLedger {
+
+    public static final int EVENT_ARMED = 0;
+    public static final int EVENT_DISARMED = 1;
+    public static final int EVENT_FIRED = 2;
+
+    /**
+     * A change of the ledger, as stored
+     */
+    public static final class Event {
+        public final int type;
+        public final int requestCode;
+        public final int alarmId;
+        public final long scheduledTime;
+        // Time the event happened, in milliseconds since epoch
+        public final long time;
+
+        public Event(int type, int requestCode, int alarmId, long scheduledTime, long time) {
+            this.type = type;
+            this.requestCode = requestCode;
+            this.alarmId = alarmId;
+            this.scheduledTime = scheduledTime;
+            this.time = time;
+        }
+    }
+
+    /**
+     * A fire of an alarm, armed or not
+     */
+    static final class Record {
+        final int alarmId;
+        final long scheduledTime;
+        // 0 until the alarm fires
+        long firedTime;
+        boolean disarmed;
+
+        Record(int alarmId, long scheduledTime) {
+            this.alarmId = alarmId;
+            this.scheduledTime = scheduledTime;
+        }
+
+        boolean isMissed() {
+            return firedTime == 0 && !disarmed;
+        }
+    }
+
+    // Sorted by scheduled time
+    private final ArrayList<Record> mRecords = new ArrayList<>();
+    // Request code to its armed fire
+    private final HashMap<Integer, Record> mArmed = new HashMap<>();
+
+    /**
+     * Records a fire set to AlarmManager, the fire armed before under the same
+     * request code is superseded
+     * @return event to store
+     */
+    Event arm(int requestCode, int alarmId, long scheduledTime, long now) {
+        Event event = new Event(EVENT_ARMED, requestCode, alarmId, scheduledTime, now);
+        replay(event);
+        return event;
+    }
+
+    /**
+     * Records that the fire armed under the request code was cancelled
+     * @return event to store, null if nothing was armed
+     */
+    Event disarm(int requestCode, long now) {
+        Record record = mArmed.get(requestCode);
+        if (record == null) return null;
+
+        Event event = new Event(EVENT_DISARMED, requestCode, record.alarmId, record.scheduledTime, now);
+        replay(event);
+        return event;
+    }
+
+    /**
+     * Records that an alarm rang for its scheduled time
+     * @return event to store, null if the fire already rang
+     */
+    Event fire(int alarmId, long scheduledTime, long now) {
+        Record record = find(alarmId, scheduledTime);
+        if (record != null && record.firedTime != 0) return null;
+
+        Event event = new Event(EVENT_FIRED, 0, alarmId, scheduledTime, now);
+        replay(event);
+        return event;
+    }
+
+    /**
+     * Applies an event, either new or loaded from storage
+     */
+    void replay(Event event) {
+        switch (event.type) {
+            case EVENT_ARMED: {
+                Record previous = mArmed.remove(event.requestCode);
+                if (previous != null) {
+                    previous.disarmed = true;
+                }
+                Record record = find(event.alarmId, event.scheduledTime);
+                if (record == null) {
+                    record = insert(event.alarmId, event.scheduledTime);
+                }
+                record.disarmed = false;
+                mArmed.put(event.requestCode, record);
+                break;
+            }
+            case EVENT_DISARMED: {
+                Record record = mArmed.remove(event.requestCode);
+                if (record != null) {
+                    record.disarmed = true;
+                }
+                break;
+            }
+            case EVENT_FIRED: {
+                Record record = find(event.alarmId, event.scheduledTime);
+                if (record == null) {
+                    record = insert(event.alarmId, event.scheduledTime);
+                }
+                record.firedTime = event.time;
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @return true if the fire of the alarm for this time already rang
+     */
+    boolean hasFired(int alarmId, long scheduledTime) {
+        Record record = find(alarmId, scheduledTime);
+        return record != null && record.firedTime != 0;
+    }
+
+    /**
+     * Finds the armed fires which did not ring, e.g. while the device was off
+     * @param now current time in milliseconds since epoch
+     * @param graceMillis how late a fire may still ring
+     * @return missed fires scheduled from now - graceMillis to now, oldest first
+     */
+    List<Record> findMissed(long now, long graceMillis) {
+        List<Record> missed = new ArrayList<>();
+        for (int i = lowerBound(now - graceMillis); i < mRecords.size(); i++) {
+            Record record = mRecords.get(i);
+            if (record.scheduledTime > now) break;
+            if (record.isMissed()) {
+                missed.add(record);
+            }
+        }
+        return missed;
+    }
+
+    /**
+     * @param now current time in milliseconds since epoch
+     * @return earliest armed fire which did not ring yet, scheduled at or after now,
+     * null if there is none
+     */
+    Record findNextArmed(long now) {
+        for (int i = lowerBound(now); i < mRecords.size(); i++) {
+            Record record = mRecords.get(i);
+            if (record.isMissed()) return record;
+        }
+        return null;
+    }
+
+    /**
+     * Forgets the fires scheduled before a time, armed ones included
+     */
+    void prune(long before) {
+        int end = lowerBound(before);
+        for (int i = 0; i < end; i++) {
+            Record record = mRecords.get(i);
+            if (!record.disarmed && record.firedTime == 0) {
+                mArmed.values().remove(record);
+            }
+        }
+        mRecords.subList(0, end).clear();
+    }
+
+    int size() {
+        return mRecords.size();
+    }
+
+    private Record find(int alarmId, long scheduledTime) {
+        for (int i = lowerBound(scheduledTime); i < mRecords.size(); i++) {
+            Record record = mRecords.get(i);
+            if (record.scheduledTime != scheduledTime) break;
+            if (record.alarmId == alarmId) return record;
+        }
+        return null;
+    }
+
+    private Record insert(int alarmId, long scheduledTime) {
+        Record record = new Record(alarmId, scheduledTime);
+        // After the records of the same time, fires are mostly armed in time order
+        mRecords.add(lowerBound(scheduledTime + 1), record);
+        return record;
+    }
+
+    /**
+     * @return index of the first record scheduled at or after the time
+     */
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = mRecords.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mRecords.get(mid).scheduledTime < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.loopX.XAlarm.module.Alarm;
+
+import android.content.Context;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.github.loopX.XAlarm.module.WidgetModule.NextAlarmWidgetProvider;
+import io.github.loopX.XAlarm.tools.TaskScheduler;
+
+/**
+ * Pushes the next armed fire, taken from AlarmFireLedger, to what shows it: the
+ * upcoming alarm notification and the home-screen widget.
+ *
+ * AlarmScheduler requests an update whenever it arms or cancels a fire, so the
+ * schedule is never polled. Requests made together, e.g. while the alarms are
+ * armed again, are handled once on the main thread.
+ */
+public final class NextAlarmPublisher {
+
+    private static NextAlarmPublisher sInstance;
+
+    private final Context mContext;
+    private final AtomicBoolean mUpdateScheduled = new AtomicBoolean();
+
+    private final Runnable mUpdate = new Runnable() {
+        @Override
+        public void run() {
+            mUpdateScheduled.set(false);
+            publish();
+        }
+    };
+
+    private NextAlarmPublisher(Context context) {
+        mContext = context;
+    }
+
+    public static synchronized NextAlarmPublisher getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new NextAlarmPublisher(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Publishes the next fire again after the armed fires changed.
+     * May be called from any thread.
+     */
+    public void requestUpdate() {
+        if (mUpdateScheduled.compareAndSet(false, true)) {
+            TaskScheduler.getInstance().postDelayed(this, mUpdate, 0);
+        }
+    }
+
+    private void publish() {
+        long now = System.currentTimeMillis();
+        FireLedger.Record next = AlarmFireLedger.getInstance(mContext).findNextFire(now);
+
+        AlarmNotificationManager.getInstance(mContext).updateUpcoming(next, now);
+        if (next != null) {
+            NextAlarmWidgetProvider.publish(mContext, next.alarmId, next.scheduledTime);
+        } else {
+            NextAlarmWidgetProvider.publish(mContext, Alarm.INVALID_ID, 0);
+        }
+    }
+}
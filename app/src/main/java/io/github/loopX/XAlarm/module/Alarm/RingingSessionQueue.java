@@ -0,0 +1,143 @@
+package io.github.loopX.XAlarm.module.Alarm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Alarms ringing now and waiting to ring, kept by AlarmRingingController.
+ *
+ * One session rings at a time. An alarm scheduled for the same minute as the
+ * ringing session joins it and is dismissed with it; alarms of other minutes wait
+ * in a queue ordered by scheduled time and ring one session after the other. An
+ * alarm already ringing or waiting is never added twice.
+ *
+ * Not thread safe, used from the main thread.
+ */
+final class RingingSessionQueue {
+
+    static final int RESULT_STARTED = 0;
+    static final int RESULT_COALESCED = 1;
+    static final int RESULT_QUEUED = 2;
+    static final int RESULT_DUPLICATE = 3;
+
+    private static final long MINUTE_MILLIS = 60 * 1000;
+
+    /**
+     * Alarms ringing together, the first one fired shows its unlock UI
+     */
+    static final class Session {
+        private final long mMinute;
+        private final ArrayList<Integer> mAlarmIds = new ArrayList<>();
+
+        Session(long minute) {
+            mMinute = minute;
+        }
+
+        /**
+         * @return scheduled minute of the session, in milliseconds since epoch
+         */
+        long getTime() {
+            return mMinute * MINUTE_MILLIS;
+        }
+
+        int getPrimaryAlarmId() {
+            return mAlarmIds.get(0);
+        }
+
+        List<Integer> getAlarmIds() {
+            return Collections.unmodifiableList(mAlarmIds);
+        }
+    }
+
+    private static final class Fire {
+        final int alarmId;
+        final long fireTime;
+        final long sequence;
+
+        Fire(int alarmId, long fireTime, long sequence) {
+            this.alarmId = alarmId;
+            this.fireTime = fireTime;
+            this.sequence = sequence;
+        }
+    }
+
+    // Earliest scheduled time first, then order of arrival
+    private final PriorityQueue<Fire> mPending = new PriorityQueue<>(4, new Comparator<Fire>() {
+        @Override
+        public int compare(Fire lhs, Fire rhs) {
+            if (lhs.fireTime != rhs.fireTime) {
+                return lhs.fireTime < rhs.fireTime ? -1 : 1;
+            }
+            return lhs.sequence < rhs.sequence ? -1 : (lhs.sequence == rhs.sequence ? 0 : 1);
+        }
+    });
+
+    private Session mCurrent;
+    private long mSequence;
+
+    /**
+     * Adds a fired alarm
+     * @param fireTime time the alarm was scheduled for, in milliseconds since epoch
+     * @return one of the RESULT_* constants
+     */
+    int offer(int alarmId, long fireTime) {
+        if (contains(alarmId)) return RESULT_DUPLICATE;
+
+        long minute = fireTime / MINUTE_MILLIS;
+        if (mCurrent == null) {
+            mCurrent = new Session(minute);
+            mCurrent.mAlarmIds.add(alarmId);
+            return RESULT_STARTED;
+        }
+        if (mCurrent.mMinute == minute) {
+            mCurrent.mAlarmIds.add(alarmId);
+            return RESULT_COALESCED;
+        }
+
+        mPending.add(new Fire(alarmId, fireTime, mSequence++));
+        return RESULT_QUEUED;
+    }
+
+    /**
+     * @return the ringing session, null if nothing rings
+     */
+    Session getCurrent() {
+        return mCurrent;
+    }
+
+    int getPendingCount() {
+        return mPending.size();
+    }
+
+    /**
+     * Ends the ringing session and starts the next one with every waiting alarm
+     * of the earliest minute
+     * @return the new session, null if nothing was waiting
+     */
+    Session completeCurrent() {
+        mCurrent = null;
+
+        Fire head = mPending.poll();
+        if (head == null) return null;
+
+        long minute = head.fireTime / MINUTE_MILLIS;
+        mCurrent = new Session(minute);
+        mCurrent.mAlarmIds.add(head.alarmId);
+        while (!mPending.isEmpty() && mPending.peek().fireTime / MINUTE_MILLIS == minute) {
+            mCurrent.mAlarmIds.add(mPending.poll().alarmId);
+        }
+        return mCurrent;
+    }
+
+    private boolean contains(int alarmId) {
+        if (mCurrent != null && mCurrent.mAlarmIds.contains(alarmId)) return true;
+
+        for (Fire fire : mPending) {
+            if (fire.alarmId == alarmId) return true;
+        }
+        return false;
+    }
+}
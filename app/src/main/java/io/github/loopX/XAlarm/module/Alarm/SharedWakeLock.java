@@ -2,58 +2,203 @@ package io.github.loopX.XAlarm.module.Alarm;
 
 import android.content.Context;
 import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
 
-public class SharedWakeLock {
+import java.util.HashMap;
+
+import io.github.loopX.XAlarm.metrics.Counter;
+import io.github.loopX.XAlarm.metrics.Gauge;
+import io.github.loopX.XAlarm.metrics.LatencyHistogram;
+import io.github.loopX.XAlarm.metrics.Metrics;
+import io.github.loopX.XAlarm.tools.TaskScheduler;
+
+/**
+ * Owns the full and partial wake locks of the app and shares them between holders.
+ *
+ * Every hold names a reason and a timeout. Holds of one reason are reference
+ * counted, each acquire must be matched by a release with the same reason. A wake
+ * lock is held while it has at least one holder. Holders of long work extend their
+ * timeout while the work goes on. When a reason is still held after its timeout it
+ * is released anyway, logged and counted as a leak in wakelock.leaked.[reason]. The system wake lock itself is acquired with the
+ * latest deadline too, in case the timeout can not run.
+ *
+ * Hold time of each reason, from first acquire to last release, is recorded in the
+ * wakelock.hold.[reason] histogram.
+ */
+public final class SharedWakeLock {
+
+    private static final String TAG = "SharedWakeLock";
+
+    public static final int LEVEL_PARTIAL = 0;
+    public static final int LEVEL_FULL = 1;
+
+    private static final Counter UNBALANCED_RELEASES = Metrics.counter("wakelock.unbalanced_release");
+    private static final Gauge HOLDERS = Metrics.gauge("wakelock.holders");
 
     private static SharedWakeLock sWakeLock;
 
-    private PowerManager.WakeLock mFullWakeLock;
-    private PowerManager.WakeLock mPartialWakeLock;
+    // Indexed by level
+    private final PowerManager.WakeLock[] mWakeLocks = new PowerManager.WakeLock[2];
+
+    private final HashMap<String, Holder> mHolders = new HashMap<>();
+
+    private final class Holder implements Runnable {
+        final String reason;
+        final int level;
+        final LatencyHistogram holdTime;
+        final Counter leaks;
+        int count;
+        long acquiredAt;
+        long deadline;
+
+        Holder(String reason, int level) {
+            this.reason = reason;
+            this.level = level;
+            holdTime = Metrics.histogram("wakelock.hold." + reason);
+            leaks = Metrics.counter("wakelock.leaked." + reason);
+        }
+
+        @Override
+        public void run() {
+            onTimeout(this);
+        }
+    }
 
     private SharedWakeLock(Context context) {
 
         Context appContext = context.getApplicationContext();
-        String TAG = this.getClass().getSimpleName(); // For debug purpose
 
         PowerManager powerManager = (PowerManager) appContext.getSystemService(Context.POWER_SERVICE);
 
-        mFullWakeLock = powerManager.newWakeLock((PowerManager.FULL_WAKE_LOCK |
+        mWakeLocks[LEVEL_FULL] = powerManager.newWakeLock((PowerManager.FULL_WAKE_LOCK |
                 PowerManager.SCREEN_BRIGHT_WAKE_LOCK |
                 PowerManager.ACQUIRE_CAUSES_WAKEUP |
                 PowerManager.ON_AFTER_RELEASE), TAG);
 
-        mPartialWakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, TAG);
+        mWakeLocks[LEVEL_PARTIAL] = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, TAG);
+
+        // Holders are counted here, the system locks are only switched on and off
+        for (PowerManager.WakeLock wakeLock : mWakeLocks) {
+            wakeLock.setReferenceCounted(false);
+        }
     }
 
-    public static SharedWakeLock getInstance(Context context) {
+    public static synchronized SharedWakeLock getInstance(Context context) {
         if (sWakeLock == null) {
             sWakeLock = new SharedWakeLock(context);
         }
         return sWakeLock;
     }
 
-    public void acquireFullWakeLock() {
-        if (!mFullWakeLock.isHeld()) {
-            mFullWakeLock.acquire();
+    /**
+     * Adds one hold of reason
+     * @param reason owner of the hold, one level per reason
+     * @param level LEVEL_FULL or LEVEL_PARTIAL
+     * @param timeoutMillis time after which all holds of reason are released as leaked
+     */
+    public synchronized void acquire(String reason, int level, long timeoutMillis) {
+        long now = SystemClock.elapsedRealtime();
+
+        Holder holder = mHolders.get(reason);
+        if (holder == null) {
+            holder = new Holder(reason, level);
+            holder.acquiredAt = now;
+            mHolders.put(reason, holder);
+            HOLDERS.set(mHolders.size());
+        } else if (holder.level != level) {
+            throw new IllegalArgumentException("Wake lock " + reason + " already held at another level");
         }
+        holder.count++;
+
+        extendDeadline(holder, now, timeoutMillis);
+        updateWakeLock(level);
     }
 
-    public void releaseFullWakeLock() {
-        if (mFullWakeLock.isHeld()) {
-            mFullWakeLock.release();
-        }
+    /**
+     * Moves the timeout of the holds of reason, without adding a hold, while what
+     * they guard is known to go on
+     * @param timeoutMillis time from now after which the holds are released as leaked
+     * @return false if reason is not held
+     */
+    public synchronized boolean extend(String reason, long timeoutMillis) {
+        Holder holder = mHolders.get(reason);
+        if (holder == null) return false;
+
+        extendDeadline(holder, SystemClock.elapsedRealtime(), timeoutMillis);
+        updateWakeLock(holder.level);
+        return true;
     }
 
-    public void acquirePartialWakeLock() {
-        if (!mPartialWakeLock.isHeld()) {
-            mPartialWakeLock.acquire();
+    /**
+     * Removes one hold of reason
+     */
+    public synchronized void release(String reason) {
+        Holder holder = mHolders.get(reason);
+        if (holder == null) {
+            // Released twice, or after its timeout
+            Log.w(TAG, "Wake lock " + reason + " released but not held");
+            UNBALANCED_RELEASES.increment();
+            return;
+        }
+
+        if (--holder.count == 0) {
+            endHold(holder);
         }
     }
 
-    public void releasePartialWakeLock() {
-        if (mPartialWakeLock.isHeld()) {
-            mPartialWakeLock.release();
+    public synchronized boolean isHeld(String reason) {
+        return mHolders.containsKey(reason);
+    }
+
+    private synchronized void onTimeout(Holder holder) {
+        // Released in the meantime
+        if (mHolders.get(holder.reason) != holder) return;
+
+        Log.e(TAG, "Wake lock " + holder.reason + " leaked, " + holder.count
+                + " hold(s) released after timeout");
+        holder.leaks.increment();
+        endHold(holder);
+    }
+
+    private static void extendDeadline(Holder holder, long now, long timeoutMillis) {
+        long deadline = now + timeoutMillis;
+        if (deadline > holder.deadline) {
+            holder.deadline = deadline;
+            TaskScheduler.getInstance().cancel(holder);
+            TaskScheduler.getInstance().postDelayed(holder, holder, timeoutMillis);
         }
     }
 
+    private void endHold(Holder holder) {
+        mHolders.remove(holder.reason);
+        HOLDERS.set(mHolders.size());
+        TaskScheduler.getInstance().cancel(holder);
+
+        holder.holdTime.record((SystemClock.elapsedRealtime() - holder.acquiredAt) * 1000);
+        updateWakeLock(holder.level);
+    }
+
+    /**
+     * Holds the wake lock of level until the latest deadline of its holders,
+     * releases it if there is none
+     */
+    private void updateWakeLock(int level) {
+        long deadline = 0;
+        for (Holder holder : mHolders.values()) {
+            if (holder.level == level) {
+                deadline = Math.max(deadline, holder.deadline);
+            }
+        }
+
+        PowerManager.WakeLock wakeLock = mWakeLocks[level];
+        if (deadline == 0) {
+            if (wakeLock.isHeld()) {
+                wakeLock.release();
+            }
+        } else {
+            // Not reference counted, acquiring again only moves the timeout
+            wakeLock.acquire(Math.max(1, deadline - SystemClock.elapsedRealtime()));
+        }
+    }
 }
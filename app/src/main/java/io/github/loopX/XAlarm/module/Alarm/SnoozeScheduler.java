@@ -0,0 +1,138 @@
+package io.github.loopX.XAlarm.module.Alarm;
+
+import android.content.Context;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.github.loopX.XAlarm.database.AlarmDBService;
+import io.github.loopX.XAlarm.metrics.Counter;
+import io.github.loopX.XAlarm.metrics.Metrics;
+import io.github.loopX.XAlarm.tools.TaskScheduler;
+
+/**
+ * Snoozes ringing alarms.
+ *
+ * Snooze state lives in a SnoozeTimeline in memory, the snooze table is only read
+ * when the scheduler is created. A snooze re-arms the alarm with one AlarmManager
+ * call and saves the single snooze row of the alarm in background; the alarm row
+ * is not written and nothing is queried. Rows changed before the background write
+ * runs are written once.
+ *
+ * Used from the main thread.
+ */
+public final class SnoozeScheduler {
+
+    private static final Counter SNOOZES = Metrics.counter("alarm.snoozed");
+
+    private static SnoozeScheduler sInstance;
+
+    private final Context mContext;
+    private final SnoozeTimeline mTimeline = new SnoozeTimeline();
+
+    // Guarded by itself. Alarm id to the entry to write, null to delete the row
+    private final HashMap<Integer, SnoozeTimeline.Entry> mUnsaved = new HashMap<>();
+    // Guarded by mUnsaved
+    private boolean mSaving;
+
+    private final Runnable mSave = new Runnable() {
+        @Override
+        public void run() {
+            AlarmDBService alarmDBService = AlarmDBService.getInstance(mContext);
+            while (true) {
+                Map<Integer, SnoozeTimeline.Entry> rows;
+                synchronized (mUnsaved) {
+                    if (mUnsaved.isEmpty()) {
+                        mSaving = false;
+                        return;
+                    }
+                    rows = new HashMap<>(mUnsaved);
+                    mUnsaved.clear();
+                }
+
+                for (Map.Entry<Integer, SnoozeTimeline.Entry> row : rows.entrySet()) {
+                    if (row.getValue() != null) {
+                        alarmDBService.putSnooze(row.getValue());
+                    } else {
+                        alarmDBService.deleteSnooze(row.getKey());
+                    }
+                }
+            }
+        }
+    };
+
+    private SnoozeScheduler(Context context) {
+        mContext = context;
+
+        for (SnoozeTimeline.Entry entry : AlarmDBService.getInstance(context).getSnoozes()) {
+            mTimeline.restore(entry);
+        }
+    }
+
+    public static synchronized SnoozeScheduler getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new SnoozeScheduler(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    public boolean canSnooze(Alarm alarm) {
+        return mTimeline.canSnooze(alarm.getId(), alarm.getSnoozeMinutes(), alarm.getSnoozeMaxCount());
+    }
+
+    /**
+     * @return snoozes of the alarm in a row, 0 if it is not snoozed
+     */
+    public int getCount(int alarmId) {
+        return mTimeline.getCount(alarmId);
+    }
+
+    /**
+     * Makes the alarm ring again after its snooze interval
+     * @return time the alarm rings again, 0 if it has no snooze left
+     */
+    public long snooze(Alarm alarm) {
+        SnoozeTimeline.Entry entry = mTimeline.snooze(alarm.getId(), System.currentTimeMillis(),
+                alarm.getSnoozeMinutes(), alarm.getSnoozeMaxCount());
+        if (entry == null) return 0;
+
+        AlarmScheduler.scheduleSnooze(mContext, entry.alarmId, entry.fireTime);
+        save(entry.alarmId, entry);
+
+        SNOOZES.increment();
+        return entry.fireTime;
+    }
+
+    /**
+     * Forgets the snoozes of a dismissed alarm and cancels its snoozed fire.
+     * Does nothing for an alarm which was not snoozed.
+     */
+    public void clear(int alarmId) {
+        if (!mTimeline.clear(alarmId)) return;
+
+        AlarmScheduler.cancelSnooze(mContext, alarmId);
+        save(alarmId, null);
+    }
+
+    /**
+     * Arms the snoozed fires again, e.g. after a reboot cleared them.
+     * Fires due in the past are left to AlarmFireLedger.catchUpMissed.
+     */
+    public void rearm() {
+        long now = System.currentTimeMillis();
+        for (SnoozeTimeline.Entry entry : mTimeline.getEntries()) {
+            if (entry.fireTime > now) {
+                AlarmScheduler.scheduleSnooze(mContext, entry.alarmId, entry.fireTime);
+            }
+        }
+    }
+
+    private void save(int alarmId, SnoozeTimeline.Entry entry) {
+        synchronized (mUnsaved) {
+            mUnsaved.put(alarmId, entry);
+            if (mSaving) return;
+            mSaving = true;
+        }
+        TaskScheduler.getInstance().execute(mSave);
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.loopX.XAlarm.module.Alarm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Snoozed alarms and when they ring again, kept in memory by SnoozeScheduler.
+ *
+ * An alarm can be snoozed a limited number of times, the count is reset once
+ * the alarm is dismissed.
+ *
+ * Not thread safe, used from the main thread.
+ */
+public final class SnoozeTimeline {
+
+    public static final class Entry {
+        public final int alarmId;
+        public final long fireTime;
+        public final int count;
+
+        public Entry(int alarmId, long fireTime, int count) {
+            this.alarmId = alarmId;
+            this.fireTime = fireTime;
+            this.count = count;
+        }
+    }
+
+    private static final long MINUTE_MILLIS = 60 * 1000;
+
+    private final HashMap<Integer, Entry> mEntries = new HashMap<>();
+
+    /**
+     * Adds an entry loaded from storage
+     */
+    void restore(Entry entry) {
+        mEntries.put(entry.alarmId, entry);
+    }
+
+    /**
+     * @param intervalMinutes snooze interval of the alarm, 0 if it can not be snoozed
+     * @return true if the alarm has snoozes left
+     */
+    boolean canSnooze(int alarmId, int intervalMinutes, int maxCount) {
+        return intervalMinutes > 0 && getCount(alarmId) < maxCount;
+    }
+
+    /**
+     * Snoozes the alarm from now on
+     * @param now current time in milliseconds since epoch
+     * @return the new entry, null if the alarm has no snooze left
+     */
+    Entry snooze(int alarmId, long now, int intervalMinutes, int maxCount) {
+        if (!canSnooze(alarmId, intervalMinutes, maxCount)) return null;
+
+        Entry entry = new Entry(alarmId, now + intervalMinutes * MINUTE_MILLIS, getCount(alarmId) + 1);
+        mEntries.put(alarmId, entry);
+        return entry;
+    }
+
+    /**
+     * @return the entry of the alarm, null if it is not snoozed
+     */
+    Entry get(int alarmId) {
+        return mEntries.get(alarmId);
+    }
+
+    int getCount(int alarmId) {
+        Entry entry = mEntries.get(alarmId);
+        return entry == null ? 0 : entry.count;
+    }
+
+    /**
+     * Forgets the snoozes of the alarm
+     * @return true if it was snoozed
+     */
+    boolean clear(int alarmId) {
+        return mEntries.remove(alarmId) != null;
+    }
+
+    List<Entry> getEntries() {
+        return new ArrayList<>(mEntries.values());
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.loopX.XAlarm.module.Alarm;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Receives the non-wakeup alarm set by AlarmNotificationManager for the time the
+ * upcoming alarm notification should show up.
+ */
+public class UpcomingAlarmReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        NextAlarmPublisher.getInstance(context).requestUpdate();
+    }
+}
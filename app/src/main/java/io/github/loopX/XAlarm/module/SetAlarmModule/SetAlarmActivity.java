@@ -10,25 +10,21 @@ import android.widget.ImageView;
 import android.widget.Toast;
 
 import com.facebook.rebound.SpringUtil;
-import com.tendcloud.tenddata.TCAgent;
 import com.wx.wheelview.common.WheelConstants;
 import com.wx.wheelview.widget.WheelView;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
 import java.util.List;
-import java.util.Locale;
-import java.util.UUID;
 
-import io.github.loopX.XAlarm.MainActivity;
 import io.github.loopX.XAlarm.R;
+import io.github.loopX.XAlarm.analytics.Analytics;
 import io.github.loopX.XAlarm.tools.UIUtils;
 import io.github.loopX.XAlarm.database.AlarmDBService;
 import io.github.loopX.XAlarm.infrastructure.BaseActivity;
 import io.github.loopX.XAlarm.module.Alarm.Alarm;
 import io.github.loopX.XAlarm.module.Alarm.AlarmScheduler;
+import io.github.loopX.XAlarm.tools.TimeFormatter;
 import io.github.loopX.XAlarm.tools.ToastMaster;
 import io.github.loopX.XAlarm.view.RippleBackgroundView;
 import io.github.loopX.XAlarm.view.YummyTextView;
@@ -44,21 +40,7 @@ public class SetAlarmActivity extends BaseActivity {
     private ArrayList<String> hourStrList;
     private ArrayList<String> amPMStrList;
     
-    private DayOfWeekSelectorView mondaySelectorView;
-    private DayOfWeekSelectorView tuesdaySelector;
-    private DayOfWeekSelectorView wednesdaySelector;
-    private DayOfWeekSelectorView thursdaySelector;
-    private DayOfWeekSelectorView fridaySelector;
-    private DayOfWeekSelectorView saturdaySelector;
-    private DayOfWeekSelectorView sundaySelector;
-
-    private YummyTextView tvMON;
-    private YummyTextView tvTUE;
-    private YummyTextView tvWED;
-    private YummyTextView tvTHU;
-    private YummyTextView tvFRI;
-    private YummyTextView tvSAT;
-    private YummyTextView tvSUN;
+    private WeekDaySelectorView weekDaySelector;
 
     private YummyTextView tvCurrentAlarmTime;
     private YummyTextView tvCurrentAlarmAMPM;
@@ -90,7 +72,7 @@ public class SetAlarmActivity extends BaseActivity {
 
         /** Get alarm object from intent **/
 
-        UUID alarmId = (UUID) getIntent().getSerializableExtra(AlarmScheduler.X_ALARM_ID);
+        int alarmId = getIntent().getIntExtra(AlarmScheduler.X_ALARM_ID, Alarm.INVALID_ID);
         mAlarm = AlarmDBService.getInstance(this).getAlarm(alarmId);
 
         /** Init top bar **/
@@ -115,23 +97,17 @@ public class SetAlarmActivity extends BaseActivity {
             rippleBackgroundView.setBackgroundResource(R.color.alarm_set_top_alarm_off);
         }
 
-        final Calendar cal = Calendar.getInstance();
+        TimeFormatter timeFormatter = TimeFormatter.getInstance(this);
 
-        cal.set(Calendar.HOUR_OF_DAY, mAlarm.getTimeHour());
-        cal.set(Calendar.MINUTE, mAlarm.getTimeMinute());
-
-        Locale locale = new Locale("en");
+        StringBuilder time = new StringBuilder(5);
+        timeFormatter.appendTime(time, mAlarm.getTimeHour(), mAlarm.getTimeMinute(), is24hMode);
+        tvCurrentAlarmTime.setText(time);
 
         if(is24hMode) {
-            SimpleDateFormat dateFormatTime = new SimpleDateFormat(MainActivity.M24, locale);
-            tvCurrentAlarmTime.setText(dateFormatTime.format(cal.getTime()));
             tvCurrentAlarmAMPM.setVisibility(View.GONE);
         } else {
-            SimpleDateFormat dateFormatTime = new SimpleDateFormat(MainActivity.M12, locale);
-            SimpleDateFormat dateFormatAMPM = new SimpleDateFormat("a", locale);
-            tvCurrentAlarmTime.setText(dateFormatTime.format(cal.getTime()));
             tvCurrentAlarmAMPM.setVisibility(View.VISIBLE);
-            tvCurrentAlarmAMPM.setText(dateFormatAMPM.format(cal.getTime()));
+            tvCurrentAlarmAMPM.setText(timeFormatter.getAmPm(mAlarm.getTimeHour()));
         }
 
 
@@ -203,22 +179,20 @@ public class SetAlarmActivity extends BaseActivity {
         });
         
         
-        SimpleDateFormat dateFormatHour = null;
-
         if(is24hMode) {
             amPmWheelView.setVisibility(View.INVISIBLE);
             AMPM = "";
-            dateFormatHour = new SimpleDateFormat("HH", locale);
         } else {
             amPmWheelView.setVisibility(View.VISIBLE);
-            SimpleDateFormat dateFormatAMPM = new SimpleDateFormat("a", locale);
-            AMPM = dateFormatAMPM.format(cal.getTime());
+            AMPM = timeFormatter.getAmPm(mAlarm.getTimeHour());
             amPmWheelView.setSelection((AMPM.equals("AM") ? 1 : 2));
-            dateFormatHour = new SimpleDateFormat("hh", locale);
         }
 
+        StringBuilder hour = new StringBuilder(2);
+        TimeFormatter.appendTwoDigits(hour, TimeFormatter.getDisplayHour(mAlarm.getTimeHour(), is24hMode));
+
         minuteWheelView.setSelection(minutesStrList.indexOf("" + mAlarm.getTimeMinute()));
-        hourWheelView.setSelection(hourStrList.indexOf(dateFormatHour.format(cal.getTime())));
+        hourWheelView.setSelection(hourStrList.indexOf(hour.toString()));
 
         hourWheelView.setOnWheelItemSelectedListener(new WheelView.OnWheelItemSelectedListener() {
             @Override
@@ -262,33 +236,11 @@ public class SetAlarmActivity extends BaseActivity {
         });
         
         
-        tvMON = (YummyTextView) findViewById(R.id.tv_monday);
-        tvTUE = (YummyTextView) findViewById(R.id.tv_tuesday);
-        tvWED = (YummyTextView) findViewById(R.id.tv_wednesday);
-        tvTHU = (YummyTextView) findViewById(R.id.tv_thursday);
-        tvFRI = (YummyTextView) findViewById(R.id.tv_friday);
-        tvSAT = (YummyTextView) findViewById(R.id.tv_saturday);
-        tvSUN = (YummyTextView) findViewById(R.id.tv_sunday);
-        
         btnAccept = (ImageView) findViewById(R.id.im_set_alarm_accept);
 
-        mondaySelectorView = (DayOfWeekSelectorView) findViewById(R.id.mondaySelector);
-        tuesdaySelector = (DayOfWeekSelectorView) findViewById(R.id.tuesdaySelector);
-        wednesdaySelector = (DayOfWeekSelectorView) findViewById(R.id.wednesdaySelector);
-        thursdaySelector = (DayOfWeekSelectorView) findViewById(R.id.thursdaySelector);
-        fridaySelector = (DayOfWeekSelectorView) findViewById(R.id.fridaySelector);
-        saturdaySelector = (DayOfWeekSelectorView) findViewById(R.id.saturdaySelector);
-        sundaySelector = (DayOfWeekSelectorView) findViewById(R.id.sundaySelector);
-        
-        mondaySelectorView.setDayOfWeekSelectorListener(dayOfWeekSelectorListener);
-        tuesdaySelector.setDayOfWeekSelectorListener(dayOfWeekSelectorListener);
-        wednesdaySelector.setDayOfWeekSelectorListener(dayOfWeekSelectorListener);
-        thursdaySelector.setDayOfWeekSelectorListener(dayOfWeekSelectorListener);
-        fridaySelector.setDayOfWeekSelectorListener(dayOfWeekSelectorListener);
-        saturdaySelector.setDayOfWeekSelectorListener(dayOfWeekSelectorListener);
-        sundaySelector.setDayOfWeekSelectorListener(dayOfWeekSelectorListener);
-
-        initRepeat();
+        weekDaySelector = (WeekDaySelectorView) findViewById(R.id.weekDaySelector);
+        weekDaySelector.setDayOfWeekSelectorListener(dayOfWeekSelectorListener);
+        weekDaySelector.setRepeatMask(mAlarm.getRepeatingDaysMask());
 
     }
 
@@ -324,7 +276,7 @@ public class SetAlarmActivity extends BaseActivity {
         return minutesStrList;
     }
 
-    DayOfWeekSelectorView.DayOfWeekSelectorListener dayOfWeekSelectorListener = new DayOfWeekSelectorView.DayOfWeekSelectorListener() {
+    WeekDaySelectorView.DayOfWeekSelectorListener dayOfWeekSelectorListener = new WeekDaySelectorView.DayOfWeekSelectorListener() {
         @Override
         public void onDayOfWeekSelector(int dayOfWeek, boolean selected) {
             mAlarm.setRepeatingDay(dayOfWeek, selected);
@@ -390,7 +342,7 @@ public class SetAlarmActivity extends BaseActivity {
                 // Update alarm in DB
                 AlarmDBService.getInstance(this).updateAlarm(mAlarm);
 
-                TCAgent.onEvent(this,"闹钟状态",mAlarm.isEnabled()? "开启" : "关闭" );
+                Analytics.onEvent("闹钟状态", mAlarm.isEnabled()? "开启" : "关闭");
                 
                 finish();
                 break;
@@ -398,29 +350,6 @@ public class SetAlarmActivity extends BaseActivity {
 
     }
 
-    private void initRepeat() {
-
-        int colorActiv = ContextCompat.getColor(this, R.color.loopX_3);
-        int colorNoActiv = ContextCompat.getColor(this, R.color.loopX_6);
-
-        tvMON.setTextColor(mAlarm.getRepeatingDay(Calendar.MONDAY - 1) ? colorActiv : colorNoActiv);
-        tvTUE.setTextColor(mAlarm.getRepeatingDay(Calendar.TUESDAY - 1) ? colorActiv : colorNoActiv);
-        tvWED.setTextColor(mAlarm.getRepeatingDay(Calendar.WEDNESDAY - 1) ? colorActiv : colorNoActiv);
-        tvTHU.setTextColor(mAlarm.getRepeatingDay(Calendar.THURSDAY - 1) ? colorActiv : colorNoActiv);
-        tvFRI.setTextColor(mAlarm.getRepeatingDay(Calendar.FRIDAY - 1) ? colorActiv : colorNoActiv);
-        tvSAT.setTextColor(mAlarm.getRepeatingDay(Calendar.SATURDAY - 1) ? colorActiv : colorNoActiv);
-        tvSUN.setTextColor(mAlarm.getRepeatingDay(Calendar.SUNDAY - 1) ? colorActiv : colorNoActiv);
-
-        mondaySelectorView.setDay(Calendar.MONDAY, mAlarm.getRepeatingDay(Calendar.MONDAY - 1));
-        tuesdaySelector.setDay(Calendar.TUESDAY, mAlarm.getRepeatingDay(Calendar.TUESDAY - 1));
-        wednesdaySelector.setDay(Calendar.WEDNESDAY, mAlarm.getRepeatingDay(Calendar.WEDNESDAY - 1));
-        thursdaySelector.setDay(Calendar.THURSDAY, mAlarm.getRepeatingDay(Calendar.THURSDAY - 1));
-        fridaySelector.setDay(Calendar.FRIDAY, mAlarm.getRepeatingDay(Calendar.FRIDAY - 1));
-        saturdaySelector.setDay(Calendar.SATURDAY, mAlarm.getRepeatingDay(Calendar.SATURDAY - 1));
-        sundaySelector.setDay(Calendar.SUNDAY, mAlarm.getRepeatingDay(Calendar.SUNDAY - 1));
-
-    }
-
     @Override
     public void onWindowFocusChanged(boolean hasFocus) {
         super.onWindowFocusChanged(hasFocus);
@@ -0,0 +1,263 @@
+package io.github.loopX.XAlarm.module.SetAlarmModule;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
+import android.view.View;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+
+import java.util.Calendar;
+
+import io.github.loopX.XAlarm.R;
+import io.github.loopX.XAlarm.metrics.FrameMonitor;
+import io.github.loopX.XAlarm.tools.FrameScheduler;
+import io.github.loopX.XAlarm.tools.TypefaceHelp;
+import io.github.loopX.XAlarm.tools.UIUtils;
+
+/**
+ * Draws the seven days of the week, Monday first, and toggles them on tap.
+ *
+ * The selection is a repeat bitmask where bit n is the day Calendar.DAY_OF_WEEK n + 1,
+ * the same indexes as Alarm.getRepeatingDay. Toggled days play a ripple filling their
+ * circle with the new color; all ripples in progress share one frame callback.
+ */
+public class WeekDaySelectorView extends View {
+
+    private static final int[] DAYS = {Calendar.MONDAY, Calendar.TUESDAY, Calendar.WEDNESDAY,
+            Calendar.THURSDAY, Calendar.FRIDAY, Calendar.SATURDAY, Calendar.SUNDAY};
+    private static final String[] DAY_NAMES = {"MON", "TUE", "WED", "THU", "FRI", "SAT", "SUN"};
+
+    private static final long TOGGLE_DURATION_MS = 350;
+
+    private final Interpolator mToggleInterpolator = new DecelerateInterpolator();
+
+    private final Paint mCirclePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private final int mSelectedColor;
+    private final int mUnSelectedColor;
+    private final int mSelectedTextColor;
+    private final int mUnSelectedTextColor;
+    private final float mCircleRadius;
+
+    private int mRepeatMask;
+
+    // Toggle ripple of each column: start time, -1 until its first frame
+    private final long[] mToggleStartNanos = new long[DAYS.length];
+    private final float[] mToggleFraction = new float[DAYS.length];
+    private int mAnimatingColumns;
+
+    private int mPressedColumn = -1;
+
+    private DayOfWeekSelectorListener dayOfWeekSelectorListener;
+
+    public WeekDaySelectorView(Context context) {
+        this(context, null);
+    }
+
+    public WeekDaySelectorView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public WeekDaySelectorView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        mSelectedColor = UIUtils.getColor(R.color.loopX_2);
+        mUnSelectedColor = Color.parseColor("#FF1B1A30");
+        mSelectedTextColor = UIUtils.getColor(R.color.loopX_3);
+        mUnSelectedTextColor = UIUtils.getColor(R.color.loopX_3_40_alpha);
+        mCircleRadius = UIUtils.dip2px(40) / 2f;
+
+        mCirclePaint.setStyle(Paint.Style.FILL);
+
+        TypefaceHelp.getAsync(context, TypefaceHelp.BEBAS_NEUE, new TypefaceHelp.Callback() {
+            @Override
+            public void onTypefaceLoaded(Typeface typeface) {
+                mTextPaint.setTypeface(typeface);
+                invalidate();
+            }
+        });
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+        mTextPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 15,
+                getResources().getDisplayMetrics()));
+    }
+
+    /**
+     * Sets the selection without animation
+     * @param repeatMask bit n set when day n (Calendar.DAY_OF_WEEK - 1) repeats
+     */
+    public void setRepeatMask(int repeatMask) {
+        mRepeatMask = repeatMask;
+        stopToggles();
+        invalidate();
+    }
+
+    public int getRepeatMask() {
+        return mRepeatMask;
+    }
+
+    public void setDayOfWeekSelectorListener(DayOfWeekSelectorListener dayOfWeekSelectorListener) {
+        this.dayOfWeekSelectorListener = dayOfWeekSelectorListener;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        float centerY = getHeight() / 2f;
+        float textBaseline = centerY - (mTextPaint.ascent() + mTextPaint.descent()) / 2f;
+
+        for (int column = 0; column < DAYS.length; column++) {
+            float centerX = getColumnCenterX(column);
+            boolean selected = isSelected(column);
+
+            if ((mAnimatingColumns & (1 << column)) != 0) {
+                // Previous color below, new color growing from the center
+                mCirclePaint.setColor(selected ? mUnSelectedColor : mSelectedColor);
+                canvas.drawCircle(centerX, centerY, mCircleRadius, mCirclePaint);
+
+                mCirclePaint.setColor(selected ? mSelectedColor : mUnSelectedColor);
+                canvas.drawCircle(centerX, centerY,
+                        mCircleRadius * mToggleInterpolator.getInterpolation(mToggleFraction[column]), mCirclePaint);
+            } else {
+                mCirclePaint.setColor(selected ? mSelectedColor : mUnSelectedColor);
+                canvas.drawCircle(centerX, centerY, mCircleRadius, mCirclePaint);
+            }
+
+            mTextPaint.setColor(selected ? mSelectedTextColor : mUnSelectedTextColor);
+            canvas.drawText(DAY_NAMES[column], centerX, textBaseline, mTextPaint);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!isEnabled()) return false;
+
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mPressedColumn = getColumnAt(event.getX());
+                return mPressedColumn >= 0;
+
+            case MotionEvent.ACTION_UP:
+                int column = getColumnAt(event.getX());
+                boolean inside = event.getY() >= 0 && event.getY() < getHeight();
+                if (column >= 0 && column == mPressedColumn && inside) {
+                    toggleColumn(column);
+                    playSoundEffect(SoundEffectConstants.CLICK);
+                    performClick();
+                }
+                mPressedColumn = -1;
+                return true;
+
+            case MotionEvent.ACTION_CANCEL:
+                mPressedColumn = -1;
+                return true;
+        }
+        return mPressedColumn >= 0;
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        stopToggles();
+    }
+
+    private void toggleColumn(int column) {
+        int dayOfWeek = DAYS[column] - 1;
+        mRepeatMask ^= 1 << dayOfWeek;
+
+        if (mAnimatingColumns == 0) {
+            FrameMonitor.beginSection(FrameMonitor.TAG_RIPPLE);
+            FrameScheduler.getInstance().add("week_day_toggle", mToggleFrame);
+        }
+        mAnimatingColumns |= 1 << column;
+        mToggleStartNanos[column] = -1;
+        mToggleFraction[column] = 0;
+        invalidateColumn(column);
+
+        if (dayOfWeekSelectorListener != null) {
+            dayOfWeekSelectorListener.onDayOfWeekSelector(dayOfWeek, isSelected(column));
+        }
+    }
+
+    /**
+     * Advances every column ripple in progress
+     */
+    private final FrameScheduler.FrameCallback mToggleFrame = new FrameScheduler.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            for (int column = 0; column < DAYS.length; column++) {
+                if ((mAnimatingColumns & (1 << column)) == 0) continue;
+
+                if (mToggleStartNanos[column] < 0) {
+                    mToggleStartNanos[column] = frameTimeNanos;
+                }
+                float fraction = (frameTimeNanos - mToggleStartNanos[column]) / (TOGGLE_DURATION_MS * 1000000f);
+                if (fraction >= 1f) {
+                    mAnimatingColumns &= ~(1 << column);
+                } else {
+                    mToggleFraction[column] = fraction;
+                }
+                invalidateColumn(column);
+            }
+
+            if (mAnimatingColumns == 0) {
+                FrameScheduler.getInstance().remove(this);
+                FrameMonitor.endSection(FrameMonitor.TAG_RIPPLE);
+            }
+        }
+    };
+
+    private void stopToggles() {
+        if (mAnimatingColumns == 0) return;
+
+        mAnimatingColumns = 0;
+        FrameScheduler.getInstance().remove(mToggleFrame);
+        FrameMonitor.endSection(FrameMonitor.TAG_RIPPLE);
+    }
+
+    private boolean isSelected(int column) {
+        return (mRepeatMask & (1 << (DAYS[column] - 1))) != 0;
+    }
+
+    private float getColumnCenterX(int column) {
+        float columnWidth = (getWidth() - getPaddingLeft() - getPaddingRight()) / (float) DAYS.length;
+        return getPaddingLeft() + columnWidth * (column + 0.5f);
+    }
+
+    private int getColumnAt(float x) {
+        float columnWidth = (getWidth() - getPaddingLeft() - getPaddingRight()) / (float) DAYS.length;
+        if (columnWidth <= 0) return -1;
+
+        int column = (int) ((x - getPaddingLeft()) / columnWidth);
+        return column >= 0 && column < DAYS.length ? column : -1;
+    }
+
+    private void invalidateColumn(int column) {
+        float centerX = getColumnCenterX(column);
+        float centerY = getHeight() / 2f;
+        // Text can be wider than the circle, redraw the whole column height around it
+        int halfWidth = (int) Math.ceil(Math.max(mCircleRadius, mTextPaint.measureText(DAY_NAMES[column]) / 2f)) + 1;
+        invalidate((int) centerX - halfWidth, (int) (centerY - mCircleRadius) - 1,
+                (int) centerX + halfWidth, (int) Math.ceil(centerY + mCircleRadius) + 1);
+    }
+
+    public interface DayOfWeekSelectorListener {
+        /**
+         * @param dayOfWeek Calendar.DAY_OF_WEEK - 1
+         */
+        void onDayOfWeekSelector(int dayOfWeek, boolean selected);
+    }
+}
@@ -14,14 +14,17 @@ import android.widget.CompoundButton;
 import android.widget.LinearLayout;
 import android.widget.ListView;
 import android.widget.SeekBar;
+import android.widget.TextView;
 
 import com.kyleduo.switchbutton.SwitchButton;
 
 import io.github.loopX.XAlarm.R;
 import io.github.loopX.XAlarm.XAlarmApp;
 import io.github.loopX.XAlarm.module.Alarm.AlarmRingtonePlayer;
+import io.github.loopX.XAlarm.vibration.WaveformLibrary;
+import io.github.loopX.XAlarm.view.DragMenuLayout;
 
-public class AlarmPreferenceSettingsMenuLayout extends LinearLayout {
+public class AlarmPreferenceSettingsMenuLayout extends LinearLayout implements DragMenuLayout.LazyMenu {
 
     private Context mContext;
 
@@ -29,6 +32,9 @@ public class AlarmPreferenceSettingsMenuLayout extends LinearLayout {
 
     private SeekBar sbAlarmVolume;
     private SwitchButton sbAlarmVibration;
+    private TextView tvAlarmVibrationPattern;
+    private TextView tvAlarmCrescendo;
+    private TextView tvAlarmSnooze;
     private ListView lvRingtoneList;
     private RingtoneAdapter mAdapter;
 
@@ -36,6 +42,19 @@ public class AlarmPreferenceSettingsMenuLayout extends LinearLayout {
     private AlarmRingtonePlayer mAlarmRingtonePlayer;
     private Ringtone mRingtone;
 
+    // Crescendo durations offered, tapping the value moves to the next one
+    private static final int[] CRESCENDO_STEPS_SECONDS = {0, 30, 60, 120, 300};
+    // Snooze intervals offered, same way
+    private static final int[] SNOOZE_STEPS_MINUTES = {0, 5, 10, 15};
+
+    // Settings shown by the menu, kept while its content is not inflated
+    private int mSelectedRingtone = -1;
+    private boolean mVibration;
+    private int mVibrationPattern = WaveformLibrary.DEFAULT;
+    private int mCrescendoSeconds;
+    private int mSnoozeMinutes;
+    private boolean mMenuInflated;
+
     public AlarmPreferenceSettingsMenuLayout(Context context) {
         this(context, null);
     }
@@ -50,8 +69,16 @@ public class AlarmPreferenceSettingsMenuLayout extends LinearLayout {
     }
 
     @Override
-    protected void onFinishInflate() {
-        super.onFinishInflate();
+    public boolean isMenuInflated() {
+        return mMenuInflated;
+    }
+
+    /**
+     * Inflates the menu content. The ringtone player is only created by the first preview.
+     */
+    @Override
+    public void inflateMenu() {
+        mMenuInflated = true;
         LayoutInflater.from(getContext()).inflate(R.layout.menu_right, this, true);
 
         /** Init Seekbar **/
@@ -63,8 +90,10 @@ public class AlarmPreferenceSettingsMenuLayout extends LinearLayout {
 
         /** Init Vibration **/
 
+        sbAlarmVibration.setChecked(mVibration);
         sbAlarmVibration.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
             public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                mVibration = isChecked;
                 if (isChecked) {
                     sbAlarmVibration.performHapticFeedback(
                             HapticFeedbackConstants.LONG_PRESS,
@@ -75,13 +104,46 @@ public class AlarmPreferenceSettingsMenuLayout extends LinearLayout {
             }
         });
 
-        /** Init Ringtone **/
+        tvAlarmVibrationPattern = (TextView) findViewById(R.id.tv_alarm_vibration_pattern);
+        showVibrationPattern();
+        tvAlarmVibrationPattern.setOnClickListener(new OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                mVibrationPattern = (mVibrationPattern + 1) % WaveformLibrary.count();
+                showVibrationPattern();
+            }
+        });
+
+        /** Init Crescendo **/
 
-        mAlarmRingtonePlayer = new AlarmRingtonePlayer(XAlarmApp.getAppContext());
+        tvAlarmCrescendo = (TextView) findViewById(R.id.tv_alarm_crescendo);
+        showCrescendo();
+        tvAlarmCrescendo.setOnClickListener(new OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                mCrescendoSeconds = nextStep(CRESCENDO_STEPS_SECONDS, mCrescendoSeconds);
+                showCrescendo();
+            }
+        });
+
+        /** Init Snooze **/
+
+        tvAlarmSnooze = (TextView) findViewById(R.id.tv_alarm_snooze);
+        showSnooze();
+        tvAlarmSnooze.setOnClickListener(new OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                mSnoozeMinutes = nextStep(SNOOZE_STEPS_MINUTES, mSnoozeMinutes);
+                showSnooze();
+            }
+        });
+
+        /** Init Ringtone **/
 
         lvRingtoneList = (ListView) findViewById(R.id.lv_ringtone_list);
 
         mAdapter = new RingtoneAdapter(mContext, R.layout.ringtone_list_item);
+        mAdapter.setSelectedPosition(mSelectedRingtone);
         lvRingtoneList.setAdapter(mAdapter);
         lvRingtoneList.setOnItemClickListener(new AdapterView.OnItemClickListener() {
 
@@ -90,10 +152,15 @@ public class AlarmPreferenceSettingsMenuLayout extends LinearLayout {
 
                 Uri uri = Uri.parse(XAlarmApp.getResourcePath() + "/raw/ringtone_" + i);
 
-                if (mAdapter.getSelectedPosition() != i) {
+                if (mAlarmRingtonePlayer == null) {
+                    mAlarmRingtonePlayer = new AlarmRingtonePlayer(XAlarmApp.getAppContext());
+                }
+
+                if (mSelectedRingtone != i) {
                     mAlarmRingtonePlayer.stop();
                     mAlarmRingtonePlayer.play(uri);
 
+                    mSelectedRingtone = i;
                     mAdapter.setSelectedPosition(i);
                     mAdapter.notifyDataSetChanged();
                 } else {
@@ -135,31 +202,107 @@ public class AlarmPreferenceSettingsMenuLayout extends LinearLayout {
         });
     }
 
+    /**
+     * Stops the preview and releases the native player until the next preview
+     */
     public void stopRingtone() {
         if (mAlarmRingtonePlayer != null){
             mAlarmRingtonePlayer.stop();
+            mAlarmRingtonePlayer.cleanup();
         }
     }
 
     public void setInitRingtone(int i) {
-        mAdapter.setSelectedPosition(i);
-        mAdapter.notifyDataSetChanged();
+        mSelectedRingtone = i;
+        if (mAdapter != null) {
+            mAdapter.setSelectedPosition(i);
+            mAdapter.notifyDataSetChanged();
+        }
     }
 
     public int getRingtone(){
-        return mAdapter.getSelectedPosition();
+        return mSelectedRingtone;
     }
 
     public String getRingtoneName(int position) {
-        return mAdapter.getRingtoneName(position);
+        return RingtoneAdapter.getRingtoneName(position);
     }
     
     public void setInitVibration(boolean isVibration) {
-        sbAlarmVibration.setChecked(isVibration);
+        mVibration = isVibration;
+        if (sbAlarmVibration != null) {
+            sbAlarmVibration.setChecked(isVibration);
+        }
     }
 
     public boolean getVibrationSetting() {
-        return sbAlarmVibration.isChecked();
+        return mVibration;
+    }
+
+    public void setInitVibrationPattern(int vibrationPattern) {
+        mVibrationPattern = vibrationPattern;
+        if (tvAlarmVibrationPattern != null) {
+            showVibrationPattern();
+        }
+    }
+
+    public int getVibrationPatternSetting() {
+        return mVibrationPattern;
+    }
+
+    public void setInitCrescendo(int crescendoSeconds) {
+        mCrescendoSeconds = crescendoSeconds;
+        if (tvAlarmCrescendo != null) {
+            showCrescendo();
+        }
+    }
+
+    public int getCrescendoSetting() {
+        return mCrescendoSeconds;
+    }
+
+    public void setInitSnooze(int snoozeMinutes) {
+        mSnoozeMinutes = snoozeMinutes;
+        if (tvAlarmSnooze != null) {
+            showSnooze();
+        }
+    }
+
+    public int getSnoozeSetting() {
+        return mSnoozeMinutes;
+    }
+
+    /**
+     * @return the step after value, back to the first after the last one
+     */
+    private static int nextStep(int[] steps, int value) {
+        for (int step : steps) {
+            if (step > value) return step;
+        }
+        return steps[0];
+    }
+
+    private void showVibrationPattern() {
+        String[] names = getResources().getStringArray(R.array.vibration_pattern_names);
+        tvAlarmVibrationPattern.setText(names[WaveformLibrary.get(mVibrationPattern).getId()]);
+    }
+
+    private void showCrescendo() {
+        if (mCrescendoSeconds == 0) {
+            tvAlarmCrescendo.setText(R.string.crescendo_off);
+        } else if (mCrescendoSeconds < 60) {
+            tvAlarmCrescendo.setText(mContext.getString(R.string.crescendo_seconds, mCrescendoSeconds));
+        } else {
+            tvAlarmCrescendo.setText(mContext.getString(R.string.crescendo_minutes, mCrescendoSeconds / 60));
+        }
+    }
+
+    private void showSnooze() {
+        if (mSnoozeMinutes == 0) {
+            tvAlarmSnooze.setText(R.string.snooze_off);
+        } else {
+            tvAlarmSnooze.setText(mContext.getString(R.string.snooze_minutes, mSnoozeMinutes));
+        }
     }
 
    
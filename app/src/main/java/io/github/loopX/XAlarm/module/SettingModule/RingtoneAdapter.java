@@ -13,7 +13,7 @@ import io.github.loopX.XAlarm.view.YummyTextView;
 
 public class RingtoneAdapter extends ArrayAdapter<Object> {
 
-    private  String[] mRingtoneNames = {"WARM BREEZE", "DISTANT MEMORIES", "MORNING MIST", "SUNRISE"};
+    private static final String[] RINGTONE_NAMES = {"WARM BREEZE", "DISTANT MEMORIES", "MORNING MIST", "SUNRISE"};
 
     private Context mContext;
     private int mLastSelectPosition = -1;
@@ -29,7 +29,7 @@ public class RingtoneAdapter extends ArrayAdapter<Object> {
 
     @Override
     public int getCount() {
-        return mRingtoneNames.length;
+        return RINGTONE_NAMES.length;
     }
 
     @Override
@@ -54,7 +54,7 @@ public class RingtoneAdapter extends ArrayAdapter<Object> {
             holder = (ViewHolder) view.getTag();
         }
 
-        holder.tvRingtoneTitle.setText(mRingtoneNames[position]);
+        holder.tvRingtoneTitle.setText(RINGTONE_NAMES[position]);
 
         if(mLastSelectPosition != position) {
             holder.tvRingtoneTitle.setTextColor(ContextCompat.getColor(mContext, R.color.loopX_3_40_alpha));
@@ -67,8 +67,8 @@ public class RingtoneAdapter extends ArrayAdapter<Object> {
         return view;
     }
 
-    public String getRingtoneName(int position) {
-        return mRingtoneNames[position];
+    public static String getRingtoneName(int position) {
+        return RINGTONE_NAMES[position];
     }
 
     private static class ViewHolder {
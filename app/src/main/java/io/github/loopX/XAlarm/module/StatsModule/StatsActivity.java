@@ -0,0 +1,103 @@
+package io.github.loopX.XAlarm.module.StatsModule;
+
+import android.os.Build;
+import android.view.View;
+import android.view.Window;
+import android.view.WindowManager;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import io.github.loopX.XAlarm.R;
+import io.github.loopX.XAlarm.history.AlarmHistory;
+import io.github.loopX.XAlarm.history.WakeStats;
+import io.github.loopX.XAlarm.infrastructure.BaseActivity;
+import io.github.loopX.XAlarm.module.UnlockTypeModule.UnlockTypeEnum;
+import io.github.loopX.XAlarm.view.YummyTextView;
+
+/**
+ * Wake-up statistics, read from the summaries kept by AlarmHistory
+ */
+public class StatsActivity extends BaseActivity implements View.OnClickListener {
+
+    private TextView tvDismissTime;
+    private TextView tvFires;
+    private TextView tvSnoozes;
+    private TextView tvStreak;
+    private TextView tvBestStreak;
+    private LinearLayout llSolveTimes;
+
+    @Override
+    public int getLayoutId() {
+        return R.layout.activity_stats;
+    }
+
+    @Override
+    public void onViewInitial() {
+        tvDismissTime = (TextView) findViewById(R.id.tv_stats_dismiss_time);
+        tvFires = (TextView) findViewById(R.id.tv_stats_fires);
+        tvSnoozes = (TextView) findViewById(R.id.tv_stats_snoozes);
+        tvStreak = (TextView) findViewById(R.id.tv_stats_streak);
+        tvBestStreak = (TextView) findViewById(R.id.tv_stats_best_streak);
+        llSolveTimes = (LinearLayout) findViewById(R.id.ll_stats_solve_times);
+        findViewById(R.id.back).setOnClickListener(this);
+    }
+
+    @Override
+    public void onRefreshData() {
+        AlarmHistory.getInstance(this).loadStats(new AlarmHistory.StatsCallback() {
+            @Override
+            public void onStats(WakeStats stats) {
+                if (!isFinishing()) {
+                    showStats(stats);
+                }
+            }
+        });
+    }
+
+    private void showStats(WakeStats stats) {
+        WakeStats.Summary dismissTime = stats.getDismissTime();
+        if (dismissTime.getCount() > 0) {
+            tvDismissTime.setText(getString(R.string.stats_seconds, dismissTime.getMean() / 1000));
+        }
+        tvFires.setText(String.valueOf(stats.getFires()));
+        tvSnoozes.setText(String.valueOf(stats.getSnoozes()));
+        tvStreak.setText(String.valueOf(stats.getCurrentStreak(System.currentTimeMillis())));
+        tvBestStreak.setText(String.valueOf(stats.getBestStreak()));
+
+        llSolveTimes.removeAllViews();
+        for (UnlockTypeEnum type : UnlockTypeEnum.values()) {
+            WakeStats.Summary solveTime = stats.getSolveTime(type.getID());
+            if (solveTime.getCount() == 0) continue;
+
+            YummyTextView row = new YummyTextView(this);
+            row.setTextColor(getResources().getColor(R.color.loopX_3));
+            row.setTextSize(16);
+            row.setText(getString(R.string.stats_solve_time_row, type.toString(),
+                    solveTime.getMean() / 1000, solveTime.getCount()));
+            llSolveTimes.addView(row);
+        }
+    }
+
+    @Override
+    public void onClick(View view) {
+        switch (view.getId()) {
+            case R.id.back:
+                finish();
+                break;
+        }
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasFocus) {
+        super.onWindowFocusChanged(hasFocus);
+
+        Window window = this.getWindow();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            window.clearFlags(WindowManager.LayoutParams.FLAG_TRANSLUCENT_STATUS);
+            window.addFlags(WindowManager.LayoutParams.FLAG_DRAWS_SYSTEM_BAR_BACKGROUNDS);
+            window.setStatusBarColor(getColor(R.color.loopX_1));
+        }
+
+    }
+}
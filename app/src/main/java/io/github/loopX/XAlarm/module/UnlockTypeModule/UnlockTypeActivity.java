@@ -16,14 +16,11 @@ import android.view.WindowManager;
 import android.view.animation.AlphaAnimation;
 import android.widget.TextView;
 
-import com.tendcloud.tenddata.TCAgent;
-
-import java.util.Timer;
-import java.util.TimerTask;
-
 import io.github.loopX.XAlarm.R;
+import io.github.loopX.XAlarm.analytics.Analytics;
 import io.github.loopX.XAlarm.infrastructure.BaseActivity;
 import io.github.loopX.XAlarm.module.Alarm.AlarmAlertFullScreenToTest;
+import io.github.loopX.XAlarm.tools.TaskScheduler;
 import io.github.loopX.XAlarm.tools.UIUtils;
 import io.github.loopX.XAlarm.view.RippleBackgroundView;
 
@@ -47,7 +44,9 @@ public class UnlockTypeActivity extends BaseActivity {
     RippleBackgroundView.RippleBuilder mSelectedRippleBuild;
     RippleBackgroundView.RippleBuilder mUnSelectedRippleBuild;
 
-    private Timer mTimer;
+    // Lets the ripple play before the activity finishes
+    private static final long SAVE_DELAY_MILLIS = 500;
+    private boolean mSaving;
 
     @Override
     public void onViewInitial() {
@@ -77,27 +76,27 @@ public class UnlockTypeActivity extends BaseActivity {
 
                 rippleBackground.startRipple(mSelectedRippleBuild);
 
-                if(mTimer == null) {
-                    mTimer = new Timer(true);
-                    mTimer.schedule(new TimerTask() {
+                if(!mSaving) {
+                    mSaving = true;
+                    TaskScheduler.getInstance().postDelayed(UnlockTypeActivity.this, new Runnable() {
                         @Override
                         public void run() {
                             int current =  viewPager.getCurrentItem();
-                            sendTCAgent(current);
+                            sendAnalyticsEvent(current);
                             Intent intent  = new Intent(UnlockTypeActivity.this, UnlockTypeActivity.class);
                             int returnValue = convertItemPositionToUnlockTypeId(current);
                             intent.putExtra("unlockType", returnValue);
                             setResult(RESULT_OK, intent);
                             finish();
                         }
-                    }, 500);
+                    }, SAVE_DELAY_MILLIS);
                 }
 
             }
         });
     }
 
-    private void sendTCAgent(int current) {
+    private void sendAnalyticsEvent(int current) {
         
         String eventLabel ;
         switch (current){
@@ -119,7 +118,7 @@ public class UnlockTypeActivity extends BaseActivity {
 
         }
         
-        TCAgent.onEvent(this,"解锁类型",eventLabel);
+        Analytics.onEvent("解锁类型", eventLabel);
     }
 
     private int convertItemPositionToUnlockTypeId(int current) {
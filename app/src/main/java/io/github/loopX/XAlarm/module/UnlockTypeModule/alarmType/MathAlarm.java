@@ -8,9 +8,6 @@ import android.text.TextWatcher;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.Toast;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
 import io.github.loopX.XAlarm.R;
 import io.github.loopX.XAlarm.module.Alarm.AlarmNotificationManager;
 import io.github.loopX.XAlarm.tools.CalculationFormula;
@@ -28,7 +25,6 @@ public class MathAlarm extends UnlockFragment {
     private OnAlarmAction mListener;
     private InputMethodManager mInputMethodManager;
     private Activity mContext;
-    private Timer mTimer = null;
 
     public MathAlarm() {}
 
@@ -36,13 +32,6 @@ public class MathAlarm extends UnlockFragment {
         return new MathAlarm();
     }
 
-    TimerTask task = new TimerTask() {
-        @Override
-        public void run() {
-            mListener.closeAlarm();
-        }
-    };
-
     @Override
     public int getLayoutId() {
         return R.layout.fragment_unlock_math_alarm;
@@ -124,10 +113,7 @@ public class MathAlarm extends UnlockFragment {
                 Toast.LENGTH_SHORT));
         ToastMaster.showToast();
 
-        if(mTimer == null) {
-            mTimer = new Timer(true);
-            mTimer.schedule(task, 1200);
-        }
+        closeAlarmDelayed();
     }
 
     @Override
@@ -140,7 +126,9 @@ public class MathAlarm extends UnlockFragment {
     @Override
     public void onDetach() {
         super.onDetach();
-        mListener.closeAlarm();
+        if (!isReplaced()) {
+            mListener.closeAlarm();
+        }
         mListener = null;
     }
 
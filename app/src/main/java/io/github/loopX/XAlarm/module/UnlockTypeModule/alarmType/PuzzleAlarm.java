@@ -3,9 +3,6 @@ package io.github.loopX.XAlarm.module.UnlockTypeModule.alarmType;
 import android.app.Activity;
 import android.widget.Toast;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
 import io.github.loopX.XAlarm.R;
 import io.github.loopX.XAlarm.tools.ToastMaster;
 import io.github.loopX.XAlarm.view.PuzzleLayout;
@@ -14,14 +11,6 @@ public class PuzzleAlarm extends UnlockFragment {
 
     private PuzzleLayout puzzleLayout;
     private OnAlarmAction mListener;
-    private Timer mTimer;
-
-    TimerTask task = new TimerTask() {
-        @Override
-        public void run() {
-            mListener.closeAlarm();
-        }
-    };
 
     public PuzzleAlarm() {}
 
@@ -46,10 +35,7 @@ public class PuzzleAlarm extends UnlockFragment {
                         Toast.LENGTH_SHORT));
                 ToastMaster.showToast();
 
-                if(mTimer == null) {
-                    mTimer = new Timer(true);
-                    mTimer.schedule(task, 1200);
-                }
+                closeAlarmDelayed();
 
             }
         });
@@ -70,7 +56,9 @@ public class PuzzleAlarm extends UnlockFragment {
     @Override
     public void onDetach() {
         super.onDetach();
-        mListener.closeAlarm();
+        if (!isReplaced()) {
+            mListener.closeAlarm();
+        }
         mListener = null;
     }
 
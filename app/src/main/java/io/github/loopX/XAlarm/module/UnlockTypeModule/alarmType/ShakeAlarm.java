@@ -7,9 +7,6 @@ import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.widget.Toast;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
 import io.github.loopX.XAlarm.R;
 import io.github.loopX.XAlarm.tools.ToastMaster;
 import io.github.loopX.XAlarm.view.YummyTextView;
@@ -27,14 +24,6 @@ public class ShakeAlarm extends UnlockFragment implements SensorEventListener{
     private long mShakeTimestamp;
     private static final float SHAKE_THRESHOLD_GRAVITY = 2.5F;
     private static final int SHAKE_STOP_TIME_MS = 300;
-    private Timer mTimer = null;
-
-    TimerTask task = new TimerTask() {
-        @Override
-        public void run() {
-            mListener.closeAlarm();
-        }
-    };
 
     public ShakeAlarm() {}
 
@@ -77,7 +66,9 @@ public class ShakeAlarm extends UnlockFragment implements SensorEventListener{
     @Override
     public void onDetach() {
         super.onDetach();
-        mListener.closeAlarm();
+        if (!isReplaced()) {
+            mListener.closeAlarm();
+        }
         mListener = null;
     }
 
@@ -124,10 +115,7 @@ public class ShakeAlarm extends UnlockFragment implements SensorEventListener{
                         Toast.LENGTH_SHORT));
                 ToastMaster.showToast();
 
-                if(mTimer == null) {
-                    mTimer = new Timer(true);
-                    mTimer.schedule(task, 1200);
-                }
+                closeAlarmDelayed();
             }
         }
     }
@@ -9,8 +9,6 @@ import android.view.inputmethod.InputMethodManager;
 import android.widget.Toast;
 
 import java.util.Random;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import io.github.loopX.XAlarm.BuildConfig;
 import io.github.loopX.XAlarm.R;
@@ -28,14 +26,6 @@ public class TypeAlarm extends UnlockFragment {
     private InputMethodManager mInputMethodManager;
 
     private Activity mContext;
-    private Timer mTimer = null;
-
-    TimerTask task = new TimerTask() {
-        @Override
-        public void run() {
-            mListener.closeAlarm();
-        }
-    };
 
     @Override
     public int getLayoutId() {
@@ -75,10 +65,7 @@ public class TypeAlarm extends UnlockFragment {
                                 Toast.LENGTH_SHORT));
                         ToastMaster.showToast();
 
-                        if(mTimer == null) {
-                            mTimer = new Timer(true);
-                            mTimer.schedule(task, 1200);
-                        }
+                        closeAlarmDelayed();
                     }
                 }
             }
@@ -115,13 +102,11 @@ public class TypeAlarm extends UnlockFragment {
         super.onDetach();
 
         if(mListener != null) {
-            mListener.closeAlarm();
+            if (!isReplaced()) {
+                mListener.closeAlarm();
+            }
             mListener = null;
         }
-
-        if(mTimer != null) {
-            mTimer.cancel();
-        }
     }
 
     @Override
@@ -1,9 +1,62 @@
 package io.github.loopX.XAlarm.module.UnlockTypeModule.alarmType;
 
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
 import io.github.loopX.XAlarm.infrastructure.BaseFragment;
+import io.github.loopX.XAlarm.tools.TaskScheduler;
 
 public abstract class UnlockFragment extends BaseFragment {
 
+    // Time left to read the success toast before the alarm closes
+    private static final long CLOSE_DELAY_MILLIS = 1200;
+
+    private boolean mCloseScheduled;
+    private boolean mReplaced;
+
+    private final Runnable mCloseAlarm = new Runnable() {
+        @Override
+        public void run() {
+            ((OnAlarmAction) getActivity()).closeAlarm();
+        }
+    };
+
+    /**
+     * Uses the view tree inflated in background by UnlockLayoutCache when there is one
+     */
+    @Override
+    protected View onCreateContentView(LayoutInflater inflater, ViewGroup container) {
+        View view = UnlockLayoutCache.getInstance(getActivity()).take(getLayoutId(), getActivity());
+        return view != null ? view : super.onCreateContentView(inflater, container);
+    }
+
+    /**
+     * Closes the alarm on the main thread after a short delay, once per fragment.
+     * Cancelled if the fragment is detached first.
+     */
+    protected void closeAlarmDelayed() {
+        if (mCloseScheduled) return;
+
+        mCloseScheduled = true;
+        TaskScheduler.getInstance().postDelayed(this, mCloseAlarm, CLOSE_DELAY_MILLIS);
+    }
+
+    /**
+     * Called by the alert screen before this fragment is replaced by the unlock UI
+     * of the next ringing alarm
+     */
+    public void setReplaced() {
+        mReplaced = true;
+    }
+
+    /**
+     * @return true if the fragment goes away to show the next ringing alarm, it must
+     * not close the alarm then
+     */
+    protected boolean isReplaced() {
+        return mReplaced;
+    }
 
     public abstract boolean checkUnlockAlarm();
 
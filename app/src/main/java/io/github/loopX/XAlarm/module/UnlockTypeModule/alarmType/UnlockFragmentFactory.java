@@ -1,5 +1,6 @@
 package io.github.loopX.XAlarm.module.UnlockTypeModule.alarmType;
 
+import io.github.loopX.XAlarm.R;
 import io.github.loopX.XAlarm.module.UnlockTypeModule.UnlockTypeEnum;
 
 public class UnlockFragmentFactory {
@@ -18,4 +19,22 @@ public class UnlockFragmentFactory {
 
         return new TypeAlarm();
     }
+
+    /**
+     * Layout of the fragment created for unlockType, without creating it
+     * @param unlockType unlock type id
+     * @return layout resource id
+     */
+    public static int getLayoutId(int unlockType) {
+
+        if (unlockType == UnlockTypeEnum.Math.getID()){
+            return R.layout.fragment_unlock_math_alarm;
+        } else if (unlockType == UnlockTypeEnum.Puzzle.getID()){
+            return R.layout.fragment_unlock_puzzle_alarm;
+        } else if (unlockType == UnlockTypeEnum.Shake.getID()){
+            return R.layout.fragment_unlock_shake_alarm;
+        }
+
+        return R.layout.fragment_unlock_type_alarm;
+    }
 }
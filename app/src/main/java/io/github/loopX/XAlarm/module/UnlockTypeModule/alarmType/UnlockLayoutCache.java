@@ -0,0 +1,177 @@
+package io.github.loopX.XAlarm.module.UnlockTypeModule.alarmType;
+
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import io.github.loopX.XAlarm.database.AlarmDBService;
+import io.github.loopX.XAlarm.metrics.Counter;
+import io.github.loopX.XAlarm.metrics.LatencyHistogram;
+import io.github.loopX.XAlarm.metrics.Metrics;
+import io.github.loopX.XAlarm.module.Alarm.Alarm;
+import io.github.loopX.XAlarm.tools.TypefaceHelp;
+
+/**
+ * Inflates the unlock layout of a firing alarm on a background looper, so the view
+ * tree is ready by the time AlarmAlertFullScreen creates its unlock fragment.
+ *
+ * Preparation starts as soon as the alarm broadcast is received and runs while the
+ * ringing service and the activity are being started. Views are inflated with a
+ * MutableContextWrapper around the application context and the alert theme; the
+ * wrapper is switched to the activity when the fragment takes the view.
+ *
+ * At most one view tree is kept, and it is dropped if nobody takes it soon enough.
+ */
+public final class UnlockLayoutCache {
+
+    private static final String TAG = "UnlockLayoutCache";
+
+    // Theme of AlarmAlertFullScreen in the manifest
+    private static final int ALERT_THEME = android.R.style.Theme_Wallpaper_NoTitleBar;
+
+    // Longest time the fragment waits for a preparation which is already running
+    private static final long MAX_WAIT_MILLIS = 200;
+    // A prepared view not taken within this time is dropped
+    private static final long EXPIRE_MILLIS = 60 * 1000;
+
+    private static final LatencyHistogram INFLATE_TIME = Metrics.histogram("unlock.preinflate.time");
+    private static final Counter HITS = Metrics.counter("unlock.preinflate.hit");
+    private static final Counter MISSES = Metrics.counter("unlock.preinflate.miss");
+
+    private static UnlockLayoutCache sInstance;
+
+    private final Context mAppContext;
+    private final Handler mHandler;
+
+    // Guarded by this. Number of preparations posted and not finished
+    private int mPending;
+    private int mLayoutId;
+    private View mView;
+    private MutableContextWrapper mViewContext;
+
+    private final Runnable mExpire = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (UnlockLayoutCache.this) {
+                mView = null;
+                mViewContext = null;
+            }
+        }
+    };
+
+    public static synchronized UnlockLayoutCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new UnlockLayoutCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private UnlockLayoutCache(Context context) {
+        mAppContext = context;
+
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DEFAULT);
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Starts inflating the unlock layout of an alarm in background
+     * @param alarmId id of the alarm about to ring
+     */
+    public void prepare(final int alarmId) {
+        if (alarmId == Alarm.INVALID_ID) return;
+
+        synchronized (this) {
+            mPending++;
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                inflate(alarmId);
+            }
+        });
+    }
+
+    /**
+     * Hands over the prepared view tree, waiting shortly if it is still being inflated
+     * @param layoutId layout wanted by the fragment
+     * @param context activity the view is shown in
+     * @return the view, or null if the fragment has to inflate it itself
+     */
+    public synchronized View take(int layoutId, Context context) {
+        long deadline = SystemClock.uptimeMillis() + MAX_WAIT_MILLIS;
+        long remaining = MAX_WAIT_MILLIS;
+        while (mPending > 0 && remaining > 0) {
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                break;
+            }
+            remaining = deadline - SystemClock.uptimeMillis();
+        }
+
+        if (mView == null || mLayoutId != layoutId) {
+            MISSES.increment();
+            return null;
+        }
+
+        View view = mView;
+        mViewContext.setBaseContext(context);
+        mView = null;
+        mViewContext = null;
+        mHandler.removeCallbacks(mExpire);
+
+        HITS.increment();
+        return view;
+    }
+
+    private void inflate(int alarmId) {
+        long start = System.nanoTime();
+        View view = null;
+        MutableContextWrapper viewContext = null;
+        int layoutId = 0;
+
+        try {
+            Alarm alarm = AlarmDBService.getInstance(mAppContext).getAlarm(alarmId);
+            if (alarm != null) {
+                layoutId = UnlockFragmentFactory.getLayoutId(alarm.getUnlockType());
+
+                // Text views then get their typeface while being inflated, not from a later
+                // callback on the main thread
+                TypefaceHelp.get(mAppContext, TypefaceHelp.BEBAS_NEUE);
+
+                Context themed = new ContextThemeWrapper(mAppContext, ALERT_THEME);
+                viewContext = new MutableContextWrapper(themed);
+                // Parent only provides the layout params of the fragment container
+                view = LayoutInflater.from(themed).cloneInContext(viewContext)
+                        .inflate(layoutId, new FrameLayout(themed), false);
+                INFLATE_TIME.recordSince(start);
+            }
+        } catch (RuntimeException e) {
+            // The fragment inflates the layout itself
+            Log.e(TAG, "Failed to inflate unlock layout of alarm " + alarmId, e);
+            view = null;
+        }
+
+        synchronized (this) {
+            mPending--;
+            mLayoutId = layoutId;
+            mView = view;
+            mViewContext = viewContext;
+            notifyAll();
+        }
+
+        mHandler.removeCallbacks(mExpire);
+        if (view != null) {
+            mHandler.postDelayed(mExpire, EXPIRE_MILLIS);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package io.github.loopX.XAlarm.module.WidgetModule;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.SystemClock;
+import android.text.format.DateFormat;
+import android.view.View;
+import android.widget.RemoteViews;
+
+import java.util.Calendar;
+
+import io.github.loopX.XAlarm.MainActivity;
+import io.github.loopX.XAlarm.R;
+import io.github.loopX.XAlarm.module.Alarm.Alarm;
+import io.github.loopX.XAlarm.module.Alarm.NextAlarmPublisher;
+import io.github.loopX.XAlarm.tools.TimeFormatter;
+
+/**
+ * Home-screen widget showing the next alarm time and a countdown to it.
+ *
+ * The widget has no update period. NextAlarmPublisher pushes the next fire when
+ * the schedule changes, and it is kept in a small snapshot. Updates requested by
+ * the system, e.g. when the widget is added or after a reboot, render from the
+ * snapshot without touching the alarm DB. The countdown is a Chronometer run by
+ * the launcher, so the app is not woken up while it ticks.
+ */
+public class NextAlarmWidgetProvider extends AppWidgetProvider {
+
+    private static final String SNAPSHOT = "next_alarm_widget";
+    private static final String KEY_ALARM_ID = "alarm_id";
+    private static final String KEY_TIME = "time";
+
+    // Chronometer.setCountDown and its API level, above the compile SDK
+    private static final String METHOD_SET_COUNT_DOWN = "setCountDown";
+    private static final int SDK_CHRONOMETER_COUNT_DOWN = 24;
+
+    @Override
+    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        SharedPreferences snapshot = getSnapshot(context);
+        appWidgetManager.updateAppWidget(appWidgetIds,
+                render(context, snapshot.getLong(KEY_TIME, 0)));
+    }
+
+    @Override
+    public void onEnabled(Context context) {
+        // Nothing was pushed while there was no widget
+        NextAlarmPublisher.getInstance(context).requestUpdate();
+    }
+
+    /**
+     * Keeps the next fire in the snapshot and renders the widgets
+     * @param alarmId alarm to ring next, Alarm.INVALID_ID if none
+     * @param time time of its fire, 0 if none
+     */
+    public static void publish(Context context, int alarmId, long time) {
+        SharedPreferences snapshot = getSnapshot(context);
+        if (snapshot.getInt(KEY_ALARM_ID, Alarm.INVALID_ID) == alarmId
+                && snapshot.getLong(KEY_TIME, 0) == time) {
+            return;
+        }
+
+        snapshot.edit()
+                .putInt(KEY_ALARM_ID, alarmId)
+                .putLong(KEY_TIME, time)
+                .apply();
+
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(
+                new ComponentName(context, NextAlarmWidgetProvider.class));
+        if (appWidgetIds.length > 0) {
+            appWidgetManager.updateAppWidget(appWidgetIds, render(context, time));
+        }
+    }
+
+    private static SharedPreferences getSnapshot(Context context) {
+        return context.getSharedPreferences(SNAPSHOT, Context.MODE_PRIVATE);
+    }
+
+    private static RemoteViews render(Context context, long time) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_next_alarm);
+
+        Intent intent = new Intent(context, MainActivity.class);
+        views.setOnClickPendingIntent(R.id.ll_widget,
+                PendingIntent.getActivity(context, 0, intent, 0));
+
+        long now = System.currentTimeMillis();
+        if (time <= now) {
+            views.setTextViewText(R.id.tv_widget_time, context.getString(R.string.widget_no_alarm));
+            views.setViewVisibility(R.id.ch_widget_countdown, View.GONE);
+            return views;
+        }
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int hour = calendar.get(Calendar.HOUR_OF_DAY);
+        boolean is24Hour = DateFormat.is24HourFormat(context);
+
+        TimeFormatter timeFormatter = TimeFormatter.getInstance(context);
+        StringBuilder text = new StringBuilder();
+        timeFormatter.appendTime(text, hour, calendar.get(Calendar.MINUTE), is24Hour);
+        if (!is24Hour) {
+            text.append(' ').append(timeFormatter.getAmPm(hour));
+        }
+        views.setTextViewText(R.id.tv_widget_time, text);
+
+        if (Build.VERSION.SDK_INT >= SDK_CHRONOMETER_COUNT_DOWN) {
+            // The base is on the elapsed realtime clock, it counts down to the fire
+            long base = SystemClock.elapsedRealtime() + (time - now);
+            views.setBoolean(R.id.ch_widget_countdown, METHOD_SET_COUNT_DOWN, true);
+            views.setChronometer(R.id.ch_widget_countdown, base, null, true);
+            views.setViewVisibility(R.id.ch_widget_countdown, View.VISIBLE);
+        } else {
+            // Older chronometers only count up
+            views.setViewVisibility(R.id.ch_widget_countdown, View.GONE);
+        }
+        return views;
+    }
+}
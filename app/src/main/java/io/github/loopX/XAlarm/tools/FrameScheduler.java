@@ -0,0 +1,209 @@
+package io.github.loopX.XAlarm.tools;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+import io.github.loopX.XAlarm.metrics.LatencyHistogram;
+import io.github.loopX.XAlarm.metrics.Metrics;
+
+/**
+ * Single frame loop shared by the animations of the app.
+ *
+ * Animations register a FrameCallback instead of posting their own runnables or
+ * owning a Choreographer callback, so every update of a frame runs from one vsync
+ * callback. Callbacks registered with an interval (e.g. a clock ticking every second)
+ * run on the first frame after they are due. Nothing is posted while no callback is
+ * registered, and only a delayed frame while all of them wait for their interval.
+ *
+ * CPU time spent in each callback is recorded in the anim.[name].cpu histogram.
+ * Must be used from the main thread. Below Jelly Bean frames come from a Handler.
+ */
+public final class FrameScheduler {
+
+    public interface FrameCallback {
+        /**
+         * @param frameTimeNanos time of the frame, in the System.nanoTime() time base
+         */
+        void doFrame(long frameTimeNanos);
+    }
+
+    private static final boolean USE_CHOREOGRAPHER = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+
+    // Frame interval of the Handler fallback
+    private static final long FALLBACK_FRAME_MILLIS = 16;
+
+    private static final class Entry {
+        final FrameCallback callback;
+        final long intervalNanos;
+        final LatencyHistogram cpuTime;
+        long dueNanos;
+        boolean removed;
+
+        Entry(FrameCallback callback, long intervalNanos, LatencyHistogram cpuTime) {
+            this.callback = callback;
+            this.intervalNanos = intervalNanos;
+            this.cpuTime = cpuTime;
+        }
+    }
+
+    private final ArrayList<Entry> mEntries = new ArrayList<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private Choreographer.FrameCallback mChoreographerCallback;
+    private final Runnable mFallbackFrame = new Runnable() {
+        @Override
+        public void run() {
+            doFrame(System.nanoTime());
+        }
+    };
+
+    private boolean mScheduled;
+    private boolean mDispatching;
+
+    private FrameScheduler() {
+        if (USE_CHOREOGRAPHER) {
+            mChoreographerCallback = createChoreographerCallback();
+        }
+    }
+
+    public static FrameScheduler getInstance() {
+        return SingletonCreator.sInstance;
+    }
+
+    private static class SingletonCreator {
+        private static FrameScheduler sInstance = new FrameScheduler();
+    }
+
+    /**
+     * Runs callback on every frame until it is removed
+     * @param name animation name used for the CPU time metric
+     */
+    public void add(String name, FrameCallback callback) {
+        add(name, callback, 0);
+    }
+
+    /**
+     * Runs callback on the next frame, then on the first frame after every interval
+     * @param name animation name used for the CPU time metric
+     * @param intervalMillis minimum time between two calls, 0 for every frame
+     */
+    public void add(String name, FrameCallback callback, long intervalMillis) {
+        remove(callback);
+        mEntries.add(new Entry(callback, intervalMillis * 1000000L,
+                Metrics.histogram("anim." + name + ".cpu")));
+
+        if (!mDispatching) {
+            scheduleNextFrame();
+        }
+    }
+
+    /**
+     * Stops calling callback, does nothing if it is not registered
+     */
+    public void remove(FrameCallback callback) {
+        for (int i = mEntries.size() - 1; i >= 0; i--) {
+            Entry entry = mEntries.get(i);
+            if (entry.callback == callback && !entry.removed) {
+                if (mDispatching) {
+                    // Removed from the list once the frame is dispatched
+                    entry.removed = true;
+                } else {
+                    mEntries.remove(i);
+                }
+            }
+        }
+
+        if (mEntries.isEmpty()) {
+            cancelFrame();
+        }
+    }
+
+    public boolean isIdle() {
+        return mEntries.isEmpty();
+    }
+
+    private void doFrame(long frameTimeNanos) {
+        mScheduled = false;
+        mDispatching = true;
+
+        // Callbacks added while dispatching run on the next frame
+        int count = mEntries.size();
+        for (int i = 0; i < count; i++) {
+            Entry entry = mEntries.get(i);
+            if (entry.removed || frameTimeNanos < entry.dueNanos) continue;
+
+            entry.dueNanos = frameTimeNanos + entry.intervalNanos;
+
+            long cpuStart = Debug.threadCpuTimeNanos();
+            entry.callback.doFrame(frameTimeNanos);
+            if (cpuStart >= 0) {
+                entry.cpuTime.record((Debug.threadCpuTimeNanos() - cpuStart) / 1000);
+            }
+        }
+
+        mDispatching = false;
+
+        for (int i = mEntries.size() - 1; i >= 0; i--) {
+            if (mEntries.get(i).removed) {
+                mEntries.remove(i);
+            }
+        }
+        scheduleNextFrame();
+    }
+
+    private void scheduleNextFrame() {
+        if (mEntries.isEmpty()) return;
+
+        long now = System.nanoTime();
+        long nextDue = Long.MAX_VALUE;
+        for (int i = 0; i < mEntries.size(); i++) {
+            nextDue = Math.min(nextDue, mEntries.get(i).dueNanos);
+        }
+        long delayMillis = Math.max(0, (nextDue - now) / 1000000L);
+
+        cancelFrame();
+        mScheduled = true;
+        if (USE_CHOREOGRAPHER) {
+            postChoreographerCallback(delayMillis);
+        } else {
+            mHandler.postDelayed(mFallbackFrame, Math.max(delayMillis, FALLBACK_FRAME_MILLIS));
+        }
+    }
+
+    private void cancelFrame() {
+        if (!mScheduled) return;
+
+        mScheduled = false;
+        if (USE_CHOREOGRAPHER) {
+            removeChoreographerCallback();
+        } else {
+            mHandler.removeCallbacks(mFallbackFrame);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private Choreographer.FrameCallback createChoreographerCallback() {
+        return new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                FrameScheduler.this.doFrame(frameTimeNanos);
+            }
+        };
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postChoreographerCallback(long delayMillis) {
+        Choreographer.getInstance().postFrameCallbackDelayed(mChoreographerCallback, delayMillis);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void removeChoreographerCallback() {
+        Choreographer.getInstance().removeFrameCallback(mChoreographerCallback);
+    }
+}
@@ -1,9 +1,13 @@
 package io.github.loopX.XAlarm.tools;
 
+import com.facebook.rebound.BaseSpringSystem;
 import com.facebook.rebound.Spring;
 import com.facebook.rebound.SpringConfig;
 import com.facebook.rebound.SpringListener;
-import com.facebook.rebound.SpringSystem;
+import com.facebook.rebound.SpringLooper;
+import com.facebook.rebound.SpringSystemListener;
+
+import io.github.loopX.XAlarm.metrics.FrameMonitor;
 
 /**
  * Author UFreedom
@@ -11,7 +15,7 @@ import com.facebook.rebound.SpringSystem;
  */
 public class ReboundAnimation {
 
-    private SpringSystem mSpringSystem; 
+    private BaseSpringSystem mSpringSystem; 
     
     public Spring createSpringFromBouncinessAndSpeed(double bounciness, double speed, SpringListener springListener){
         return mSpringSystem.createSpring().setSpringConfig(
@@ -20,7 +24,29 @@ public class ReboundAnimation {
     }
     
     private ReboundAnimation(){
-        mSpringSystem = SpringSystem.create();
+        // Springs are integrated from the shared frame loop instead of their own Choreographer callback
+        mSpringSystem = new BaseSpringSystem(new FrameSchedulerSpringLooper());
+        mSpringSystem.addListener(new SpringSystemListener() {
+
+            // Tags frames as spring frames while any spring of the system moves
+            private boolean mSectionOpen;
+
+            @Override
+            public void onBeforeIntegrate(BaseSpringSystem springSystem) {
+                if (!mSectionOpen) {
+                    mSectionOpen = true;
+                    FrameMonitor.beginSection(FrameMonitor.TAG_SPRING);
+                }
+            }
+
+            @Override
+            public void onAfterIntegrate(BaseSpringSystem springSystem) {
+                if (mSectionOpen && springSystem.getIsIdle()) {
+                    mSectionOpen = false;
+                    FrameMonitor.endSection(FrameMonitor.TAG_SPRING);
+                }
+            }
+        });
     }
     
     public static ReboundAnimation getInstance(){
@@ -30,6 +56,33 @@ public class ReboundAnimation {
     private static class SingletonCreator{
         private static ReboundAnimation sInstance = new ReboundAnimation();
     }
+
+    /**
+     * Drives the spring system from FrameScheduler while any spring is active
+     */
+    private static class FrameSchedulerSpringLooper extends SpringLooper implements FrameScheduler.FrameCallback {
+
+        private long mLastFrameNanos;
+
+        @Override
+        public void start() {
+            mLastFrameNanos = System.nanoTime();
+            FrameScheduler.getInstance().add("spring", this);
+        }
+
+        @Override
+        public void stop() {
+            FrameScheduler.getInstance().remove(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            // The vsync time of the first frame can be earlier than start()
+            long elapsedNanos = Math.max(0, frameTimeNanos - mLastFrameNanos);
+            mLastFrameNanos = frameTimeNanos;
+            mSpringSystem.loop(elapsedNanos / 1000000d);
+        }
+    }
     
     
     
@@ -0,0 +1,88 @@
+package io.github.loopX.XAlarm.tools;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * App wide place to run delayed and background work, instead of creating
+ * Timer or Thread objects.
+ *
+ * Delayed tasks are posted to the main Handler, so they can touch views. They are
+ * tagged with an owner, usually the activity or fragment posting them, and
+ * cancel(owner) drops the pending ones; BaseActivity and BaseFragment do so when
+ * they are destroyed or detached. Background tasks run on a small shared pool
+ * whose threads exit when it is idle.
+ */
+public final class TaskScheduler {
+
+    private static final int POOL_SIZE = 2;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor mBackground;
+
+    private TaskScheduler() {
+        mBackground = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new BackgroundThreadFactory());
+        mBackground.allowCoreThreadTimeOut(true);
+    }
+
+    public static TaskScheduler getInstance() {
+        return SingletonCreator.sInstance;
+    }
+
+    private static class SingletonCreator {
+        private static TaskScheduler sInstance = new TaskScheduler();
+    }
+
+    /**
+     * Runs task on the main thread after delayMillis, unless owner is cancelled first
+     * @param owner object whose lifecycle bounds the task, not null
+     */
+    public void postDelayed(Object owner, Runnable task, long delayMillis) {
+        mMainHandler.postAtTime(task, owner, SystemClock.uptimeMillis() + delayMillis);
+    }
+
+    /**
+     * Drops the main thread tasks of owner which have not run yet
+     */
+    public void cancel(Object owner) {
+        // A null token would remove every callback of the main looper
+        if (owner == null) return;
+        mMainHandler.removeCallbacksAndMessages(owner);
+    }
+
+    /**
+     * Runs task on a background thread
+     * @return future to cancel the task with
+     */
+    public Future<?> execute(Runnable task) {
+        return mBackground.submit(task);
+    }
+
+    private static final class BackgroundThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "TaskScheduler-" + mCount.incrementAndGet());
+        }
+    }
+}
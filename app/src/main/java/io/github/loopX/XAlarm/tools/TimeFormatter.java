@@ -0,0 +1,272 @@
+package io.github.loopX.XAlarm.tools;
+
+import android.content.ComponentCallbacks;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.util.SparseArray;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+
+import io.github.loopX.XAlarm.R;
+
+/**
+ * Formats alarm times and "time to alarm" texts without SimpleDateFormat or String.format.
+ *
+ * Resource strings and string-array templates are parsed once and kept until the
+ * configuration changes; formatting only appends to a StringBuilder given by the
+ * caller. TextSlot goes one step further for text refreshed on every minute tick.
+ *
+ * Must be used from the main thread.
+ */
+public final class TimeFormatter {
+
+    private static final String AM = "AM";
+    private static final String PM = "PM";
+
+    // Arguments of the alarm_set / alarm_distance templates
+    private static final int ARG_DAYS = 0;
+    private static final int ARG_HOURS = 1;
+    private static final int ARG_MINUTES = 2;
+
+    private static TimeFormatter sInstance;
+
+    private final Resources mResources;
+
+    // Cleared when the configuration changes, loaded again on first use
+    private final SparseArray<Template[]> mTemplateArrays = new SparseArray<>();
+    private String mOneDay;
+    private String mOneHour;
+    private String mOneMinute;
+    private Template mDays;
+    private Template mHours;
+    private Template mMinutes;
+
+    public static TimeFormatter getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new TimeFormatter(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private TimeFormatter(Context context) {
+        mResources = context.getResources();
+
+        context.registerComponentCallbacks(new ComponentCallbacks() {
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+                mTemplateArrays.clear();
+                mOneDay = null;
+            }
+
+            @Override
+            public void onLowMemory() {}
+        });
+    }
+
+    /**
+     * Appends hh:mm, or HH:mm in 24 hour mode
+     * @param hourOfDay 0 - 23
+     */
+    public void appendTime(StringBuilder out, int hourOfDay, int minute, boolean is24Hour) {
+        appendTwoDigits(out, getDisplayHour(hourOfDay, is24Hour));
+        out.append(':');
+        appendTwoDigits(out, minute);
+    }
+
+    /**
+     * @param hourOfDay 0 - 23
+     * @return AM or PM, always in English like the time picker
+     */
+    public String getAmPm(int hourOfDay) {
+        return hourOfDay < 12 ? AM : PM;
+    }
+
+    /**
+     * @param hourOfDay 0 - 23
+     * @return hour shown to the user, 1 - 12 unless in 24 hour mode
+     */
+    public static int getDisplayHour(int hourOfDay, boolean is24Hour) {
+        if (is24Hour) return hourOfDay;
+
+        int hour = hourOfDay % 12;
+        return hour == 0 ? 12 : hour;
+    }
+
+    public static void appendTwoDigits(StringBuilder out, int value) {
+        if (value < 10) out.append('0');
+        out.append(value);
+    }
+
+    /**
+     * Appends the time left until an alarm, e.g. "2 hours 5 minutes from now"
+     * @param timeInMillis alarm time
+     * @param idTemplate string array with the 8 combinations of days, hours and minutes
+     */
+    public void appendTimeToAlarm(StringBuilder out, long timeInMillis, int idTemplate) {
+        long delta = timeInMillis - System.currentTimeMillis();
+        long hours = delta / (1000 * 60 * 60);
+        long minutes = delta / (1000 * 60) % 60;
+        long days = hours / 24;
+        hours = hours % 24;
+
+        int index = (days > 0 ? 1 : 0) |
+                (hours > 0 ? 2 : 0) |
+                (minutes > 0 ? 4 : 0);
+
+        Template template = getTemplateArray(idTemplate)[index];
+        for (int i = 0; i < template.args.length; i++) {
+            out.append(template.literals[i]);
+            switch (template.args[i]) {
+                case ARG_DAYS:
+                    appendQuantity(out, days, mOneDay, mDays);
+                    break;
+                case ARG_HOURS:
+                    appendQuantity(out, hours, mOneHour, mHours);
+                    break;
+                case ARG_MINUTES:
+                    appendQuantity(out, minutes, mOneMinute, mMinutes);
+                    break;
+            }
+        }
+        out.append(template.literals[template.args.length]);
+    }
+
+    private void appendQuantity(StringBuilder out, long quantity, String one, Template many) {
+        if (quantity == 0) return;
+
+        if (quantity == 1) {
+            out.append(one);
+        } else {
+            out.append(many.literals[0]).append(quantity).append(many.literals[1]);
+        }
+    }
+
+    private Template[] getTemplateArray(int idTemplate) {
+        if (mOneDay == null) {
+            mOneDay = mResources.getString(R.string.day);
+            mOneHour = mResources.getString(R.string.hour);
+            mOneMinute = mResources.getString(R.string.minute);
+            mDays = Template.parse(mResources.getString(R.string.days));
+            mHours = Template.parse(mResources.getString(R.string.hours));
+            mMinutes = Template.parse(mResources.getString(R.string.minutes));
+        }
+
+        Template[] templates = mTemplateArrays.get(idTemplate);
+        if (templates == null) {
+            String[] formats = mResources.getStringArray(idTemplate);
+            templates = new Template[formats.length];
+            for (int i = 0; i < formats.length; i++) {
+                templates[i] = Template.parse(formats[i]);
+            }
+            mTemplateArrays.put(idTemplate, templates);
+        }
+        return templates;
+    }
+
+    /**
+     * A format string split around its %s / %n$s arguments
+     */
+    private static final class Template {
+        // literals.length == args.length + 1
+        final String[] literals;
+        // Zero based argument index of each placeholder
+        final int[] args;
+
+        private Template(String[] literals, int[] args) {
+            this.literals = literals;
+            this.args = args;
+        }
+
+        static Template parse(String format) {
+            ArrayList<String> literals = new ArrayList<>();
+            ArrayList<Integer> args = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            int nextArg = 0;
+
+            int i = 0;
+            while (i < format.length()) {
+                char c = format.charAt(i);
+                if (c == '%' && i + 1 < format.length() && format.charAt(i + 1) == 's') {
+                    args.add(nextArg++);
+                    i += 2;
+                } else if (c == '%' && i + 3 < format.length() && Character.isDigit(format.charAt(i + 1))
+                        && format.charAt(i + 2) == '$' && format.charAt(i + 3) == 's') {
+                    args.add(format.charAt(i + 1) - '1');
+                    i += 4;
+                } else if (c == '%' && i + 1 < format.length() && format.charAt(i + 1) == '%') {
+                    literal.append('%');
+                    i += 2;
+                    continue;
+                } else {
+                    literal.append(c);
+                    i++;
+                    continue;
+                }
+                literals.add(literal.toString());
+                literal.setLength(0);
+            }
+            literals.add(literal.toString());
+
+            int[] argArray = new int[args.size()];
+            for (int j = 0; j < argArray.length; j++) {
+                argArray[j] = args.get(j);
+            }
+            return new Template(literals.toArray(new String[literals.size()]), argArray);
+        }
+    }
+
+    /**
+     * Reusable text of one TextView.
+     *
+     * The text is handed to the TextView as a char[] slice, so refreshing it does not
+     * create a String, and an unchanged text does not trigger a new layout.
+     */
+    public static final class TextSlot {
+
+        private final TextView mView;
+        private final StringBuilder mText = new StringBuilder(32);
+        private char[] mChars = new char[32];
+        private int mLength = -1;
+
+        public TextSlot(TextView view) {
+            mView = view;
+        }
+
+        /**
+         * @return empty builder to append the new text to, then call apply
+         */
+        public StringBuilder edit() {
+            mText.setLength(0);
+            return mText;
+        }
+
+        public void apply() {
+            int length = mText.length();
+            if (length == mLength && sameChars(length)) return;
+
+            // TextView keeps the array, it may only change right before the next setText
+            if (mChars.length < length) {
+                mChars = new char[length * 2];
+            }
+            mText.getChars(0, length, mChars, 0);
+            mLength = length;
+            mView.setText(mChars, 0, length);
+        }
+
+        /**
+         * Call when the view text was set by other means
+         */
+        public void invalidate() {
+            mLength = -1;
+        }
+
+        private boolean sameChars(int length) {
+            for (int i = 0; i < length; i++) {
+                if (mChars[i] != mText.charAt(i)) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -2,7 +2,19 @@ package io.github.loopX.XAlarm.tools;
 
 import android.content.Context;
 import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.v4.util.SimpleArrayMap;
+import android.util.Log;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /*
     Each call to Typeface.createFromAsset will load a new instance of the typeface into memory,
@@ -26,20 +38,184 @@ import android.support.v4.util.SimpleArrayMap;
 /**
  * 优化字体资源获取方式，每次获取字体时先从缓存中拿，如果没法命中再去创建
  *
+ * Reads never lock: the cache is replaced as a whole when a typeface is added and
+ * published through a volatile field. preload loads a typeface on a background thread
+ * at process start; views use setTypeface / getAsync, which never block inflation
+ * and apply the typeface once it is loaded if it is not ready yet. Typefaces are
+ * created outside LOAD_LOCK, which is only held to publish them and hand out the
+ * waiting callbacks.
+ *
  * Author UFreedom
  * 
  */
 public class TypefaceHelp {
 
-    private static final SimpleArrayMap<String, Typeface> CACHE = new SimpleArrayMap<String, Typeface>();
+    private static final String TAG = "TypefaceHelp";
+
+    public static final String BEBAS_NEUE = "fonts/BebasNeue.otf";
+
+    public interface Callback {
+        /**
+         * Called on the main thread
+         */
+        void onTypefaceLoaded(Typeface typeface);
+    }
+
+    // Copy on write, never modified once published
+    private static volatile SimpleArrayMap<String, Typeface> sCache = new SimpleArrayMap<>();
+
+    // Guards publishing to sCache, sLoading and sCallbacks
+    private static final Object LOAD_LOCK = new Object();
+    private static final Set<String> sLoading = new HashSet<>();
+    private static final Map<String, List<Callback>> sCallbacks = new HashMap<>();
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
 
+    /**
+     * Returns the typeface, loading it on the calling thread if needed.
+     * Prefer setTypeface or getAsync on the main thread.
+     */
     public static Typeface get(Context context, String name) {
-        synchronized (CACHE) {
-            if (!CACHE.containsKey(name)) {
-                Typeface t = Typeface.createFromAsset(context.getAssets(), name);
-                CACHE.put(name, t);
+        Typeface typeface = peek(name);
+        if (typeface != null) return typeface;
+
+        typeface = create(context, name);
+        synchronized (LOAD_LOCK) {
+            return publish(name, typeface);
+        }
+    }
+
+    /**
+     * @return the typeface if it is already loaded, null otherwise. Never blocks.
+     */
+    public static Typeface peek(String name) {
+        return sCache.get(name);
+    }
+
+    /**
+     * Starts loading a typeface on a background thread
+     */
+    public static void preload(Context context, String name) {
+        if (peek(name) != null) return;
+
+        final Context appContext = context.getApplicationContext();
+        final String fontName = name;
+        synchronized (LOAD_LOCK) {
+            if (!sLoading.add(fontName)) return;
+        }
+
+        TaskScheduler.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                Typeface typeface = null;
+                try {
+                    typeface = create(appContext, fontName);
+                } catch (RuntimeException e) {
+                    // Not cached, the next preload tries again
+                    Log.e(TAG, "Can not load " + fontName, e);
+                } finally {
+                    // Always runs, the executor swallows what the task throws
+                    finishLoad(fontName, typeface);
+                }
+            }
+        });
+    }
+
+    /**
+     * Publishes a background load and delivers it to the waiting callbacks
+     * @param typeface the loaded typeface, null if loading failed
+     */
+    private static void finishLoad(String name, Typeface typeface) {
+        final List<Callback> callbacks;
+        synchronized (LOAD_LOCK) {
+            if (typeface != null) {
+                typeface = publish(name, typeface);
+            }
+            sLoading.remove(name);
+            callbacks = sCallbacks.remove(name);
+        }
+
+        if (callbacks != null) {
+            final Typeface result = typeface != null ? typeface : Typeface.DEFAULT;
+            sMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (Callback callback : callbacks) {
+                        callback.onTypefaceLoaded(result);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Delivers the typeface to callback: immediately if it is loaded, otherwise on the
+     * main thread once the background load is done, Typeface.DEFAULT if it failed.
+     * Must be called on the main thread.
+     */
+    public static void getAsync(Context context, String name, Callback callback) {
+        Typeface typeface = peek(name);
+        if (typeface != null) {
+            callback.onTypefaceLoaded(typeface);
+            return;
+        }
+
+        synchronized (LOAD_LOCK) {
+            // Loaded while waiting for the lock
+            typeface = sCache.get(name);
+            if (typeface == null) {
+                List<Callback> callbacks = sCallbacks.get(name);
+                if (callbacks == null) {
+                    callbacks = new ArrayList<>();
+                    sCallbacks.put(name, callbacks);
+                }
+                callbacks.add(callback);
             }
-            return CACHE.get(name);
         }
+
+        if (typeface != null) {
+            callback.onTypefaceLoaded(typeface);
+        } else {
+            preload(context, name);
+        }
+    }
+
+    /**
+     * Sets the typeface on view without blocking, see getAsync
+     */
+    public static void setTypeface(final TextView view, String name) {
+        getAsync(view.getContext(), name, new Callback() {
+            @Override
+            public void onTypefaceLoaded(Typeface typeface) {
+                view.setTypeface(typeface);
+            }
+        });
+    }
+
+    /**
+     * Creates the typeface, slow, called without LOAD_LOCK
+     */
+    private static Typeface create(Context context, String name) {
+        long start = SystemClock.uptimeMillis();
+        Typeface typeface = Typeface.createFromAsset(context.getAssets(), name);
+        Log.d(TAG, "loaded " + name + " in " + (SystemClock.uptimeMillis() - start) + " ms on "
+                + Thread.currentThread().getName());
+        return typeface;
+    }
+
+    /**
+     * Adds the typeface to the cache, must hold LOAD_LOCK
+     * @return the cached typeface, the one already published if another thread won
+     */
+    private static Typeface publish(String name, Typeface typeface) {
+        SimpleArrayMap<String, Typeface> cache = sCache;
+        Typeface cached = cache.get(name);
+        if (cached != null) return cached;
+
+        SimpleArrayMap<String, Typeface> newCache = new SimpleArrayMap<>(cache.size() + 1);
+        newCache.putAll(cache);
+        newCache.put(name, typeface);
+        sCache = newCache;
+        return typeface;
     }
 }
@@ -1,10 +1,8 @@
 package io.github.loopX.XAlarm.tools;
 
 import android.content.Context;
-import android.content.res.Resources;
 import android.support.annotation.ColorRes;
 import android.util.DisplayMetrics;
-import android.util.TypedValue;
 import android.view.WindowManager;
 
 import io.github.loopX.XAlarm.XAlarmApp;
@@ -15,19 +13,38 @@ import io.github.loopX.XAlarm.XAlarmApp;
  */
 public class UIUtils {
 
-    public static int getScreenWidth(){
-        DisplayMetrics dm = new DisplayMetrics();
-        WindowManager wm = (WindowManager) XAlarmApp.getAppContext().getSystemService(Context.WINDOW_SERVICE);
-        wm.getDefaultDisplay().getMetrics(dm);
-        return dm.widthPixels;
+    // Display metrics of the default display, read once per configuration.
+    // Never modified once published, reset by invalidateDisplayMetrics.
+    private static volatile DisplayMetrics sDisplayMetrics;
+
+    /**
+     * Returns the cached display metrics, the window manager is only queried after a
+     * configuration change. Safe to call on every frame.
+     */
+    public static DisplayMetrics getDisplayMetrics() {
+        DisplayMetrics dm = sDisplayMetrics;
+        if (dm == null) {
+            dm = new DisplayMetrics();
+            WindowManager wm = (WindowManager) XAlarmApp.getAppContext().getSystemService(Context.WINDOW_SERVICE);
+            wm.getDefaultDisplay().getMetrics(dm);
+            sDisplayMetrics = dm;
+        }
+        return dm;
+    }
 
+    /**
+     * Called when the configuration changes, e.g. on rotation or density change
+     */
+    public static void invalidateDisplayMetrics() {
+        sDisplayMetrics = null;
+    }
+
+    public static int getScreenWidth(){
+        return getDisplayMetrics().widthPixels;
     }
 
     public static int getScreenHeight(){
-        DisplayMetrics dm = new DisplayMetrics();
-        WindowManager wm = (WindowManager) XAlarmApp.getAppContext().getSystemService(Context.WINDOW_SERVICE);
-        wm.getDefaultDisplay().getMetrics(dm);
-        return dm.heightPixels;
+        return getDisplayMetrics().heightPixels;
     }
 
     public static  int getColor(@ColorRes int id){
@@ -35,9 +52,7 @@ public class UIUtils {
     }
     
     public static int dip2px(float dp) {
-        Resources r = XAlarmApp.getAppContext().getResources();
-        float px = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, dp, r.getDisplayMetrics());
-        return Math.round(px);
+        return Math.round(dp * getDisplayMetrics().density);
     }
     
 }
@@ -0,0 +1,90 @@
+package io.github.loopX.XAlarm.vibration;
+
+import java.util.Arrays;
+
+/**
+ * Immutable vibration pattern, compiled once into the timings the vibrator takes.
+ *
+ * A waveform is a list of steps, each a duration and an amplitude in percent.
+ * The vibrator API of this SDK has no amplitude control, so amplitude is played
+ * as pulse width: a step vibrates for its share of the duration and stays still
+ * for the rest. Each waveform is compiled at LEVELS strengths, from a quarter to
+ * full, which WaveformPlayer steps through to follow the ringtone crescendo.
+ */
+public final class Waveform {
+
+    // Strengths each waveform is compiled at
+    public static final int LEVELS = 4;
+
+    // Shorter pulses do not spin the motor up, they are left out
+    static final long MIN_PULSE_MILLIS = 15;
+
+    private final int mId;
+    private final int mRepeat;
+    private final long[][] mTimings;
+
+    private Waveform(int id, int repeat, long[][] timings) {
+        mId = id;
+        mRepeat = repeat;
+        mTimings = timings;
+    }
+
+    /**
+     * @param repeating true to loop the waveform until it is stopped
+     * @param steps pairs of duration in milliseconds and amplitude from 0 to 100
+     */
+    public static Waveform compile(int id, boolean repeating, int... steps) {
+        if (steps.length % 2 != 0) {
+            throw new IllegalArgumentException("Steps must be duration and amplitude pairs");
+        }
+
+        long[][] timings = new long[LEVELS][];
+        for (int level = 0; level < LEVELS; level++) {
+            timings[level] = compileLevel(steps, (level + 1) / (float) LEVELS);
+        }
+        return new Waveform(id, repeating ? 0 : -1, timings);
+    }
+
+    /**
+     * Turns the steps into alternating off and on durations, starting with off
+     */
+    private static long[] compileLevel(int[] steps, float strength) {
+        long[] timings = new long[steps.length + 1];
+        int length = 0;
+        long off = 0;
+        for (int i = 0; i < steps.length; i += 2) {
+            long duration = steps[i];
+            long on = Math.round(duration * steps[i + 1] / 100f * strength);
+            if (on < MIN_PULSE_MILLIS) {
+                off += duration;
+                continue;
+            }
+            timings[length++] = off;
+            timings[length++] = on;
+            off = duration - on;
+        }
+        if (off > 0 || length == 0) {
+            timings[length++] = off;
+        }
+        return Arrays.copyOf(timings, length);
+    }
+
+    public int getId() {
+        return mId;
+    }
+
+    /**
+     * @return index the timings repeat from, -1 if they play once
+     */
+    public int getRepeat() {
+        return mRepeat;
+    }
+
+    /**
+     * @param level from 0, the weakest, to LEVELS - 1, full strength
+     * @return shared timings, must not be modified
+     */
+    long[] getTimings(int level) {
+        return mTimings[level];
+    }
+}
@@ -0,0 +1,42 @@
+package io.github.loopX.XAlarm.vibration;
+
+/**
+ * Vibration patterns an alarm can pick, compiled when the class is loaded.
+ * Pattern ids are stored with the alarm, so existing ones must keep their value
+ * and their place in R.array.vibration_pattern_names.
+ */
+public final class WaveformLibrary {
+
+    public static final int PULSE = 0;
+    public static final int HEARTBEAT = 1;
+    public static final int RAPID = 2;
+    public static final int RISING = 3;
+
+    public static final int DEFAULT = PULSE;
+
+    private static final Waveform[] PATTERNS = {
+            // The original alarm vibration
+            Waveform.compile(PULSE, true, 200, 100, 500, 0),
+            Waveform.compile(HEARTBEAT, true, 120, 100, 100, 0, 180, 70, 600, 0),
+            Waveform.compile(RAPID, true, 100, 100, 100, 0),
+            Waveform.compile(RISING, true, 100, 40, 100, 0, 150, 70, 100, 0, 250, 100, 500, 0),
+    };
+
+    // Short buzz confirming an alarm was dismissed
+    public static final Waveform BUZZ = Waveform.compile(-1, false, 500, 100);
+
+    private WaveformLibrary() {
+    }
+
+    /**
+     * @return the pattern, DEFAULT for unknown ids
+     */
+    public static Waveform get(int id) {
+        if (id < 0 || id >= PATTERNS.length) return PATTERNS[DEFAULT];
+        return PATTERNS[id];
+    }
+
+    public static int count() {
+        return PATTERNS.length;
+    }
+}
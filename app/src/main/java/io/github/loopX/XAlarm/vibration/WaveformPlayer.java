@@ -0,0 +1,124 @@
+package io.github.loopX.XAlarm.vibration;
+
+import io.github.loopX.XAlarm.audio.GainEnvelope;
+
+/**
+ * Plays a Waveform in step with the ringtone crescendo.
+ *
+ * The waveform starts at its weakest level and moves up one level each time the
+ * ringtone gain, as computed by GainEnvelope, reaches the next quarter, so the
+ * vibration grows with the volume. Without crescendo it starts at full strength.
+ *
+ * The vibrator and the timer are interfaces so the timing can be tested on the
+ * JVM. Waveforms are precompiled and the level timer is reused, nothing is
+ * allocated while playing. Used from one thread, not thread safe.
+ */
+public final class WaveformPlayer {
+
+    /**
+     * The device vibrator
+     */
+    public interface Driver {
+        /**
+         * @param timings alternating off and on durations, starting with off
+         * @param repeat index to repeat from, -1 to play once
+         */
+        void vibrate(long[] timings, int repeat);
+
+        void cancel();
+    }
+
+    /**
+     * Runs the level changes later on the player's thread
+     */
+    public interface Scheduler {
+        void postDelayed(Runnable task, long delayMillis);
+
+        void removeCallbacks(Runnable task);
+    }
+
+    private final Driver mDriver;
+    private final Scheduler mScheduler;
+
+    // Time from the start of playback to each level, in milliseconds
+    private final long[] mLevelStarts = new long[Waveform.LEVELS];
+
+    private Waveform mWaveform;
+    private int mLevel = -1;
+
+    private final Runnable mNextLevel = new Runnable() {
+        @Override
+        public void run() {
+            if (mWaveform != null) {
+                setLevel(mLevel + 1);
+            }
+        }
+    };
+
+    public WaveformPlayer(Driver driver, Scheduler scheduler) {
+        mDriver = driver;
+        mScheduler = scheduler;
+    }
+
+    /**
+     * Starts the waveform, or goes on if it is already playing
+     * @param crescendoSeconds crescendo of the ringtone, 0 for full strength at once
+     * @param crescendoCurve GainEnvelope.CURVE_*
+     */
+    public void play(Waveform waveform, int crescendoSeconds, int crescendoCurve) {
+        if (waveform == mWaveform) return;
+
+        stop();
+        mWaveform = waveform;
+
+        if (crescendoSeconds <= 0) {
+            setLevel(Waveform.LEVELS - 1);
+            return;
+        }
+
+        // Each level starts once the ringtone is as loud as the level below it
+        for (int level = 0; level < Waveform.LEVELS; level++) {
+            float progress = GainEnvelope.progressAt(level / (float) Waveform.LEVELS, crescendoCurve);
+            mLevelStarts[level] = (long) (progress * crescendoSeconds * 1000);
+        }
+        setLevel(0);
+    }
+
+    /**
+     * Vibrates the waveform once at full strength, whatever was playing is stopped.
+     * The buzz is not cut by a later stop.
+     */
+    public void buzz(Waveform waveform) {
+        stop();
+        mDriver.vibrate(waveform.getTimings(Waveform.LEVELS - 1), waveform.getRepeat());
+    }
+
+    public void stop() {
+        mScheduler.removeCallbacks(mNextLevel);
+        if (mWaveform != null) {
+            mDriver.cancel();
+            mWaveform = null;
+            mLevel = -1;
+        }
+    }
+
+    public boolean isPlaying() {
+        return mWaveform != null;
+    }
+
+    /**
+     * @return level being played, -1 when stopped
+     */
+    public int getLevel() {
+        return mLevel;
+    }
+
+    private void setLevel(int level) {
+        mLevel = level;
+        mDriver.vibrate(mWaveform.getTimings(level), mWaveform.getRepeat());
+
+        if (level + 1 < Waveform.LEVELS) {
+            mScheduler.postDelayed(mNextLevel, mLevelStarts[level + 1] - mLevelStarts[level]);
+        }
+    }
+}
@@ -27,6 +27,8 @@ import java.util.Calendar;
 import java.util.TimeZone;
 
 import io.github.loopX.XAlarm.R;
+import io.github.loopX.XAlarm.metrics.FrameMonitor;
+import io.github.loopX.XAlarm.tools.FrameScheduler;
 import io.github.loopX.XAlarm.tools.UIUtils;
 import io.github.loopX.XAlarm.tools.BaseSpringListener;
 import io.github.loopX.XAlarm.tools.ReboundAnimation;
@@ -361,13 +363,6 @@ public class ClockView extends View {
         ValueAnimator minuteAnimator = ValueAnimator.ofInt(-35,0);
         minuteAnimator.setInterpolator(new LinearInterpolator());
         minuteAnimator.setDuration(900);
-        minuteAnimator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                super.onAnimationEnd(animation);
-                post(mClockTick);
-            }
-        });
         minuteAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
             @Override
             public void onAnimationUpdate(ValueAnimator animation) {
@@ -384,7 +379,7 @@ public class ClockView extends View {
             @Override
             public void onAnimationEnd(Animator animation) {
                 super.onAnimationEnd(animation);
-                post(mClockTick);
+                FrameScheduler.getInstance().add("clock", mClockTick, 1000);
             }
         });
         secondAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
@@ -398,6 +393,17 @@ public class ClockView extends View {
 
         AnimatorSet animatorSet = new AnimatorSet();
         animatorSet.playTogether(hourAnimator,minuteAnimator,secondAnimator);
+        animatorSet.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationStart(Animator animation) {
+                FrameMonitor.beginSection(FrameMonitor.TAG_CLOCK);
+            }
+
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                FrameMonitor.endSection(FrameMonitor.TAG_CLOCK);
+            }
+        });
         animatorSet.start();
         mAlphaAnimation.start();
         mTranslateAnimationSpring.setEndValue(1f);
@@ -409,7 +415,7 @@ public class ClockView extends View {
         super.onDetachedFromWindow();
         if (mAttached) {
             getContext().unregisterReceiver(mIntentReceiver);
-            removeCallbacks(mClockTick);
+            FrameScheduler.getInstance().remove(mClockTick);
             mAttached = false;
         }
     }
@@ -417,14 +423,12 @@ public class ClockView extends View {
     /**
      * Task running every second to update time and re-draw the view with new updates
      */
-    private final Runnable mClockTick = new Runnable () {
+    private final FrameScheduler.FrameCallback mClockTick = new FrameScheduler.FrameCallback() {
         @Override
-        public void run() {
+        public void doFrame(long frameTimeNanos) {
             onTimeChanged();
             invalidate();
-
-            // Run the same task 1 second late
-            ClockView.this.postDelayed(mClockTick, 1000);
+            FrameMonitor.markFrame(FrameMonitor.TAG_CLOCK);
         }
     };
 
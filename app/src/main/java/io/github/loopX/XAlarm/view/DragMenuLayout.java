@@ -11,6 +11,7 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.widget.FrameLayout;
 
+import io.github.loopX.XAlarm.metrics.FrameMonitor;
 import io.github.loopX.XAlarm.tools.UIUtils;
 
 public class DragMenuLayout extends FrameLayout {
@@ -33,12 +34,27 @@ public class DragMenuLayout extends FrameLayout {
     private int mainViewRelativeToMenu;
     
     private boolean releaseMenu;
+    private boolean dragFrameSectionOpen;
     private int lastMainViewRelativeToMenu;
 
     public enum MenuStatus {
         Drag, Open, Close
     }
 
+    /**
+     * Menu whose content is only inflated the first time it is dragged or opened.
+     * The menu view itself stays a light container, so the drag geometry is known
+     * from the first layout.
+     */
+    public interface LazyMenu {
+        boolean isMenuInflated();
+
+        /**
+         * Inflates the menu content, called once on the main thread
+         */
+        void inflateMenu();
+    }
+
     public MenuStatus getMenuStatus() {
         if (mainViewRelativeToMenu == 0) {
             return MenuStatus.Close;
@@ -49,6 +65,16 @@ public class DragMenuLayout extends FrameLayout {
         }
     }
     
+    /**
+     * Inflates the content of a lazy menu if it was not done yet
+     */
+    public void ensureMenuInflated(MenuDirection direction) {
+        View menu = getMenuView(direction);
+        if (menu instanceof LazyMenu && !((LazyMenu) menu).isMenuInflated()) {
+            ((LazyMenu) menu).inflateMenu();
+        }
+    }
+
     public View getMenuView(MenuDirection direction){
         
         if (direction == MenuDirection.LEFT){
@@ -70,6 +96,20 @@ public class DragMenuLayout extends FrameLayout {
             return true;
         }
 
+        /**
+         * Tags frames as drag frames while the finger drags or the menu settles
+         */
+        @Override
+        public void onViewDragStateChanged(int state) {
+            boolean dragging = state != ViewDragHelper.STATE_IDLE;
+            if (dragging && !dragFrameSectionOpen) {
+                FrameMonitor.beginSection(FrameMonitor.TAG_DRAG);
+            } else if (!dragging && dragFrameSectionOpen) {
+                FrameMonitor.endSection(FrameMonitor.TAG_DRAG);
+            }
+            dragFrameSectionOpen = dragging;
+        }
+
         @Override
         public int clampViewPositionHorizontal(View child, int left, int dx) {
 
@@ -173,6 +213,13 @@ public class DragMenuLayout extends FrameLayout {
                                           int dx, int dy) {
 
             Log.e("ViewDragHelper", "------- onViewPositionChanged : dx: "+dx);
+
+            // First frame the menu becomes visible
+            if (mainViewRelativeToMenu + dx > 0) {
+                ensureMenuInflated(MenuDirection.LEFT);
+            } else if (mainViewRelativeToMenu + dx < 0) {
+                ensureMenuInflated(MenuDirection.RIGHT);
+            }
             
             if (changedView == mainContentView) {
                 mainViewRelativeToMenu = left;
@@ -426,6 +473,7 @@ public class DragMenuLayout extends FrameLayout {
     }
 
     public void openRightMenuWithAnimation() {
+        ensureMenuInflated(MenuDirection.RIGHT);
         releaseMenu = true;
         if (dragHelper.smoothSlideViewTo(mainContentView, -range, 0)) {
             ViewCompat.postInvalidateOnAnimation(this);
@@ -440,6 +488,7 @@ public class DragMenuLayout extends FrameLayout {
     }
 
     public void openLeftMenuWithAnimation() {
+        ensureMenuInflated(MenuDirection.LEFT);
         releaseMenu = true;
         if (dragHelper.smoothSlideViewTo(mainContentView, range, 0)) {
             ViewCompat.postInvalidateOnAnimation(this);
@@ -2,29 +2,74 @@ package io.github.loopX.XAlarm.view;
 
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
-import android.animation.ObjectAnimator;
-import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
 import android.util.AttributeSet;
 import android.view.View;
+import android.view.ViewAnimationUtils;
 import android.view.ViewTreeObserver;
 import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+import android.widget.FrameLayout;
+
+import java.util.ArrayList;
+
+import io.github.loopX.XAlarm.metrics.FrameMonitor;
+import io.github.loopX.XAlarm.tools.FrameScheduler;
 
 /**
  * Author UFreedom
  * Date : 2016 一月 13
+ *
+ * The ripple circle is drawn by an inner layer above the background. From Lollipop
+ * the layer is revealed with a circular reveal animated on the RenderThread. Below,
+ * the radius is animated in software and only the bounds of the circle are
+ * invalidated; all software ripples running at the same time share one frame callback.
  */
-public class RippleBackgroundView extends View implements ViewTreeObserver.OnGlobalLayoutListener {
+public class RippleBackgroundView extends FrameLayout implements ViewTreeObserver.OnGlobalLayoutListener {
+
+    private static final boolean USE_REVEAL = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+
+    private static final long RIPPLE_DURATION_MS = 350;
+
+    private static final Interpolator sRippleInterpolator = new DecelerateInterpolator();
+
+    // Software ripples in progress, moved together by sRippleFrame
+    private static final ArrayList<RippleBackgroundView> sRunningRipples = new ArrayList<>();
+    private static final ArrayList<RippleBackgroundView> sFrameRipples = new ArrayList<>();
+
+    private static final FrameScheduler.FrameCallback sRippleFrame = new FrameScheduler.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            // A finishing ripple may start or finish others from its listener
+            sFrameRipples.addAll(sRunningRipples);
+            for (int i = 0; i < sFrameRipples.size(); i++) {
+                RippleBackgroundView ripple = sFrameRipples.get(i);
+                if (sRunningRipples.contains(ripple)) {
+                    ripple.onRippleFrame(frameTimeNanos);
+                }
+            }
+            sFrameRipples.clear();
+        }
+    };
 
     private Paint mPaint;
     private float mRippleRadius;
     private float mRipplePivotX = Float.MAX_VALUE;
     private float mRipplePivotY = Float.MAX_VALUE;
 
+    private RippleLayer mRippleLayer;
+    private float mStartRippleRadius;
+    private float mFinishRippleRadius;
+    private long mRippleStartNanos;
+    private boolean mRippleRunning;
+    private Animator mRevealAnimator;
+
     private RippleAnimationListener rippleAnimationListener;
 
     public RippleBackgroundView(Context context) {
@@ -41,23 +86,16 @@ public class RippleBackgroundView extends View implements ViewTreeObserver.OnGlo
         mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         mPaint.setStrokeWidth(1);
         mPaint.setStyle(Paint.Style.FILL_AND_STROKE);
-        getViewTreeObserver().addOnGlobalLayoutListener(this);
-    }
 
-    @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-    }
+        mRippleLayer = new RippleLayer(context);
+        addView(mRippleLayer, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
 
-    @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
-        canvas.drawCircle(mRipplePivotX, mRipplePivotY, mRippleRadius, mPaint);
+        getViewTreeObserver().addOnGlobalLayoutListener(this);
     }
 
     public void setRippleRadius(float rippleRadius) {
         this.mRippleRadius = rippleRadius;
-        invalidate();
+        mRippleLayer.invalidate();
     }
 
     public void startRipple(RippleBuilder rippleBuilder) {
@@ -70,44 +108,125 @@ public class RippleBackgroundView extends View implements ViewTreeObserver.OnGlo
             setBackgroundDrawable(new ColorDrawable(rippleBuilder.backgroundColor));
         }
 
+        // A new ripple replaces the running one
+        if (mRippleRunning) {
+            finishRipple();
+        }
+
         // Set ripple pivot
         mRipplePivotX = rippleBuilder.haveSetRipplePivotX ? rippleBuilder.ripplePivotX : mRipplePivotX;
         mRipplePivotY = rippleBuilder.haveSetRipplePivotY ? rippleBuilder.ripplePivotY : mRipplePivotY;
 
         mPaint.setColor(rippleBuilder.rippleColor);
 
-        ObjectAnimator rippleAnimation = ObjectAnimator.ofFloat(this, "rippleRadius",
-                rippleBuilder.startRippleRadius, rippleBuilder.finishRippleRadius);
-        rippleAnimation.setDuration(350);
-        rippleAnimation.setInterpolator(new DecelerateInterpolator());
-        rippleAnimation.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationStart(Animator animation) {
-                super.onAnimationStart(animation);
-                if (rippleAnimationListener != null) {
-                    rippleAnimationListener.onRippleStart();
-                }
-            }
+        mStartRippleRadius = rippleBuilder.startRippleRadius;
+        mFinishRippleRadius = rippleBuilder.finishRippleRadius;
+        mRippleRunning = true;
+
+        FrameMonitor.beginSection(FrameMonitor.TAG_RIPPLE);
+        if (rippleAnimationListener != null) {
+            rippleAnimationListener.onRippleStart();
+        }
+
+        // A reveal can only run on an attached view
+        if (USE_REVEAL && getWindowToken() != null) {
+            startReveal();
+        } else {
+            setRippleRadius(mStartRippleRadius);
+            mRippleStartNanos = -1;
+            sRunningRipples.add(this);
+            FrameScheduler.getInstance().add("ripple", sRippleFrame);
+        }
+    }
 
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void startReveal() {
+        // The layer draws the largest circle, the reveal clips it to the animated radius
+        setRippleRadius(Math.max(mStartRippleRadius, mFinishRippleRadius));
+
+        mRevealAnimator = ViewAnimationUtils.createCircularReveal(mRippleLayer,
+                (int) mRipplePivotX, (int) mRipplePivotY, mStartRippleRadius, mFinishRippleRadius);
+        mRevealAnimator.setDuration(RIPPLE_DURATION_MS);
+        mRevealAnimator.setInterpolator(sRippleInterpolator);
+        mRevealAnimator.addListener(new AnimatorListenerAdapter() {
             @Override
             public void onAnimationEnd(Animator animation) {
-                super.onAnimationEnd(animation);
-                if (rippleAnimationListener != null) {
-                    rippleAnimationListener.onRippleFinished();
+                if (animation == mRevealAnimator) {
+                    finishRipple();
                 }
             }
         });
+        mRevealAnimator.start();
+    }
 
-        rippleAnimation.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                if (rippleAnimationListener != null) {
-                    rippleAnimationListener.onRippleUpdate((Float) animation.getAnimatedValue());
-                }
-            }
-        });
-        rippleAnimation.start();
+    /**
+     * Moves a software ripple according to the time elapsed since its first frame
+     */
+    private void onRippleFrame(long frameTimeNanos) {
+        if (mRippleStartNanos < 0) {
+            mRippleStartNanos = frameTimeNanos;
+        }
+
+        float fraction = Math.min(1f,
+                (frameTimeNanos - mRippleStartNanos) / (RIPPLE_DURATION_MS * 1000000f));
+        float radius = mStartRippleRadius
+                + (mFinishRippleRadius - mStartRippleRadius) * sRippleInterpolator.getInterpolation(fraction);
+
+        // Only the square around the larger of the old and new circles changes, plus antialiasing
+        float dirtyRadius = Math.max(mRippleRadius, radius) + 1;
+        mRippleRadius = radius;
+        mRippleLayer.invalidate((int) (mRipplePivotX - dirtyRadius), (int) (mRipplePivotY - dirtyRadius),
+                (int) Math.ceil(mRipplePivotX + dirtyRadius), (int) Math.ceil(mRipplePivotY + dirtyRadius));
+
+        if (rippleAnimationListener != null) {
+            rippleAnimationListener.onRippleUpdate(radius);
+        }
+
+        if (fraction >= 1f) {
+            finishRipple();
+        }
+    }
 
+    private void finishRipple() {
+        mRippleRunning = false;
+
+        Animator revealAnimator = mRevealAnimator;
+        if (revealAnimator != null) {
+            mRevealAnimator = null;
+            revealAnimator.cancel();
+            // The layer keeps drawing the final circle once the reveal clip is gone
+            setRippleRadius(mFinishRippleRadius);
+        } else if (sRunningRipples.remove(this) && sRunningRipples.isEmpty()) {
+            FrameScheduler.getInstance().remove(sRippleFrame);
+        }
+
+        FrameMonitor.endSection(FrameMonitor.TAG_RIPPLE);
+        if (rippleAnimationListener != null) {
+            rippleAnimationListener.onRippleFinished();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mRippleRunning) {
+            finishRipple();
+        }
+    }
+
+    /**
+     * Draws the ripple circle above the background of RippleBackgroundView
+     */
+    private class RippleLayer extends View {
+
+        RippleLayer(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            canvas.drawCircle(mRipplePivotX, mRipplePivotY, mRippleRadius, mPaint);
+        }
     }
 
     @Override
@@ -135,6 +254,9 @@ public class RippleBackgroundView extends View implements ViewTreeObserver.OnGlo
     public interface RippleAnimationListener {
         void onRippleStart();
 
+        /**
+         * Called on every frame of a software ripple, not for a circular reveal
+         */
         void onRippleUpdate(float radius);
 
         void onRippleFinished();
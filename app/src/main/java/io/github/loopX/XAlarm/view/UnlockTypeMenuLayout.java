@@ -14,7 +14,8 @@ import io.github.loopX.XAlarm.module.UnlockTypeModule.UnlockTypeEnum;
  * Author UFreedom
  * Date : 2016 六月 10
  */
-public class UnlockTypeMenuLayout extends LinearLayout implements View.OnClickListener {
+public class UnlockTypeMenuLayout extends LinearLayout implements View.OnClickListener,
+        DragMenuLayout.LazyMenu {
 
     private View typeLayout;
     private View mathLayout;
@@ -25,7 +26,8 @@ public class UnlockTypeMenuLayout extends LinearLayout implements View.OnClickLi
     private ImageView ivUnlockType1;
     private ImageView ivUnlockType2;
     private ImageView ivUnlockType3;
-    private int unlockType;
+    private int unlockType = -1;
+    private boolean menuInflated;
     
     public UnlockTypeMenuLayout(Context context) {
         this(context, null);
@@ -41,8 +43,13 @@ public class UnlockTypeMenuLayout extends LinearLayout implements View.OnClickLi
 
 
     @Override
-    protected void onFinishInflate() {
-        super.onFinishInflate();
+    public boolean isMenuInflated() {
+        return menuInflated;
+    }
+
+    @Override
+    public void inflateMenu() {
+        menuInflated = true;
         LayoutInflater.from(getContext()).inflate(R.layout.menu_left, this, true);
 
         typeLayout = findViewById(R.id.normalLayout);
@@ -59,6 +66,10 @@ public class UnlockTypeMenuLayout extends LinearLayout implements View.OnClickLi
         mathLayout.setOnClickListener(this);
         paintLayout.setOnClickListener(this);
         shakeLayout.setOnClickListener(this);
+
+        if (unlockType >= 0) {
+            setChosenStatue(unlockType);
+        }
     }
 
     @Override
@@ -99,6 +110,8 @@ public class UnlockTypeMenuLayout extends LinearLayout implements View.OnClickLi
 
     public void setChosenStatue(int i) {
         unlockType = i;
+        if (!menuInflated) return;
+
         switch (i) {
             case 0:
                 ivUnlockType0.setVisibility(View.VISIBLE);
@@ -116,6 +129,8 @@ public class UnlockTypeMenuLayout extends LinearLayout implements View.OnClickLi
     }
 
     public void resetChosenStatus() {
+        if (!menuInflated) return;
+
         ivUnlockType0.setVisibility(View.GONE);
         ivUnlockType1.setVisibility(View.GONE);
         ivUnlockType2.setVisibility(View.GONE);
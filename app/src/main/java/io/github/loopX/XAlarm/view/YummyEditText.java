@@ -11,12 +11,10 @@ public class YummyEditText extends EditText {
 
     public YummyEditText(Context context) {
         this(context,null);
-        style(context);
     }
 
     public YummyEditText(Context context, AttributeSet attrs) {
         this(context, attrs,0);
-        style(context);
     }
 
     public YummyEditText(Context context, AttributeSet attrs, int defStyleAttr) {
@@ -25,7 +23,7 @@ public class YummyEditText extends EditText {
     }
     
     private void style(Context context) {
-        setTypeface(TypefaceHelp.get(context,"fonts/BebasNeue.otf"));
+        TypefaceHelp.setTypeface(this, TypefaceHelp.BEBAS_NEUE);
     }
 
 }
@@ -11,12 +11,10 @@ public class YummyTextView extends TextView {
 
     public YummyTextView(Context context) {
         this(context,null);
-        style(context);
     }
 
     public YummyTextView(Context context, AttributeSet attrs) {
         this(context, attrs,0);
-        style(context);
     }
 
     public YummyTextView(Context context, AttributeSet attrs, int defStyleAttr) {
@@ -25,7 +23,7 @@ public class YummyTextView extends TextView {
     }
     
     private void style(Context context) {
-        setTypeface(TypefaceHelp.get(context,"fonts/BebasNeue.otf"));
+        TypefaceHelp.setTypeface(this, TypefaceHelp.BEBAS_NEUE);
     }
 
 }
@@ -174,25 +174,27 @@ public class YummyTimePicker extends View {
             selectedTextPaint.setStyle(Paint.Style.FILL);
             selectedTextPaint.setTextAlign(Paint.Align.CENTER);
             selectedTextPaint.setColor(ContextCompat.getColor(getContext(), R.color.loopX_3));
-            selectedTextPaint.setTypeface(getTypeface());
 
 
             aboveTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
             aboveTextPaint.setStyle(Paint.Style.FILL);
             aboveTextPaint.setTextAlign(Paint.Align.CENTER);
             aboveTextPaint.setColor(ContextCompat.getColor(getContext(), R.color.loopX_3));
-            aboveTextPaint.setTypeface(getTypeface());
             
             bellowTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
             bellowTextPaint.setStyle(Paint.Style.FILL);
             bellowTextPaint.setTextAlign(Paint.Align.CENTER);
             bellowTextPaint.setColor(ContextCompat.getColor(getContext(), R.color.loopX_3));
-            bellowTextPaint.setTypeface(getTypeface());
-            
-        }
 
-        private Typeface getTypeface() {
-            return  TypefaceHelp.get(getContext(),"fonts/BebasNeue.otf");
+            TypefaceHelp.getAsync(getContext(), TypefaceHelp.BEBAS_NEUE, new TypefaceHelp.Callback() {
+                @Override
+                public void onTypefaceLoaded(Typeface typeface) {
+                    selectedTextPaint.setTypeface(typeface);
+                    aboveTextPaint.setTypeface(typeface);
+                    bellowTextPaint.setTypeface(typeface);
+                    invalidate();
+                }
+            });
         }
 
         @Override
@@ -9,6 +9,8 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import io.github.loopX.XAlarm.R;
+import io.github.loopX.XAlarm.metrics.FrameMonitor;
+import io.github.loopX.XAlarm.tools.FrameScheduler;
 
 public class Wave extends View {
     private final int WAVE_HEIGHT_LARGE = 32;
@@ -48,7 +50,7 @@ public class Wave extends View {
     private float mAboveOffset = 0.0f;
     private float mBlowOffset;
 
-    private RefreshProgressRunnable mRefreshProgressRunnable;
+    private boolean mFrameSectionOpen;
 
     private int left, right, bottom;
     // ω
@@ -173,17 +175,29 @@ public class Wave extends View {
     protected void onWindowVisibilityChanged(int visibility) {
         super.onWindowVisibilityChanged(visibility);
         if (View.GONE == visibility) {
-            removeCallbacks(mRefreshProgressRunnable);
+            FrameScheduler.getInstance().remove(mWaveFrame);
+            setFrameSectionOpen(false);
         } else {
-            removeCallbacks(mRefreshProgressRunnable);
-            mRefreshProgressRunnable = new RefreshProgressRunnable();
-            post(mRefreshProgressRunnable);
+            FrameScheduler.getInstance().add("wave", mWaveFrame);
+            setFrameSectionOpen(true);
         }
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        FrameScheduler.getInstance().remove(mWaveFrame);
+        setFrameSectionOpen(false);
+    }
+
+    private void setFrameSectionOpen(boolean open) {
+        if (open == mFrameSectionOpen) return;
+        mFrameSectionOpen = open;
+        if (open) {
+            FrameMonitor.beginSection(FrameMonitor.TAG_WAVE);
+        } else {
+            FrameMonitor.endSection(FrameMonitor.TAG_WAVE);
+        }
     }
 
     @Override
@@ -230,19 +244,15 @@ public class Wave extends View {
         }
     }
 
-    private class RefreshProgressRunnable implements Runnable {
-        public void run() {
-            synchronized (Wave.this) {
-                long start = System.currentTimeMillis();
-
-                calculatePath();
-
-                invalidate();
-
-                long gap = 16 - (System.currentTimeMillis() - start);
-                postDelayed(this, gap < 0 ? 0 : gap);
-            }
+    /**
+     * Moves the waves one step on every frame
+     */
+    private final FrameScheduler.FrameCallback mWaveFrame = new FrameScheduler.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            calculatePath();
+            invalidate();
         }
-    }
+    };
 
 }
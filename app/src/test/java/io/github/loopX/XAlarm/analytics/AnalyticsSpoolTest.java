@@ -0,0 +1,186 @@
+package io.github.loopX.XAlarm.analytics;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AnalyticsSpoolTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void deliver_sendsSpooledEventsInOrder_andRemovesSpool() throws Exception {
+        File dir = tempFolder.getRoot();
+        File spoolFile = new File(dir, "analytics.spool");
+        FileAnalyticsSink sink = new FileAnalyticsSink(new File(dir, "delivered.log"));
+        AnalyticsSpool spool = new AnalyticsSpool(spoolFile, 2, 100);
+
+        spool.append(events(0, 3));
+        spool.append(events(3, 2));
+        spool.deliver(sink);
+
+        assertFalse(spoolFile.exists());
+        assertEquals(ids(0, 5), readIds(sink.getFile()));
+    }
+
+    @Test
+    public void deliver_failingBatch_keepsOnlyUndeliveredEvents() throws Exception {
+        File dir = tempFolder.getRoot();
+        File spoolFile = new File(dir, "analytics.spool");
+        FileAnalyticsSink fileSink = new FileAnalyticsSink(new File(dir, "delivered.log"));
+        AnalyticsSpool spool = new AnalyticsSpool(spoolFile, 2, 100);
+        spool.append(events(0, 5));
+
+        FailingSink failing = new FailingSink(fileSink, 1);
+        try {
+            spool.deliver(failing);
+            fail();
+        } catch (IOException expected) {
+            // Second batch failed
+        }
+        assertEquals(ids(0, 2), readIds(fileSink.getFile()));
+        assertEquals(ids(2, 3), readIds(spoolFile));
+
+        // Retry sends the rest once
+        spool.append(events(5, 1));
+        spool.deliver(fileSink);
+        assertFalse(spoolFile.exists());
+        assertEquals(ids(0, 6), readIds(fileSink.getFile()));
+        assertEquals(0, spool.getDroppedCount());
+    }
+
+    @Test
+    public void deliver_failingSink_keepsNewestEventsUpToMax() throws Exception {
+        File dir = tempFolder.getRoot();
+        File spoolFile = new File(dir, "analytics.spool");
+        FileAnalyticsSink fileSink = new FileAnalyticsSink(new File(dir, "delivered.log"));
+        AnalyticsSpool spool = new AnalyticsSpool(spoolFile, 2, 3);
+        FailingSink failing = new FailingSink(fileSink, 0);
+
+        for (int i = 0; i < 4; i++) {
+            spool.append(events(i * 2, 2));
+            try {
+                spool.deliver(failing);
+                fail();
+            } catch (IOException expected) {
+                // Sink is down
+            }
+        }
+        assertEquals(ids(5, 3), readIds(spoolFile));
+        assertEquals(5, spool.getDroppedCount());
+
+        spool.deliver(fileSink);
+        assertEquals(ids(5, 3), readIds(fileSink.getFile()));
+    }
+
+    @Test
+    public void append_unwritableSpool_keepsEventsForNextAppend() throws Exception {
+        File dir = tempFolder.getRoot();
+        File spoolDir = new File(dir, "spool");
+        File spoolFile = new File(spoolDir, "analytics.spool");
+        AnalyticsSpool spool = new AnalyticsSpool(spoolFile, 20, 3);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                spool.append(events(i * 2, 2));
+                fail();
+            } catch (IOException expected) {
+                // Spool directory is missing
+            }
+        }
+        assertEquals(1, spool.getDroppedCount());
+
+        assertTrue(spoolDir.mkdir());
+        spool.append(events(4, 1));
+        FileAnalyticsSink sink = new FileAnalyticsSink(new File(dir, "delivered.log"));
+        spool.deliver(sink);
+        assertEquals(ids(1, 4), readIds(sink.getFile()));
+    }
+
+    @Test
+    public void deliver_reopenedSpool_sendsEventsOfPreviousProcess() throws Exception {
+        File dir = tempFolder.getRoot();
+        File spoolFile = new File(dir, "analytics.spool");
+        new AnalyticsSpool(spoolFile, 20, 100).append(events(0, 3));
+
+        FileAnalyticsSink sink = new FileAnalyticsSink(new File(dir, "delivered.log"));
+        new AnalyticsSpool(spoolFile, 20, 100).deliver(sink);
+
+        assertFalse(spoolFile.exists());
+        assertEquals(ids(0, 3), readIds(sink.getFile()));
+    }
+
+    @Test
+    public void deliver_withoutSpool_sendsNothing() throws Exception {
+        File dir = tempFolder.getRoot();
+        FileAnalyticsSink sink = new FileAnalyticsSink(new File(dir, "delivered.log"));
+        AnalyticsSpool spool = new AnalyticsSpool(new File(dir, "analytics.spool"), 20, 100);
+        spool.append(new ArrayList<AnalyticsEvent>());
+        spool.deliver(sink);
+
+        assertFalse(sink.getFile().exists());
+    }
+
+    /**
+     * Passes batches on to a sink and fails from the given batch on
+     */
+    private static class FailingSink implements AnalyticsSink {
+
+        private final AnalyticsSink mSink;
+        private int mBatchesBeforeFailure;
+
+        FailingSink(AnalyticsSink sink, int batchesBeforeFailure) {
+            mSink = sink;
+            mBatchesBeforeFailure = batchesBeforeFailure;
+        }
+
+        @Override
+        public void send(List<AnalyticsEvent> events) throws Exception {
+            if (mBatchesBeforeFailure == 0) {
+                throw new IOException("Sink down");
+            }
+            mBatchesBeforeFailure--;
+            mSink.send(events);
+        }
+    }
+
+    private static List<AnalyticsEvent> events(int first, int count) {
+        List<AnalyticsEvent> events = new ArrayList<>();
+        for (int i = first; i < first + count; i++) {
+            events.add(new AnalyticsEvent(1000 + i, "event" + i, "label"));
+        }
+        return events;
+    }
+
+    private static List<String> ids(int first, int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = first; i < first + count; i++) {
+            ids.add("event" + i);
+        }
+        return ids;
+    }
+
+    private static List<String> readIds(File file) throws IOException {
+        List<String> ids = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ids.add(AnalyticsEvent.fromLine(line).getEventId());
+            }
+        } finally {
+            reader.close();
+        }
+        return ids;
+    }
+}
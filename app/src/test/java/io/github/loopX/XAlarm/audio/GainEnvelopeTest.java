@@ -0,0 +1,114 @@
+package io.github.loopX.XAlarm.audio;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class GainEnvelopeTest {
+
+    private static final int SAMPLE_RATE = 1000;
+
+    @Test
+    public void gain_risesFromSilenceToFullVolume() throws Exception {
+        for (int curve : new int[]{GainEnvelope.CURVE_LINEAR, GainEnvelope.CURVE_PERCEPTUAL}) {
+            GainEnvelope envelope = new GainEnvelope(10, SAMPLE_RATE, curve);
+            assertEquals(0f, envelope.gainAt(0), 1e-6f);
+            assertEquals(1f, envelope.gainAt(10 * SAMPLE_RATE), 1e-6f);
+            assertEquals(1f, envelope.gainAt(20 * SAMPLE_RATE), 1e-6f);
+        }
+    }
+
+    @Test
+    public void gain_isMonotonic() throws Exception {
+        for (int curve : new int[]{GainEnvelope.CURVE_LINEAR, GainEnvelope.CURVE_PERCEPTUAL}) {
+            GainEnvelope envelope = new GainEnvelope(3, SAMPLE_RATE, curve);
+            float previous = -1f;
+            for (int frame = 0; frame <= 3 * SAMPLE_RATE; frame++) {
+                float gain = envelope.gainAt(frame);
+                assertTrue(gain >= previous);
+                assertTrue(gain <= 1f);
+                previous = gain;
+            }
+        }
+    }
+
+    @Test
+    public void perceptual_isQuieterThanLinearUntilTheEnd() throws Exception {
+        GainEnvelope linear = new GainEnvelope(10, SAMPLE_RATE, GainEnvelope.CURVE_LINEAR);
+        GainEnvelope perceptual = new GainEnvelope(10, SAMPLE_RATE, GainEnvelope.CURVE_PERCEPTUAL);
+
+        // Halfway through, 20 dB below full volume instead of 6 dB
+        assertEquals(0.5f, linear.gainAt(5 * SAMPLE_RATE), 1e-6f);
+        assertEquals(0.1f, perceptual.gainAt(5 * SAMPLE_RATE), 0.01f);
+    }
+
+    @Test
+    public void apply_scalesEveryChannelAndAdvances() throws Exception {
+        GainEnvelope envelope = new GainEnvelope(1, 4, GainEnvelope.CURVE_LINEAR);
+        short[] samples = new short[8];
+        Arrays.fill(samples, (short) 1000);
+
+        envelope.apply(samples, 2, 2);
+
+        assertArrayEquals(new short[]{0, 0, 250, 250, 1000, 1000, 1000, 1000}, samples);
+        assertEquals(0.5f, envelope.getProgress(), 1e-6f);
+        assertEquals(0.5f, envelope.getGain(), 1e-6f);
+        assertFalse(envelope.isDone());
+    }
+
+    @Test
+    public void apply_inChunks_followsTheCurve() throws Exception {
+        int frames = 2 * SAMPLE_RATE;
+        GainEnvelope curve = new GainEnvelope(2, SAMPLE_RATE, GainEnvelope.CURVE_PERCEPTUAL);
+        GainEnvelope envelope = new GainEnvelope(2, SAMPLE_RATE, GainEnvelope.CURVE_PERCEPTUAL);
+
+        short[] chunk = new short[64];
+        for (int offset = 0; offset < frames; offset += chunk.length) {
+            int length = Math.min(chunk.length, frames - offset);
+            Arrays.fill(chunk, Short.MAX_VALUE);
+            envelope.apply(chunk, length, 1);
+
+            // Ramps between buffer boundaries stay close to the curve
+            for (int i = 0; i < length; i++) {
+                assertEquals(curve.gainAt(offset + i) * Short.MAX_VALUE, chunk[i], Short.MAX_VALUE * 0.01);
+            }
+        }
+        assertTrue(envelope.isDone());
+    }
+
+    @Test
+    public void apply_afterCrescendo_leavesSamplesUntouched() throws Exception {
+        GainEnvelope envelope = new GainEnvelope(1, 4, GainEnvelope.CURVE_LINEAR);
+        envelope.apply(new short[4], 4, 1);
+        assertTrue(envelope.isDone());
+
+        short[] samples = {1000, -1000, Short.MAX_VALUE, Short.MIN_VALUE};
+        envelope.apply(samples, 4, 1);
+        assertArrayEquals(new short[]{1000, -1000, Short.MAX_VALUE, Short.MIN_VALUE}, samples);
+        assertEquals(1f, envelope.getProgress(), 1e-6f);
+    }
+
+    @Test
+    public void zeroDuration_isFullVolumeAtOnce() throws Exception {
+        GainEnvelope envelope = new GainEnvelope(0, SAMPLE_RATE, GainEnvelope.CURVE_PERCEPTUAL);
+        assertTrue(envelope.isDone());
+        assertEquals(1f, envelope.getGain(), 1e-6f);
+        assertEquals(1f, envelope.getProgress(), 1e-6f);
+    }
+
+    @Test
+    public void progressAt_isInverseOfCurve() throws Exception {
+        int rate = 1000;
+        for (int curve : new int[] {GainEnvelope.CURVE_LINEAR, GainEnvelope.CURVE_PERCEPTUAL}) {
+            GainEnvelope envelope = new GainEnvelope(10, rate, curve);
+            for (float gain = 0.1f; gain < 1f; gain += 0.2f) {
+                float progress = GainEnvelope.progressAt(gain, curve);
+                assertEquals(gain, envelope.gainAt((long) (progress * 10 * rate)), 0.01f);
+            }
+            assertEquals(0f, GainEnvelope.progressAt(0f, curve), 0f);
+            assertEquals(1f, GainEnvelope.progressAt(1f, curve), 0f);
+        }
+    }
+}
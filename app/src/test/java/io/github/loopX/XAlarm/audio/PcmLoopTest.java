@@ -0,0 +1,150 @@
+package io.github.loopX.XAlarm.audio;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class PcmLoopTest {
+
+    private static final int THRESHOLD = PcmLoopBuilder.DEFAULT_SILENCE_THRESHOLD;
+
+    @Test
+    public void build_trimsLeadingAndTrailingSilence() throws Exception {
+        PcmLoopBuilder builder = new PcmLoopBuilder(1, 8000, THRESHOLD);
+        short[] pcm = {0, 3, -5, 1000, -2000, 0, 300, 10, -10, 0};
+        builder.append(pcm, 0, pcm.length);
+
+        PcmLoop loop = builder.build();
+        assertEquals(4, loop.getFrameCount());
+        assertArrayEquals(new short[]{1000, -2000, 0, 300}, readAll(loop));
+    }
+
+    @Test
+    public void build_keepsFrameAudibleOnOneChannelOnly() throws Exception {
+        PcmLoopBuilder builder = new PcmLoopBuilder(2, 8000, THRESHOLD);
+        short[] pcm = {0, 0, 0, 500, 1, 1, -700, 0, 0, 0};
+        builder.append(pcm, 0, pcm.length);
+
+        PcmLoop loop = builder.build();
+        assertEquals(3, loop.getFrameCount());
+        assertArrayEquals(new short[]{0, 500, 1, 1, -700, 0}, readAll(loop));
+    }
+
+    @Test
+    public void append_acrossChunks_sameAsOneChunk() throws Exception {
+        short[] pcm = syntheticTone(5000, 2);
+
+        PcmLoopBuilder whole = new PcmLoopBuilder(2, 44100, THRESHOLD);
+        whole.append(pcm, 0, pcm.length);
+
+        PcmLoopBuilder chunked = new PcmLoopBuilder(2, 44100, THRESHOLD);
+        int offset = 0;
+        int chunk = 6;
+        while (offset < pcm.length) {
+            int length = Math.min(chunk, pcm.length - offset);
+            chunked.append(pcm, offset, length);
+            offset += length;
+            chunk = chunk * 3 % 1000 + 2;
+        }
+
+        assertArrayEquals(readAll(whole.build()), readAll(chunked.build()));
+    }
+
+    @Test
+    public void skipFrames_dropsEncoderDelayEvenIfAudible() throws Exception {
+        PcmLoopBuilder builder = new PcmLoopBuilder(1, 8000, THRESHOLD);
+        builder.skipFrames(3);
+        builder.append(new short[]{900, 900}, 0, 2);
+        builder.append(new short[]{900, 100, 200}, 0, 3);
+
+        assertArrayEquals(new short[]{100, 200}, readAll(builder.build()));
+    }
+
+    @Test
+    public void audibleFrameCount_neverCoversTrailingSilence() throws Exception {
+        PcmLoopBuilder builder = new PcmLoopBuilder(1, 8000, THRESHOLD);
+        builder.append(new short[]{0, 0, 400, 400}, 0, 4);
+        assertEquals(2, builder.getAudibleFrameCount());
+
+        builder.append(new short[]{0, 0, 0}, 0, 3);
+        assertEquals(2, builder.getAudibleFrameCount());
+
+        builder.append(new short[]{0, -400}, 0, 2);
+        assertEquals(7, builder.getAudibleFrameCount());
+        assertEquals(7, builder.build().getFrameCount());
+    }
+
+    @Test
+    public void build_onlySilence_returnsNull() throws Exception {
+        PcmLoopBuilder builder = new PcmLoopBuilder(2, 8000, THRESHOLD);
+        builder.append(new short[]{0, 1, -THRESHOLD, THRESHOLD}, 0, 4);
+        assertNull(builder.build());
+    }
+
+    @Test
+    public void build_capsLoopLength() throws Exception {
+        int sampleRate = 100;
+        PcmLoopBuilder builder = new PcmLoopBuilder(1, sampleRate, THRESHOLD);
+        short[] pcm = new short[sampleRate];
+        Arrays.fill(pcm, (short) 1000);
+        for (int i = 0; i < PcmLoopBuilder.MAX_LOOP_SECONDS + 5; i++) {
+            builder.append(pcm, 0, pcm.length);
+        }
+
+        assertEquals(sampleRate * PcmLoopBuilder.MAX_LOOP_SECONDS, builder.build().getFrameCount());
+    }
+
+    @Test
+    public void read_wrapsAroundWithoutGap() throws Exception {
+        PcmLoopBuilder builder = new PcmLoopBuilder(2, 8000, THRESHOLD);
+        short[] pcm = {100, -100, 200, -200, 300, -300};
+        builder.append(pcm, 0, pcm.length);
+        PcmLoop loop = builder.build();
+
+        short[] out = new short[10];
+        int position = loop.read(2, out, 5);
+
+        assertArrayEquals(new short[]{300, -300, 100, -100, 200, -200, 300, -300, 100, -100}, out);
+        assertEquals(1, position);
+    }
+
+    @Test
+    public void read_inChunks_matchesContinuousLoop() throws Exception {
+        short[] pcm = syntheticTone(777, 1);
+        PcmLoopBuilder builder = new PcmLoopBuilder(1, 44100, THRESHOLD);
+        builder.append(pcm, 0, pcm.length);
+        PcmLoop loop = builder.build();
+        short[] once = readAll(loop);
+
+        short[] chunk = new short[256];
+        int position = 0;
+        for (int read = 0; read < once.length * 5; read += chunk.length) {
+            position = loop.read(position, chunk, chunk.length);
+            for (int i = 0; i < chunk.length; i++) {
+                assertEquals(once[(read + i) % once.length], chunk[i]);
+            }
+        }
+    }
+
+    private static short[] readAll(PcmLoop loop) {
+        short[] out = new short[loop.getFrameCount() * loop.getChannelCount()];
+        loop.read(0, out, loop.getFrameCount());
+        return out;
+    }
+
+    /**
+     * Silence, a sine burst, then silence again
+     */
+    private static short[] syntheticTone(int frames, int channels) {
+        short[] pcm = new short[frames * channels];
+        for (int frame = frames / 10; frame < frames * 8 / 10; frame++) {
+            short value = (short) (Math.sin(frame * 0.05) * 12000 + 1000);
+            for (int channel = 0; channel < channels; channel++) {
+                pcm[frame * channels + channel] = value;
+            }
+        }
+        return pcm;
+    }
+}
@@ -0,0 +1,117 @@
+package io.github.loopX.XAlarm.history;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HistoryLogTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void appendedRecords_areScannedInOrder() throws Exception {
+        File dir = tempFolder.getRoot();
+        HistoryLog log = new HistoryLog(dir, 16, 4);
+        log.append(record(1, HistoryRecord.TYPE_FIRED));
+        log.append(new HistoryRecord(2, HistoryRecord.TYPE_SNOOZED, 7, 3, 2, 45000000L));
+
+        List<HistoryRecord> records = scan(log);
+        assertEquals(2, records.size());
+        assertEquals(HistoryRecord.TYPE_FIRED, records.get(0).type);
+
+        HistoryRecord snoozed = records.get(1);
+        assertEquals(2, snoozed.time);
+        assertEquals(HistoryRecord.TYPE_SNOOZED, snoozed.type);
+        assertEquals(7, snoozed.alarmId);
+        assertEquals(3, snoozed.unlockType);
+        assertEquals(2, snoozed.count);
+        assertEquals(45000000L, snoozed.durationMicros);
+    }
+
+    @Test
+    public void reopenedLog_appendsAfterLastRecord() throws Exception {
+        File dir = tempFolder.getRoot();
+        HistoryLog log = new HistoryLog(dir, 16, 4);
+        for (int i = 0; i < 5; i++) {
+            log.append(record(i, HistoryRecord.TYPE_FIRED));
+        }
+        log.flush();
+
+        HistoryLog reopened = new HistoryLog(dir, 16, 4);
+        reopened.append(record(5, HistoryRecord.TYPE_DISMISSED));
+
+        List<HistoryRecord> records = scan(reopened);
+        assertEquals(6, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i, records.get(i).time);
+        }
+        assertEquals(HistoryRecord.TYPE_DISMISSED, records.get(5).type);
+    }
+
+    @Test
+    public void fullSegment_rollsOver_andOldestSegmentsAreDropped() throws Exception {
+        File dir = tempFolder.getRoot();
+        HistoryLog log = new HistoryLog(dir, 4, 3);
+        for (int i = 0; i < 14; i++) {
+            log.append(record(i, HistoryRecord.TYPE_FIRED));
+        }
+
+        assertEquals(3, log.getSegmentCount());
+
+        // Segments of records 4..7, 8..11 and 12..13 are left
+        List<HistoryRecord> records = scan(log);
+        assertEquals(10, records.size());
+        assertEquals(4, records.get(0).time);
+        assertEquals(13, records.get(9).time);
+    }
+
+    @Test
+    public void reopenedFullSegment_rollsOnNextAppend() throws Exception {
+        File dir = tempFolder.getRoot();
+        HistoryLog log = new HistoryLog(dir, 2, 4);
+        log.append(record(0, HistoryRecord.TYPE_FIRED));
+        log.append(record(1, HistoryRecord.TYPE_FIRED));
+
+        HistoryLog reopened = new HistoryLog(dir, 2, 4);
+        reopened.append(record(2, HistoryRecord.TYPE_FIRED));
+
+        assertEquals(2, reopened.getSegmentCount());
+        assertEquals(3, scan(reopened).size());
+    }
+
+    @Test
+    public void foreignFile_isSkipped() throws Exception {
+        File dir = tempFolder.getRoot();
+        assertTrue(new File(dir, "history-0.log").createNewFile());
+
+        HistoryLog log = new HistoryLog(dir, 4, 4);
+        log.append(record(1, HistoryRecord.TYPE_UNLOCKED));
+
+        List<HistoryRecord> records = scan(log);
+        assertEquals(1, records.size());
+        assertEquals(HistoryRecord.TYPE_UNLOCKED, records.get(0).type);
+    }
+
+    private static HistoryRecord record(long time, int type) {
+        return new HistoryRecord(time, type, 1, HistoryRecord.NO_UNLOCK_TYPE, 0, 0);
+    }
+
+    private static List<HistoryRecord> scan(HistoryLog log) throws IOException {
+        final List<HistoryRecord> records = new ArrayList<>();
+        log.scan(new HistoryLog.Visitor() {
+            @Override
+            public void visit(HistoryRecord record) {
+                records.add(record);
+            }
+        });
+        return records;
+    }
+}
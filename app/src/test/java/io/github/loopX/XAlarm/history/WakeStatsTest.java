@@ -0,0 +1,142 @@
+package io.github.loopX.XAlarm.history;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class WakeStatsTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private static final long DAY = 24 * 60 * 60 * 1000;
+    private static final long SEVEN_AM = 1000 * DAY + 7 * 60 * 60 * 1000;
+
+    @Test
+    public void summaries_keepCountMeanAndStdDev() throws Exception {
+        WakeStats stats = new WakeStats(UTC);
+        stats.add(dismissed(SEVEN_AM, 10000));
+        stats.add(dismissed(SEVEN_AM + DAY, 30000));
+
+        WakeStats.Summary dismissTime = stats.getDismissTime();
+        assertEquals(2, dismissTime.getCount());
+        assertEquals(20000, dismissTime.getMean(), 0.001);
+        assertEquals(10000, dismissTime.getStdDev(), 0.001);
+    }
+
+    @Test
+    public void solveTimes_areKeptPerUnlockType() throws Exception {
+        WakeStats stats = new WakeStats(UTC);
+        stats.add(new HistoryRecord(SEVEN_AM, HistoryRecord.TYPE_UNLOCKED, 1, 2, 0, 4000000L));
+        stats.add(new HistoryRecord(SEVEN_AM, HistoryRecord.TYPE_UNLOCKED, 1, 2, 0, 6000000L));
+        stats.add(new HistoryRecord(SEVEN_AM, HistoryRecord.TYPE_UNLOCKED, 1, 0, 0, 1000000L));
+        stats.add(new HistoryRecord(SEVEN_AM, HistoryRecord.TYPE_UNLOCKED, 1, 99, 0, 1000000L));
+
+        assertEquals(2, stats.getSolveTime(2).getCount());
+        assertEquals(5000, stats.getSolveTime(2).getMean(), 0.001);
+        assertEquals(1, stats.getSolveTime(0).getCount());
+        assertEquals(0, stats.getSolveTime(99).getCount());
+    }
+
+    @Test
+    public void firesAndSnoozes_areCounted() throws Exception {
+        WakeStats stats = new WakeStats(UTC);
+        stats.add(new HistoryRecord(SEVEN_AM, HistoryRecord.TYPE_FIRED, 1, -1, 0, 0));
+        stats.add(snoozed(SEVEN_AM + 1000));
+        stats.add(snoozed(SEVEN_AM + 2000));
+
+        assertEquals(1, stats.getFires());
+        assertEquals(2, stats.getSnoozes());
+    }
+
+    @Test
+    public void streak_countsDaysInARow() throws Exception {
+        WakeStats stats = new WakeStats(UTC);
+        stats.add(dismissed(SEVEN_AM, 0));
+        stats.add(dismissed(SEVEN_AM + 60000, 0));
+        stats.add(dismissed(SEVEN_AM + DAY, 0));
+        stats.add(dismissed(SEVEN_AM + 2 * DAY, 0));
+
+        assertEquals(3, stats.getCurrentStreak(SEVEN_AM + 2 * DAY));
+        assertEquals(3, stats.getCurrentStreak(SEVEN_AM + 3 * DAY));
+        assertEquals(0, stats.getCurrentStreak(SEVEN_AM + 4 * DAY));
+        assertEquals(3, stats.getBestStreak());
+
+        // A skipped day starts over
+        stats.add(dismissed(SEVEN_AM + 5 * DAY, 0));
+        assertEquals(1, stats.getCurrentStreak(SEVEN_AM + 5 * DAY));
+        assertEquals(3, stats.getBestStreak());
+    }
+
+    @Test
+    public void snoozedDay_breaksStreak() throws Exception {
+        WakeStats stats = new WakeStats(UTC);
+        stats.add(dismissed(SEVEN_AM, 0));
+        stats.add(snoozed(SEVEN_AM + DAY));
+        stats.add(dismissed(SEVEN_AM + DAY + 600000, 0));
+
+        assertEquals(0, stats.getCurrentStreak(SEVEN_AM + DAY));
+        assertEquals(1, stats.getBestStreak());
+
+        stats.add(dismissed(SEVEN_AM + 2 * DAY, 0));
+        assertEquals(1, stats.getCurrentStreak(SEVEN_AM + 2 * DAY));
+    }
+
+    @Test
+    public void streakDays_followTimeZone() throws Exception {
+        WakeStats stats = new WakeStats(TimeZone.getTimeZone("GMT+08:00"));
+        // 23:00 and 01:00 UTC are 07:00 and 09:00 of the same day in GMT+8
+        long elevenPm = 1000 * DAY + 23 * 60 * 60 * 1000;
+        stats.add(dismissed(elevenPm, 0));
+        stats.add(dismissed(elevenPm + 2 * 60 * 60 * 1000, 0));
+
+        assertEquals(1, stats.getBestStreak());
+    }
+
+    @Test
+    public void writeAndRead_keepEverySummary() throws Exception {
+        WakeStats stats = new WakeStats(UTC);
+        stats.add(dismissed(SEVEN_AM, 12000));
+        stats.add(snoozed(SEVEN_AM + DAY));
+        stats.add(new HistoryRecord(SEVEN_AM, HistoryRecord.TYPE_UNLOCKED, 1, 3, 0, 2000000L));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        stats.write(new DataOutputStream(bytes));
+        WakeStats read = WakeStats.read(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), UTC);
+
+        assertEquals(1, read.getSnoozes());
+        assertEquals(12000, read.getDismissTime().getMean(), 0.001);
+        assertEquals(2000, read.getSolveTime(3).getMean(), 0.001);
+        assertEquals(1, read.getBestStreak());
+
+        // Streak state goes on after reading
+        read.add(dismissed(SEVEN_AM + DAY + 60000, 0));
+        assertEquals(0, read.getCurrentStreak(SEVEN_AM + DAY));
+    }
+
+    @Test
+    public void copy_isIndependent() throws Exception {
+        WakeStats stats = new WakeStats(UTC);
+        stats.add(dismissed(SEVEN_AM, 1000));
+
+        WakeStats copy = stats.copy();
+        stats.add(dismissed(SEVEN_AM + DAY, 1000));
+
+        assertEquals(1, copy.getDismissTime().getCount());
+        assertEquals(2, stats.getDismissTime().getCount());
+    }
+
+    private static HistoryRecord dismissed(long time, long ringingMillis) {
+        return new HistoryRecord(time, HistoryRecord.TYPE_DISMISSED, 1, 0, 0, ringingMillis * 1000);
+    }
+
+    private static HistoryRecord snoozed(long time) {
+        return new HistoryRecord(time, HistoryRecord.TYPE_SNOOZED, 1, 0, 1, 0);
+    }
+}
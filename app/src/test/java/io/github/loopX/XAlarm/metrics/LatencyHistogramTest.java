@@ -0,0 +1,58 @@
+package io.github.loopX.XAlarm.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValues_haveExactBuckets() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i, LatencyHistogram.bucketIndex(i));
+            assertEquals(i, LatencyHistogram.bucketLowerBound(i));
+        }
+    }
+
+    @Test
+    public void bucketBounds_containTheirValues() throws Exception {
+        long[] values = {8, 9, 15, 16, 17, 100, 1000, 12345, 999999, 1L << 40};
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(LatencyHistogram.bucketLowerBound(index) <= value);
+            assertTrue(LatencyHistogram.bucketUpperBound(index) >= value);
+        }
+    }
+
+    @Test
+    public void bucketIndex_isMonotonic() throws Exception {
+        int last = 0;
+        for (long value = 0; value < 100000; value++) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(index >= last);
+            last = index;
+        }
+    }
+
+    @Test
+    public void hugeValues_goToLastBucket() throws Exception {
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void record_updatesSummary() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050 * 1000, histogram.getSum());
+        assertEquals(100000, histogram.getMax());
+
+        // Buckets are at most 12.5% wide
+        long p50 = histogram.getPercentile(50);
+        assertTrue(p50 >= 50000 && p50 <= 50000 * 1.125);
+        assertEquals(100000, histogram.getPercentile(100));
+    }
+}
@@ -0,0 +1,145 @@
+package io.github.loopX.XAlarm.module.Alarm;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FireLedgerTest {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long SEVEN_AM = 1000 * MINUTE;
+    private static final long GRACE = 30 * MINUTE;
+
+    @Test
+    public void armedFire_notRung_isMissed() throws Exception {
+        FireLedger ledger = new FireLedger();
+        ledger.arm(1, 1, SEVEN_AM, 0);
+
+        assertTrue(ledger.findMissed(SEVEN_AM - MINUTE, GRACE).isEmpty());
+
+        List<FireLedger.Record> missed = ledger.findMissed(SEVEN_AM + 5 * MINUTE, GRACE);
+        assertEquals(1, missed.size());
+        assertEquals(1, missed.get(0).alarmId);
+        assertEquals(SEVEN_AM, missed.get(0).scheduledTime);
+    }
+
+    @Test
+    public void missedFire_pastGrace_isNotReturned() throws Exception {
+        FireLedger ledger = new FireLedger();
+        ledger.arm(1, 1, SEVEN_AM, 0);
+
+        assertTrue(ledger.findMissed(SEVEN_AM + GRACE + MINUTE, GRACE).isEmpty());
+    }
+
+    @Test
+    public void rungFire_isNotMissed_andRefireIsRejected() throws Exception {
+        FireLedger ledger = new FireLedger();
+        ledger.arm(1, 1, SEVEN_AM, 0);
+
+        assertNotNull(ledger.fire(1, SEVEN_AM, SEVEN_AM + 1000));
+        assertTrue(ledger.hasFired(1, SEVEN_AM));
+        assertNull(ledger.fire(1, SEVEN_AM, SEVEN_AM + 2000));
+        assertTrue(ledger.findMissed(SEVEN_AM + MINUTE, GRACE).isEmpty());
+    }
+
+    @Test
+    public void disarmedOrRearmedFire_isNotMissed() throws Exception {
+        FireLedger ledger = new FireLedger();
+        ledger.arm(1, 1, SEVEN_AM, 0);
+        ledger.arm(2, 2, SEVEN_AM + MINUTE, 0);
+
+        assertNotNull(ledger.disarm(1, 0));
+        assertNull(ledger.disarm(1, 0));
+        // Same request code, the earlier fire is superseded
+        ledger.arm(2, 2, SEVEN_AM + 24 * 60 * MINUTE, 0);
+
+        assertTrue(ledger.findMissed(SEVEN_AM + 5 * MINUTE, GRACE).isEmpty());
+    }
+
+    @Test
+    public void snoozeAndRegularFires_areArmedSeparately() throws Exception {
+        FireLedger ledger = new FireLedger();
+        ledger.arm(3, 3, SEVEN_AM + 24 * 60 * MINUTE, 0);
+        ledger.arm(-3, 3, SEVEN_AM + 10 * MINUTE, 0);
+
+        List<FireLedger.Record> missed = ledger.findMissed(SEVEN_AM + 15 * MINUTE, GRACE);
+        assertEquals(1, missed.size());
+        assertEquals(SEVEN_AM + 10 * MINUTE, missed.get(0).scheduledTime);
+    }
+
+    @Test
+    public void missedFires_areReturnedOldestFirst() throws Exception {
+        FireLedger ledger = new FireLedger();
+        ledger.arm(2, 2, SEVEN_AM + 2 * MINUTE, 0);
+        ledger.arm(3, 3, SEVEN_AM + 3 * MINUTE, 0);
+        ledger.arm(1, 1, SEVEN_AM, 0);
+
+        List<FireLedger.Record> missed = ledger.findMissed(SEVEN_AM + 10 * MINUTE, GRACE);
+        assertEquals(3, missed.size());
+        assertEquals(1, missed.get(0).alarmId);
+        assertEquals(2, missed.get(1).alarmId);
+        assertEquals(3, missed.get(2).alarmId);
+    }
+
+    @Test
+    public void replayedEvents_rebuildTheLedger() throws Exception {
+        FireLedger original = new FireLedger();
+        FireLedger.Event[] events = {
+                original.arm(1, 1, SEVEN_AM, 0),
+                original.arm(2, 2, SEVEN_AM, 0),
+                original.fire(1, SEVEN_AM, SEVEN_AM),
+                original.disarm(1, SEVEN_AM),
+        };
+
+        FireLedger loaded = new FireLedger();
+        for (FireLedger.Event event : events) {
+            loaded.replay(event);
+        }
+
+        assertNull(loaded.fire(1, SEVEN_AM, SEVEN_AM + MINUTE));
+        List<FireLedger.Record> missed = loaded.findMissed(SEVEN_AM + MINUTE, GRACE);
+        assertEquals(1, missed.size());
+        assertEquals(2, missed.get(0).alarmId);
+    }
+
+    @Test
+    public void prune_forgetsOldFires() throws Exception {
+        FireLedger ledger = new FireLedger();
+        ledger.arm(1, 1, SEVEN_AM, 0);
+        ledger.arm(2, 2, SEVEN_AM + 60 * MINUTE, 0);
+
+        ledger.prune(SEVEN_AM + MINUTE);
+
+        assertEquals(1, ledger.size());
+        assertNull(ledger.disarm(1, 0));
+        assertNotNull(ledger.disarm(2, 0));
+    }
+
+    @Test
+    public void fire_withoutArmedRecord_isRecorded() throws Exception {
+        FireLedger ledger = new FireLedger();
+
+        assertNotNull(ledger.fire(5, SEVEN_AM, SEVEN_AM));
+        assertNull(ledger.fire(5, SEVEN_AM, SEVEN_AM));
+    }
+
+    @Test
+    public void findNextArmed_skipsRungAndDisarmedFires() throws Exception {
+        FireLedger ledger = new FireLedger();
+        ledger.arm(1, 1, SEVEN_AM, 0);
+        ledger.arm(2, 2, SEVEN_AM + MINUTE, 0);
+        ledger.arm(-2, 2, SEVEN_AM + 2 * MINUTE, 0);
+
+        assertEquals(SEVEN_AM, ledger.findNextArmed(0).scheduledTime);
+
+        ledger.fire(1, SEVEN_AM, SEVEN_AM);
+        ledger.disarm(2, SEVEN_AM);
+        FireLedger.Record next = ledger.findNextArmed(SEVEN_AM);
+        assertEquals(2, next.alarmId);
+        assertEquals(SEVEN_AM + 2 * MINUTE, next.scheduledTime);
+
+        assertNull(ledger.findNextArmed(SEVEN_AM + 3 * MINUTE));
+    }
+}
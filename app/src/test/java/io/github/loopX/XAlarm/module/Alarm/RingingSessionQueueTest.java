@@ -0,0 +1,98 @@
+package io.github.loopX.XAlarm.module.Alarm;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class RingingSessionQueueTest {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long SEVEN_AM = 1000 * MINUTE;
+
+    @Test
+    public void firstAlarm_startsSession() throws Exception {
+        RingingSessionQueue queue = new RingingSessionQueue();
+
+        assertEquals(RingingSessionQueue.RESULT_STARTED, queue.offer(1, SEVEN_AM));
+        assertEquals(1, queue.getCurrent().getPrimaryAlarmId());
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void sameMinute_isCoalescedIntoRingingSession() throws Exception {
+        RingingSessionQueue queue = new RingingSessionQueue();
+        queue.offer(1, SEVEN_AM);
+
+        assertEquals(RingingSessionQueue.RESULT_COALESCED, queue.offer(2, SEVEN_AM + 30 * 1000));
+        assertEquals(Arrays.asList(1, 2), queue.getCurrent().getAlarmIds());
+        assertNull(queue.completeCurrent());
+        assertNull(queue.getCurrent());
+    }
+
+    @Test
+    public void otherMinute_waitsForDismissal() throws Exception {
+        RingingSessionQueue queue = new RingingSessionQueue();
+        queue.offer(1, SEVEN_AM);
+
+        assertEquals(RingingSessionQueue.RESULT_QUEUED, queue.offer(2, SEVEN_AM + MINUTE));
+        assertEquals(Arrays.asList(1), queue.getCurrent().getAlarmIds());
+
+        RingingSessionQueue.Session next = queue.completeCurrent();
+        assertEquals(Arrays.asList(2), next.getAlarmIds());
+        assertSame(next, queue.getCurrent());
+    }
+
+    @Test
+    public void waitingAlarms_ringByScheduledTimeAndCoalesce() throws Exception {
+        RingingSessionQueue queue = new RingingSessionQueue();
+        queue.offer(1, SEVEN_AM);
+        queue.offer(4, SEVEN_AM + 3 * MINUTE);
+        queue.offer(2, SEVEN_AM + 2 * MINUTE + 10 * 1000);
+        queue.offer(3, SEVEN_AM + 2 * MINUTE);
+        assertEquals(3, queue.getPendingCount());
+
+        assertEquals(Arrays.asList(3, 2), queue.completeCurrent().getAlarmIds());
+        assertEquals(Arrays.asList(4), queue.completeCurrent().getAlarmIds());
+        assertNull(queue.completeCurrent());
+    }
+
+    @Test
+    public void sameScheduledTime_ringsInArrivalOrder() throws Exception {
+        RingingSessionQueue queue = new RingingSessionQueue();
+        queue.offer(9, SEVEN_AM);
+        queue.offer(5, SEVEN_AM + MINUTE);
+        queue.offer(7, SEVEN_AM + MINUTE);
+
+        assertEquals(5, queue.completeCurrent().getPrimaryAlarmId());
+    }
+
+    @Test
+    public void refire_ofRingingOrWaitingAlarm_isIgnored() throws Exception {
+        RingingSessionQueue queue = new RingingSessionQueue();
+        queue.offer(1, SEVEN_AM);
+        queue.offer(2, SEVEN_AM + MINUTE);
+
+        assertEquals(RingingSessionQueue.RESULT_DUPLICATE, queue.offer(1, SEVEN_AM));
+        assertEquals(RingingSessionQueue.RESULT_DUPLICATE, queue.offer(2, SEVEN_AM + 5 * MINUTE));
+        assertEquals(1, queue.getPendingCount());
+
+        assertEquals(Arrays.asList(2), queue.completeCurrent().getAlarmIds());
+        assertNull(queue.completeCurrent());
+    }
+
+    @Test
+    public void afterDismissal_sameAlarmCanRingAgain() throws Exception {
+        RingingSessionQueue queue = new RingingSessionQueue();
+        queue.offer(1, SEVEN_AM);
+        queue.completeCurrent();
+
+        assertEquals(RingingSessionQueue.RESULT_STARTED, queue.offer(1, SEVEN_AM + 24 * 60 * MINUTE));
+    }
+
+    @Test
+    public void completeCurrent_withoutSession_returnsNull() throws Exception {
+        assertNull(new RingingSessionQueue().completeCurrent());
+    }
+}
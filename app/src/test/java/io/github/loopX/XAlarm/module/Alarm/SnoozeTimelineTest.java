@@ -0,0 +1,63 @@
+package io.github.loopX.XAlarm.module.Alarm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SnoozeTimelineTest {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long SEVEN_AM = 1000 * MINUTE;
+
+    @Test
+    public void snooze_ringsAgainAfterInterval() throws Exception {
+        SnoozeTimeline timeline = new SnoozeTimeline();
+
+        SnoozeTimeline.Entry entry = timeline.snooze(1, SEVEN_AM, 10, 3);
+        assertEquals(SEVEN_AM + 10 * MINUTE, entry.fireTime);
+        assertEquals(1, entry.count);
+        assertSame(entry, timeline.get(1));
+    }
+
+    @Test
+    public void snooze_countsUpToMax() throws Exception {
+        SnoozeTimeline timeline = new SnoozeTimeline();
+
+        assertEquals(1, timeline.snooze(1, SEVEN_AM, 5, 2).count);
+        assertEquals(2, timeline.snooze(1, SEVEN_AM + 5 * MINUTE, 5, 2).count);
+        assertFalse(timeline.canSnooze(1, 5, 2));
+        assertNull(timeline.snooze(1, SEVEN_AM + 10 * MINUTE, 5, 2));
+        assertEquals(SEVEN_AM + 10 * MINUTE, timeline.get(1).fireTime);
+    }
+
+    @Test
+    public void snoozeOff_cannotSnooze() throws Exception {
+        SnoozeTimeline timeline = new SnoozeTimeline();
+
+        assertFalse(timeline.canSnooze(1, 0, 3));
+        assertNull(timeline.snooze(1, SEVEN_AM, 0, 3));
+        assertNull(timeline.get(1));
+    }
+
+    @Test
+    public void clear_resetsCount() throws Exception {
+        SnoozeTimeline timeline = new SnoozeTimeline();
+        timeline.snooze(1, SEVEN_AM, 5, 1);
+        timeline.snooze(2, SEVEN_AM, 5, 1);
+
+        assertTrue(timeline.clear(1));
+        assertFalse(timeline.clear(1));
+        assertEquals(0, timeline.getCount(1));
+        assertTrue(timeline.canSnooze(1, 5, 1));
+        assertEquals(1, timeline.getEntries().size());
+    }
+
+    @Test
+    public void restore_keepsCount() throws Exception {
+        SnoozeTimeline timeline = new SnoozeTimeline();
+        timeline.restore(new SnoozeTimeline.Entry(4, SEVEN_AM, 2));
+
+        assertEquals(3, timeline.snooze(4, SEVEN_AM + MINUTE, 5, 3).count);
+        assertFalse(timeline.canSnooze(4, 5, 3));
+    }
+}
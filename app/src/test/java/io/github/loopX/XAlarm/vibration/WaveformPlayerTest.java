@@ -0,0 +1,171 @@
+package io.github.loopX.XAlarm.vibration;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.loopX.XAlarm.audio.GainEnvelope;
+
+import static org.junit.Assert.*;
+
+public class WaveformPlayerTest {
+
+    private static final Waveform PULSE = WaveformLibrary.get(WaveformLibrary.PULSE);
+
+    @Test
+    public void compile_fullLevel_isThePattern() throws Exception {
+        assertArrayEquals(new long[]{0, 200, 500}, PULSE.getTimings(Waveform.LEVELS - 1));
+        assertEquals(0, PULSE.getRepeat());
+        assertEquals(-1, WaveformLibrary.BUZZ.getRepeat());
+    }
+
+    @Test
+    public void compile_lowerLevels_narrowPulsesAndKeepThePeriod() throws Exception {
+        Waveform waveform = Waveform.compile(0, true, 200, 100, 100, 100, 300, 0);
+        assertArrayEquals(new long[]{0, 50, 150, 25, 375}, waveform.getTimings(0));
+        assertArrayEquals(new long[]{0, 200, 0, 100, 300}, waveform.getTimings(Waveform.LEVELS - 1));
+
+        for (int level = 0; level < Waveform.LEVELS; level++) {
+            long period = 0;
+            for (long timing : waveform.getTimings(level)) {
+                period += timing;
+            }
+            assertEquals(600, period);
+        }
+    }
+
+    @Test
+    public void compile_dropsPulsesTooShortForTheMotor() throws Exception {
+        Waveform waveform = Waveform.compile(0, true, 40, 100, 60, 0);
+        assertArrayEquals(new long[]{100}, waveform.getTimings(0));
+        assertArrayEquals(new long[]{0, 20, 80}, waveform.getTimings(1));
+    }
+
+    @Test
+    public void library_unknownId_isDefault() throws Exception {
+        assertSame(WaveformLibrary.get(WaveformLibrary.DEFAULT), WaveformLibrary.get(-1));
+        assertSame(WaveformLibrary.get(WaveformLibrary.DEFAULT), WaveformLibrary.get(WaveformLibrary.count()));
+        for (int id = 0; id < WaveformLibrary.count(); id++) {
+            assertEquals(id, WaveformLibrary.get(id).getId());
+        }
+    }
+
+    @Test
+    public void play_withoutCrescendo_startsAtFullStrength() throws Exception {
+        FakeVibrator vibrator = new FakeVibrator();
+        WaveformPlayer player = new WaveformPlayer(vibrator, vibrator);
+
+        player.play(PULSE, 0, GainEnvelope.CURVE_LINEAR);
+        assertEquals(Waveform.LEVELS - 1, player.getLevel());
+        assertSame(PULSE.getTimings(Waveform.LEVELS - 1), vibrator.timings);
+        assertNull(vibrator.task);
+    }
+
+    @Test
+    public void play_linearCrescendo_stepsUpEachQuarter() throws Exception {
+        FakeVibrator vibrator = new FakeVibrator();
+        WaveformPlayer player = new WaveformPlayer(vibrator, vibrator);
+
+        player.play(PULSE, 20, GainEnvelope.CURVE_LINEAR);
+        for (int level = 0; level < Waveform.LEVELS - 1; level++) {
+            assertEquals(level, player.getLevel());
+            assertSame(PULSE.getTimings(level), vibrator.timings);
+            assertEquals(5000, vibrator.delay);
+            vibrator.runTask();
+        }
+        assertEquals(Waveform.LEVELS - 1, player.getLevel());
+        assertNull(vibrator.task);
+    }
+
+    @Test
+    public void play_perceptualCrescendo_followsTheRingtoneGain() throws Exception {
+        FakeVibrator vibrator = new FakeVibrator();
+        WaveformPlayer player = new WaveformPlayer(vibrator, vibrator);
+        // One frame per millisecond
+        GainEnvelope envelope = new GainEnvelope(60, 1000, GainEnvelope.CURVE_PERCEPTUAL);
+
+        player.play(PULSE, 60, GainEnvelope.CURVE_PERCEPTUAL);
+        for (int level = 1; level < Waveform.LEVELS; level++) {
+            envelope.apply(new short[(int) vibrator.delay], (int) vibrator.delay, 1);
+            vibrator.runTask();
+            assertEquals(level, player.getLevel());
+            assertEquals(level / (float) Waveform.LEVELS, envelope.getGain(), 0.01f);
+        }
+    }
+
+    @Test
+    public void play_samePatternAgain_goesOn() throws Exception {
+        FakeVibrator vibrator = new FakeVibrator();
+        WaveformPlayer player = new WaveformPlayer(vibrator, vibrator);
+
+        player.play(PULSE, 20, GainEnvelope.CURVE_LINEAR);
+        vibrator.runTask();
+        player.play(PULSE, 20, GainEnvelope.CURVE_LINEAR);
+        assertEquals(1, player.getLevel());
+        assertEquals(2, vibrator.vibrations);
+    }
+
+    @Test
+    public void stop_cancelsVibrationAndLevelChanges() throws Exception {
+        FakeVibrator vibrator = new FakeVibrator();
+        WaveformPlayer player = new WaveformPlayer(vibrator, vibrator);
+
+        player.play(PULSE, 20, GainEnvelope.CURVE_LINEAR);
+        player.stop();
+        assertFalse(player.isPlaying());
+        assertEquals(-1, player.getLevel());
+        assertEquals(1, vibrator.cancels);
+        assertNull(vibrator.task);
+    }
+
+    @Test
+    public void buzz_isNotCutByStop() throws Exception {
+        FakeVibrator vibrator = new FakeVibrator();
+        WaveformPlayer player = new WaveformPlayer(vibrator, vibrator);
+
+        player.buzz(WaveformLibrary.BUZZ);
+        player.stop();
+        assertEquals(0, vibrator.cancels);
+        assertEquals(-1, vibrator.repeat);
+    }
+
+    private static class FakeVibrator implements WaveformPlayer.Driver, WaveformPlayer.Scheduler {
+        long[] timings;
+        int repeat;
+        int vibrations;
+        int cancels;
+        Runnable task;
+        long delay;
+
+        @Override
+        public void vibrate(long[] timings, int repeat) {
+            this.timings = timings;
+            this.repeat = repeat;
+            vibrations++;
+        }
+
+        @Override
+        public void cancel() {
+            cancels++;
+        }
+
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            assertNull(this.task);
+            this.task = task;
+            delay = delayMillis;
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+            if (this.task == task) this.task = null;
+        }
+
+        void runTask() {
+            Runnable pending = task;
+            task = null;
+            pending.run();
+        }
+    }
+}